@@ -33,6 +33,30 @@ public class DatabaseMigration {
         addColumnIfNotExists("courses", "content_type", "VARCHAR(255) DEFAULT 'TEXT'");
         addColumnIfNotExists("courses", "pdf_filename", "VARCHAR(255)");
         addColumnIfNotExists("courses", "pdf_original_name", "VARCHAR(255)");
+
+        // Materialized course summary columns
+        addColumnIfNotExists("courses", "summary", "TEXT");
+        addColumnIfNotExists("courses", "summary_content_hash", "VARCHAR(64)");
+        addColumnIfNotExists("courses", "summarized_at", "TIMESTAMP");
+
+        // Prompt prefix caching
+        addColumnIfNotExists("courses", "index_generation", "INTEGER DEFAULT 0");
+        addColumnIfNotExists("llm_usage", "cached_input_tokens", "BIGINT DEFAULT 0");
+
+        // Lazy quiz explanations
+        addColumnIfNotExists("quizzes", "explanations_pending", "BOOLEAN DEFAULT FALSE");
+
+        // Batched evaluation feedback
+        addColumnIfNotExists("quiz_results", "feedback_pending", "BOOLEAN DEFAULT FALSE");
+
+        // Idempotent quiz submission: one result per quiz
+        createUniqueIndexIfNotExists("uk_quiz_result_quiz", "quiz_results", "quiz_id");
+        
+        // The first flashcard deck of an enrollment is generated once
+        addColumnIfNotExists("enrollments", "flashcard_deck_requested_at", "TIMESTAMP");
+
+        // Served bank items are replaced only if unchanged since they were read
+        addColumnIfNotExists("student_course_stats", "seen_version", "INTEGER DEFAULT 0 NOT NULL");
         
         // Create modules table if it doesn't exist
         createModulesTableIfNotExists();
@@ -59,6 +83,33 @@ public class DatabaseMigration {
         }
     }
 
+    /**
+     * Create a unique index, failing startup if existing rows already break it:
+     * which row to keep is not for a migration to decide.
+     */
+    private void createUniqueIndexIfNotExists(String indexName, String tableName, String columnName) {
+        Integer duplicates;
+        try {
+            duplicates = jdbcTemplate.queryForObject(String.format(
+                    "SELECT COUNT(*) FROM (SELECT %s FROM %s WHERE %s IS NOT NULL GROUP BY %s HAVING COUNT(*) > 1)",
+                    columnName, tableName, columnName, columnName), Integer.class);
+        } catch (Exception e) {
+            log.warn("Could not check {}.{} for duplicates: {}", tableName, columnName, e.getMessage());
+            return;
+        }
+        if (duplicates != null && duplicates > 0) {
+            throw new IllegalStateException(String.format(
+                    "Cannot create unique index %s: %d values of %s.%s appear in more than one row. " +
+                    "Remove the duplicate rows, then restart.", indexName, duplicates, tableName, columnName));
+        }
+        try {
+            jdbcTemplate.execute(String.format("CREATE UNIQUE INDEX IF NOT EXISTS %s ON %s (%s)",
+                    indexName, tableName, columnName));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create unique index " + indexName + " on " + tableName, e);
+        }
+    }
+
     private void createModulesTableIfNotExists() {
         try {
             String checkSql = """
@@ -0,0 +1,38 @@
+package com.example.demo.config;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.example.demo.service.CassetteLLMProvider;
+import com.example.demo.service.LLMProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decorates the active LLM provider with a CassetteLLMProvider when
+ * app.llm.cassette.mode is record or replay, so calls can be captured once
+ * (against Gemini or the simulator) and replayed in tests and benchmarks.
+ *
+ * The cassette is a primary bean of its own: the provider it wraps stays a
+ * regular bean, with its warm-up and shutdown callbacks, and the cassette is
+ * closed on shutdown. With the default mode (off) no cassette is created.
+ */
+@Configuration
+public class LLMCassetteConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression("'${app.llm.cassette.mode:off}'.trim().toLowerCase() matches 'record|replay'")
+    public CassetteLLMProvider cassetteLLMProvider(LLMProvider provider,
+                                                   @Value("${app.llm.cassette.mode}") String mode,
+                                                   @Value("${app.llm.cassette.path:cassettes/llm.jsonl}") String path,
+                                                   @Value("${app.llm.cassette.latency-scale:1.0}") double latencyScale) {
+        // The provider parameter excludes this bean, so it is Gemini or the simulator
+        return new CassetteLLMProvider(provider, CassetteLLMProvider.parseMode(mode), Path.of(path),
+                latencyScale, new ObjectMapper());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.LLMProvider;
+
+/**
+ * Health indicator for the LLM provider ("llm").
+ * Part of the readiness group, so a node only receives traffic once its
+ * provider client is built and warmed up.
+ */
+@Component("llm")
+public class LLMHealthIndicator implements HealthIndicator {
+
+    private final LLMProvider provider;
+
+    public LLMHealthIndicator(LLMProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = provider.isReady() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("provider", provider.name())
+                .withDetail("status", provider.status())
+                .build();
+    }
+}
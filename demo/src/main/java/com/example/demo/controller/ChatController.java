@@ -2,35 +2,84 @@ package com.example.demo.controller;
 
 import java.util.Map;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.demo.service.LLMService;
+import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.ChatSessionService;
+import com.example.demo.service.CourseSummaryService;
+import com.example.demo.service.EnrollmentService;
+import com.example.demo.service.QuotaExceededException;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
 
-    private final LLMService llmService;
+    private static final String GLOBAL_CONTEXT =
+            "You are CogniAI, a helpful educational assistant on the CogniLearn platform. " +
+            "The platform offers courses in AI, Machine Learning, Web Development, and Competitive Programming. " +
+            "Help the student with general questions or guide them to their courses.";
 
-    public ChatController(LLMService llmService) {
-        this.llmService = llmService;
+    private final ChatSessionService chatSessionService;
+    private final CourseSummaryService courseSummaryService;
+    private final EnrollmentService enrollmentService;
+    private final SecurityUtils securityUtils;
+
+    public ChatController(ChatSessionService chatSessionService, CourseSummaryService courseSummaryService,
+            EnrollmentService enrollmentService, SecurityUtils securityUtils) {
+        this.chatSessionService = chatSessionService;
+        this.courseSummaryService = courseSummaryService;
+        this.enrollmentService = enrollmentService;
+        this.securityUtils = securityUtils;
     }
 
     @PostMapping
     public ResponseEntity<Map<String, String>> chat(@RequestBody Map<String, String> payload) {
         String message = payload.get("message");
-        // For the global widget, we don't have specific course context yet.
-        // In a real app, we might track the user's current page or last visited course.
-        // For now, we'll provide a general educational assistant context.
-        String context = "You are CogniAI, a helpful educational assistant on the CogniLearn platform. " +
-                "The platform offers courses in AI, Machine Learning, Web Development, and Competitive Programming. " +
-                "Help the student with general questions or guide them to their courses.";
-
-        String response = llmService.chatWithCourse(message, context);
-        return ResponseEntity.ok(Map.of("response", response));
+        Long courseId = parseId(payload.get("courseId"));
+        Long sessionId = parseId(payload.get("sessionId"));
+        String context = resolveContext(courseId);
+
+        try {
+            ChatSessionService.ChatReply reply = chatSessionService.chat(sessionId, courseId, message, context);
+            return ResponseEntity.ok(Map.of("response", reply.response(),
+                    "sessionId", String.valueOf(reply.sessionId())));
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("response", e.getMessage()));
+        }
+    }
+
+    /**
+     * When the widget is opened on a course page, answer from the course's stored
+     * summary map instead of the full content. Otherwise fall back to the general
+     * educational assistant context.
+     */
+    private String resolveContext(Long courseId) {
+        if (courseId == null) {
+            return GLOBAL_CONTEXT;
+        }
+
+        if (securityUtils.isCurrentUserStudent()
+                && !enrollmentService.isEnrolled(securityUtils.getCurrentUserId(), courseId)) {
+            return GLOBAL_CONTEXT;
+        }
+
+        String mapContext = courseSummaryService.getMapContext(courseId);
+        return mapContext != null ? mapContext : GLOBAL_CONTEXT;
+    }
+
+    private Long parseId(String idParam) {
+        if (idParam == null || idParam.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(idParam);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
@@ -6,36 +6,42 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.demo.entity.Course;
+import com.example.demo.entity.Flashcard;
+import com.example.demo.entity.ReviewGrade;
 import com.example.demo.security.SecurityUtils;
 import com.example.demo.service.CourseService;
 import com.example.demo.service.EnrollmentService;
-import com.example.demo.service.LLMModels;
-import com.example.demo.service.LLMService;
+import com.example.demo.service.FlashcardService;
 
 @Controller
 @RequestMapping("/student/courses/{courseId}/flashcards")
 public class FlashcardController {
 
     private final CourseService courseService;
-    private final LLMService llmService;
+    private final FlashcardService flashcardService;
     private final EnrollmentService enrollmentService;
     private final SecurityUtils securityUtils;
 
-    public FlashcardController(CourseService courseService, LLMService llmService,
+    public FlashcardController(CourseService courseService, FlashcardService flashcardService,
             EnrollmentService enrollmentService, SecurityUtils securityUtils) {
         this.courseService = courseService;
-        this.llmService = llmService;
+        this.flashcardService = flashcardService;
         this.enrollmentService = enrollmentService;
         this.securityUtils = securityUtils;
     }
 
+    /**
+     * Review queue: the next cards due, oldest due first.
+     */
     @GetMapping
     public String viewFlashcards(@PathVariable Long courseId,
-            @RequestParam(defaultValue = "5") int count,
+            @RequestParam(defaultValue = "20") int count,
             Model model) {
         Long studentId = securityUtils.getCurrentUserId();
 
@@ -46,10 +52,56 @@ public class FlashcardController {
         Course course = courseService.findById(courseId)
                 .orElseThrow(() -> new IllegalArgumentException("Course not found"));
 
-        List<LLMModels.Flashcard> flashcards = llmService.generateFlashcards(course.getContent(), count);
+        flashcardService.ensureFirstDeck(studentId, course);
+        int limit = flashcardService.queueSize(count);
+        List<Flashcard> flashcards = flashcardService.findDue(studentId, courseId, limit);
 
         model.addAttribute("course", course);
         model.addAttribute("flashcards", flashcards);
+        model.addAttribute("dueCount", flashcards.size() < limit
+                ? flashcards.size() : flashcardService.countDue(studentId, courseId));
+        model.addAttribute("nextDueAt", flashcards.isEmpty()
+                ? flashcardService.findNextDueAt(studentId, courseId).orElse(null) : null);
+        model.addAttribute("grades", ReviewGrade.values());
         return "student/courses/flashcards";
     }
+
+    @PostMapping("/{cardId}/review")
+    public String reviewFlashcard(@PathVariable Long courseId,
+            @PathVariable Long cardId,
+            @RequestParam ReviewGrade grade,
+            RedirectAttributes redirectAttributes) {
+        Long studentId = securityUtils.getCurrentUserId();
+
+        if (!enrollmentService.isEnrolled(studentId, courseId)) {
+            return "redirect:/student/courses";
+        }
+
+        try {
+            flashcardService.review(studentId, courseId, cardId, grade);
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", "Failed to record review: " + e.getMessage());
+        }
+        return "redirect:/student/courses/" + courseId + "/flashcards";
+    }
+
+    @PostMapping("/generate")
+    public String generateFlashcards(@PathVariable Long courseId,
+            @RequestParam(defaultValue = "5") int count,
+            RedirectAttributes redirectAttributes) {
+        Long studentId = securityUtils.getCurrentUserId();
+
+        if (!enrollmentService.isEnrolled(studentId, courseId)) {
+            return "redirect:/student/courses";
+        }
+
+        Course course = courseService.findById(courseId)
+                .orElseThrow(() -> new IllegalArgumentException("Course not found"));
+
+        int added = flashcardService.generate(studentId, course, Math.max(1, Math.min(count, 20)));
+        redirectAttributes.addFlashAttribute("success", added > 0
+                ? added + " new flashcards added to your deck."
+                : "No new flashcards: these cards are already in your deck.");
+        return "redirect:/student/courses/" + courseId + "/flashcards";
+    }
 }
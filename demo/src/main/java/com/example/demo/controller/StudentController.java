@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
@@ -219,7 +220,7 @@ public class StudentController {
     public String viewQuiz(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
         Long studentId = securityUtils.getCurrentUserId();
 
-        Quiz quiz = quizService.findByIdWithQuestions(id);
+        Quiz quiz = quizService.findByIdForView(id);
         if (quiz == null) {
             redirectAttributes.addFlashAttribute("error", "Quiz not found.");
             return "redirect:/student/quizzes";
@@ -236,9 +237,12 @@ public class StudentController {
             return "redirect:/student/quizzes/" + id + "/result";
         }
 
-        List<Question> questions = quizService.findQuestionsByQuizId(id);
+        List<Question> questions = quizService.findQuestions(quiz);
         model.addAttribute("quiz", quiz);
         model.addAttribute("questions", questions);
+        model.addAttribute("draftAnswers", quizService.findDraftAnswers(quiz));
+        // Idempotency key: resubmitting the same form returns the same result
+        model.addAttribute("submissionKey", UUID.randomUUID().toString());
         return "student/quizzes/take";
     }
 
@@ -260,7 +264,7 @@ public class StudentController {
                 }
             }
 
-            QuizSubmissionDTO submission = new QuizSubmissionDTO(id, answers, timeTaken);
+            QuizSubmissionDTO submission = new QuizSubmissionDTO(id, answers, timeTaken, formParams.get("submissionKey"));
             quizService.submitQuiz(studentId, submission);
 
             return "redirect:/student/quizzes/" + id + "/result";
@@ -270,11 +274,28 @@ public class StudentController {
         }
     }
 
+    @PostMapping("/quizzes/{id}/autosave")
+    public ResponseEntity<Void> autosaveQuiz(@PathVariable Long id,
+                                             @RequestParam int position,
+                                             @RequestParam int option,
+                                             @RequestParam long seq) {
+        Long studentId = securityUtils.getCurrentUserId();
+
+        try {
+            quizService.saveDraftAnswer(studentId, id, position, option, seq);
+            return ResponseEntity.noContent().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(403).build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.status(409).build();
+        }
+    }
+
     @GetMapping("/quizzes/{id}/result")
     public String viewQuizResult(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
         Long studentId = securityUtils.getCurrentUserId();
 
-        Quiz quiz = quizService.findByIdWithQuestions(id);
+        Quiz quiz = quizService.findByIdForView(id);
         if (quiz == null) {
             redirectAttributes.addFlashAttribute("error", "Quiz not found.");
             return "redirect:/student/quizzes";
@@ -286,15 +307,20 @@ public class StudentController {
             return "redirect:/student/quizzes";
         }
 
-        QuizResult result = quizService.findResultByQuizId(id)
-                .orElse(null);
+        QuizResult result = quiz.getResult();
 
         if (result == null) {
             redirectAttributes.addFlashAttribute("error", "Quiz has not been submitted yet.");
             return "redirect:/student/quizzes/" + id;
         }
 
-        List<Question> questions = quizService.findQuestionsByQuizId(id);
+        // Explanations are generated on the first view of the result
+        if (quiz.isExplanationsPending()) {
+            quizService.ensureExplanations(id);
+            quiz = quizService.findByIdForView(id);
+        }
+
+        List<Question> questions = quizService.findQuestions(quiz);
 
         model.addAttribute("quiz", quiz);
         model.addAttribute("result", result);
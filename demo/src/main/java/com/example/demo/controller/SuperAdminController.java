@@ -1,7 +1,9 @@
 package com.example.demo.controller;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -20,6 +22,10 @@ import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.EnrollmentRepository;
 import com.example.demo.repository.QuizRepository;
 import com.example.demo.repository.QuizResultRepository;
+import com.example.demo.service.LLMRequestCoalescer;
+import com.example.demo.service.LLMUsageMeter;
+import com.example.demo.service.ModelRouter;
+import com.example.demo.service.SimulatedLLMProvider;
 import com.example.demo.service.UserService;
 
 import jakarta.validation.Valid;
@@ -44,17 +50,30 @@ public class SuperAdminController {
     private final EnrollmentRepository enrollmentRepository;
     private final QuizRepository quizRepository;
     private final QuizResultRepository quizResultRepository;
+    private final LLMUsageMeter llmUsageMeter;
+    private final ModelRouter modelRouter;
+    private final LLMRequestCoalescer llmRequestCoalescer;
+    // Only present in mock mode
+    private final ObjectProvider<SimulatedLLMProvider> simulatedLLMProvider;
 
     public SuperAdminController(UserService userService,
                                 CourseRepository courseRepository,
                                 EnrollmentRepository enrollmentRepository,
                                 QuizRepository quizRepository,
-                                QuizResultRepository quizResultRepository) {
+                                QuizResultRepository quizResultRepository,
+                                LLMUsageMeter llmUsageMeter,
+                                ModelRouter modelRouter,
+                                LLMRequestCoalescer llmRequestCoalescer,
+                                ObjectProvider<SimulatedLLMProvider> simulatedLLMProvider) {
         this.userService = userService;
         this.courseRepository = courseRepository;
         this.enrollmentRepository = enrollmentRepository;
         this.quizRepository = quizRepository;
         this.quizResultRepository = quizResultRepository;
+        this.llmUsageMeter = llmUsageMeter;
+        this.modelRouter = modelRouter;
+        this.llmRequestCoalescer = llmRequestCoalescer;
+        this.simulatedLLMProvider = simulatedLLMProvider;
     }
 
     // ========== Dashboard ==========
@@ -202,6 +221,17 @@ public class SuperAdminController {
         // Summary of platform activity
         model.addAttribute("totalQuizzesTaken", quizResultRepository.count());
         model.addAttribute("recentQuizResults", quizResultRepository.findAll().stream().limit(10).toList());
+
+        // LLM token usage over the last 7 days, including counters not yet flushed
+        LLMUsageMeter.UsageReport usage = llmUsageMeter.reportSince(LocalDate.now().minusDays(6));
+        model.addAttribute("llmUsageByOperation", usage.byOperation());
+        model.addAttribute("llmUsageByUser", usage.byUser().stream().limit(10).toList());
+        model.addAttribute("llmUsageByCourse", usage.byCourse().stream().limit(10).toList());
+        model.addAttribute("llmUsageByModel", usage.byModel());
+        model.addAttribute("llmModelHealth", modelRouter.getModelHealth());
+        model.addAttribute("llmCoalescing", llmRequestCoalescer.getStats());
+        SimulatedLLMProvider simulator = simulatedLLMProvider.getIfAvailable();
+        model.addAttribute("llmSimulator", simulator != null ? simulator.getStats() : null);
         
         return "superadmin/activity";
     }
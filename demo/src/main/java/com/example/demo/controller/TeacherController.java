@@ -32,6 +32,7 @@ import com.example.demo.service.CourseService;
 import com.example.demo.service.DashboardService;
 import com.example.demo.service.EnrollmentService;
 import com.example.demo.service.FileStorageService;
+import com.example.demo.service.ItemAnalyticsService;
 import com.example.demo.service.ModuleService;
 import com.example.demo.service.RAGService;
 import com.example.demo.service.UserService;
@@ -55,6 +56,7 @@ public class TeacherController {
     private final ModuleService moduleService;
     private final FileStorageService fileStorageService;
     private final RAGService ragService;
+    private final ItemAnalyticsService itemAnalytics;
     private final com.example.demo.security.SecurityUtils securityUtils;
 
     public TeacherController(UserService userService,
@@ -64,6 +66,7 @@ public class TeacherController {
                            ModuleService moduleService,
                            FileStorageService fileStorageService,
                            RAGService ragService,
+                           ItemAnalyticsService itemAnalytics,
                            com.example.demo.security.SecurityUtils securityUtils) {
         this.userService = userService;
         this.courseService = courseService;
@@ -72,6 +75,7 @@ public class TeacherController {
         this.moduleService = moduleService;
         this.fileStorageService = fileStorageService;
         this.ragService = ragService;
+        this.itemAnalytics = itemAnalytics;
         this.securityUtils = securityUtils;
     }
 
@@ -233,6 +237,8 @@ public class TeacherController {
         model.addAttribute("course", course);
         model.addAttribute("enrollments", enrollments);
         model.addAttribute("availableStudents", availableStudents);
+        model.addAttribute("itemStatistics", itemAnalytics.findByCourse(id));
+        model.addAttribute("minResponses", itemAnalytics.getMinResponses());
         return "teacher/courses/view";
     }
 
@@ -0,0 +1,109 @@
+package com.example.demo.dto;
+
+/**
+ * DTO for aggregated LLM usage (per operation, model, user or course; the id
+ * is the user or course id).
+ */
+public class LLMUsageSummaryDTO {
+
+    private Long id;
+    private String label;
+    private long callCount;
+    private long inputTokens;
+    private long outputTokens;
+    private long cachedInputTokens;
+    private long totalLatencyMs;
+
+    // Constructors
+    public LLMUsageSummaryDTO() {}
+
+    public LLMUsageSummaryDTO(String label, Long callCount, Long inputTokens, Long outputTokens,
+                              Long cachedInputTokens, Long totalLatencyMs) {
+        this.label = label;
+        this.callCount = callCount != null ? callCount : 0;
+        this.inputTokens = inputTokens != null ? inputTokens : 0;
+        this.outputTokens = outputTokens != null ? outputTokens : 0;
+        this.cachedInputTokens = cachedInputTokens != null ? cachedInputTokens : 0;
+        this.totalLatencyMs = totalLatencyMs != null ? totalLatencyMs : 0;
+    }
+
+    public LLMUsageSummaryDTO(Long id, String label, Long callCount, Long inputTokens, Long outputTokens,
+                              Long cachedInputTokens, Long totalLatencyMs) {
+        this(label, callCount, inputTokens, outputTokens, cachedInputTokens, totalLatencyMs);
+        this.id = id;
+    }
+
+    // Helper methods
+    public void add(long calls, long input, long output, long cachedInput, long latencyMs) {
+        callCount += calls;
+        inputTokens += input;
+        outputTokens += output;
+        cachedInputTokens += cachedInput;
+        totalLatencyMs += latencyMs;
+    }
+
+    public long getTotalTokens() {
+        return inputTokens + outputTokens;
+    }
+
+    public long getAverageLatencyMs() {
+        return callCount > 0 ? totalLatencyMs / callCount : 0;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public void setCallCount(long callCount) {
+        this.callCount = callCount;
+    }
+
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(long inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(long outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public long getCachedInputTokens() {
+        return cachedInputTokens;
+    }
+
+    public void setCachedInputTokens(long cachedInputTokens) {
+        this.cachedInputTokens = cachedInputTokens;
+    }
+
+    public long getTotalLatencyMs() {
+        return totalLatencyMs;
+    }
+
+    public void setTotalLatencyMs(long totalLatencyMs) {
+        this.totalLatencyMs = totalLatencyMs;
+    }
+}
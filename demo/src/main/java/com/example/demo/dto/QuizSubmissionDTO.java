@@ -10,6 +10,7 @@ public class QuizSubmissionDTO {
     private Long quizId;
     private Map<Long, Integer> answers; // questionId -> selectedOptionIndex
     private int timeTakenSeconds;
+    private String submissionKey; // idempotency key, the same for retries of one submission
 
     // Constructors
     public QuizSubmissionDTO() {}
@@ -20,6 +21,11 @@ public class QuizSubmissionDTO {
         this.timeTakenSeconds = timeTakenSeconds;
     }
 
+    public QuizSubmissionDTO(Long quizId, Map<Long, Integer> answers, int timeTakenSeconds, String submissionKey) {
+        this(quizId, answers, timeTakenSeconds);
+        this.submissionKey = submissionKey;
+    }
+
     // Getters and Setters
     public Long getQuizId() {
         return quizId;
@@ -44,4 +50,12 @@ public class QuizSubmissionDTO {
     public void setTimeTakenSeconds(int timeTakenSeconds) {
         this.timeTakenSeconds = timeTakenSeconds;
     }
+
+    public String getSubmissionKey() {
+        return submissionKey;
+    }
+
+    public void setSubmissionKey(String submissionKey) {
+        this.submissionKey = submissionKey;
+    }
 }
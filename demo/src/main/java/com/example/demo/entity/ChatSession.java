@@ -0,0 +1,136 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+/**
+ * ChatSession entity representing one tutoring conversation of a user,
+ * optionally about a course.
+ * Turns are stored in chat_turns; the session holds the rolling summary of
+ * the turns that have left the sliding window (seq up to summarizedThroughSeq).
+ */
+@Entity
+@Table(name = "chat_sessions", indexes = {
+        @Index(name = "idx_chat_sessions_user", columnList = "user_id")
+})
+public class ChatSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(columnDefinition = "TEXT")
+    private String summary;
+
+    // Last turn folded into the summary (0 = none)
+    @Column(nullable = false)
+    private int summarizedThroughSeq = 0;
+
+    // Seq of the last appended turn
+    @Column(nullable = false)
+    private int lastSeq = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public ChatSession() {}
+
+    public ChatSession(Long userId, Long courseId) {
+        this.userId = userId;
+        this.courseId = courseId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public int getSummarizedThroughSeq() {
+        return summarizedThroughSeq;
+    }
+
+    public void setSummarizedThroughSeq(int summarizedThroughSeq) {
+        this.summarizedThroughSeq = summarizedThroughSeq;
+    }
+
+    public int getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(int lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
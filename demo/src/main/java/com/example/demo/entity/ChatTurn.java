@@ -0,0 +1,123 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ChatTurn entity representing one message of a chat session.
+ * Turns are append-only: they are never updated, and are numbered by seq
+ * within their session.
+ */
+@Entity
+@Table(name = "chat_turns", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_chat_turns_session_seq", columnNames = {"session_id", "seq"})
+})
+public class ChatTurn {
+
+    public static final String ROLE_USER = "user";
+    public static final String ROLE_ASSISTANT = "assistant";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    @Column(nullable = false)
+    private int seq;
+
+    @Column(nullable = false, length = 16)
+    private String role;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    // Estimated tokens of the content
+    @Column(nullable = false)
+    private int tokens;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public ChatTurn() {}
+
+    public ChatTurn(Long sessionId, int seq, String role, String content, int tokens) {
+        this.sessionId = sessionId;
+        this.seq = seq;
+        this.role = role;
+        this.content = content;
+        this.tokens = tokens;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public void setSeq(int seq) {
+        this.seq = seq;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
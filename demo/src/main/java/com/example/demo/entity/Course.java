@@ -18,6 +18,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderBy;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
@@ -77,6 +78,19 @@ public class Course {
 
     private LocalDateTime indexedAt;
 
+    // Incremented on every re-index; provider-side prompt caches are tied to it
+    @Column(name = "index_generation")
+    private int indexGeneration = 0;
+
+    // Materialized summary computed at index time
+    @Column(columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(name = "summary_content_hash", length = 64)
+    private String summaryContentHash;
+
+    private LocalDateTime summarizedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by_id", nullable = false)
     private User createdBy;
@@ -94,6 +108,10 @@ public class Course {
     @OneToMany(mappedBy = "course", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<CourseChunk> chunks = new ArrayList<>();
 
+    @OneToMany(mappedBy = "course", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("sectionIndex ASC")
+    private List<CourseSectionSummary> sectionSummaries = new ArrayList<>();
+
     @OneToMany(mappedBy = "course", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Quiz> quizzes = new HashSet<>();
 
@@ -146,6 +164,20 @@ public class Course {
         this.indexedAt = LocalDateTime.now();
     }
 
+    public void nextIndexGeneration() {
+        this.indexGeneration++;
+    }
+
+    public boolean hasSummary() {
+        return summary != null && !summary.isBlank();
+    }
+
+    public void updateSummary(String summary, String contentHash) {
+        this.summary = summary;
+        this.summaryContentHash = contentHash;
+        this.summarizedAt = LocalDateTime.now();
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -227,6 +259,14 @@ public class Course {
         this.indexedAt = indexedAt;
     }
 
+    public int getIndexGeneration() {
+        return indexGeneration;
+    }
+
+    public void setIndexGeneration(int indexGeneration) {
+        this.indexGeneration = indexGeneration;
+    }
+
     public User getCreatedBy() {
         return createdBy;
     }
@@ -251,6 +291,38 @@ public class Course {
         this.chunks = chunks;
     }
 
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public String getSummaryContentHash() {
+        return summaryContentHash;
+    }
+
+    public void setSummaryContentHash(String summaryContentHash) {
+        this.summaryContentHash = summaryContentHash;
+    }
+
+    public LocalDateTime getSummarizedAt() {
+        return summarizedAt;
+    }
+
+    public void setSummarizedAt(LocalDateTime summarizedAt) {
+        this.summarizedAt = summarizedAt;
+    }
+
+    public List<CourseSectionSummary> getSectionSummaries() {
+        return sectionSummaries;
+    }
+
+    public void setSectionSummaries(List<CourseSectionSummary> sectionSummaries) {
+        this.sectionSummaries = sectionSummaries;
+    }
+
     public Set<Quiz> getQuizzes() {
         return quizzes;
     }
@@ -0,0 +1,134 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+/**
+ * CourseSectionSummary entity representing the summary of a contiguous
+ * range of course chunks.
+ * Section summaries are computed once when a course is indexed and are
+ * reused as a compact "map" of the course for cheap LLM calls.
+ */
+@Entity
+@Table(name = "course_section_summaries")
+public class CourseSectionSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "course_id", nullable = false)
+    private Course course;
+
+    @Column(nullable = false)
+    private int sectionIndex;
+
+    @Column(nullable = false)
+    private int startChunkIndex;
+
+    @Column(nullable = false)
+    private int endChunkIndex;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String summary;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public CourseSectionSummary() {}
+
+    public CourseSectionSummary(Course course, int sectionIndex, int startChunkIndex, int endChunkIndex,
+                                String summary, String contentHash) {
+        this.course = course;
+        this.sectionIndex = sectionIndex;
+        this.startChunkIndex = startChunkIndex;
+        this.endChunkIndex = endChunkIndex;
+        this.summary = summary;
+        this.contentHash = contentHash;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public void setCourse(Course course) {
+        this.course = course;
+    }
+
+    public int getSectionIndex() {
+        return sectionIndex;
+    }
+
+    public void setSectionIndex(int sectionIndex) {
+        this.sectionIndex = sectionIndex;
+    }
+
+    public int getStartChunkIndex() {
+        return startChunkIndex;
+    }
+
+    public void setStartChunkIndex(int startChunkIndex) {
+        this.startChunkIndex = startChunkIndex;
+    }
+
+    public int getEndChunkIndex() {
+        return endChunkIndex;
+    }
+
+    public void setEndChunkIndex(int endChunkIndex) {
+        this.endChunkIndex = endChunkIndex;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -57,6 +57,10 @@ public class Enrollment {
 
     private LocalDateTime courseCompletedAt;
 
+    // When the student's first flashcard deck was generated, so it is generated once
+    @Column(name = "flashcard_deck_requested_at")
+    private LocalDateTime flashcardDeckRequestedAt;
+
     @PrePersist
     protected void onCreate() {
         enrolledAt = LocalDateTime.now();
@@ -163,6 +167,14 @@ public class Enrollment {
         this.courseCompletedAt = courseCompletedAt;
     }
 
+    public LocalDateTime getFlashcardDeckRequestedAt() {
+        return flashcardDeckRequestedAt;
+    }
+
+    public void setFlashcardDeckRequestedAt(LocalDateTime flashcardDeckRequestedAt) {
+        this.flashcardDeckRequestedAt = flashcardDeckRequestedAt;
+    }
+
     public boolean isCompleted() {
         return status == EnrollmentStatus.COMPLETED;
     }
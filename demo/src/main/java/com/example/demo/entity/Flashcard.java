@@ -0,0 +1,235 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Flashcard entity: a card of a student's deck for a course, with its SM-2
+ * spaced-repetition state.
+ *
+ * Each review moves the card's due date; the student's review queue is the
+ * cards due now, read in due order from the (student, course, due) index.
+ */
+@Entity
+@Table(name = "flashcards", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_flashcard_card", columnNames = {"student_id", "course_id", "card_hash"})
+}, indexes = {
+        @Index(name = "idx_flashcard_due", columnList = "student_id, course_id, due_at")
+})
+public class Flashcard {
+
+    public static final double INITIAL_EASE = 2.5;
+    public static final double MIN_EASE = 1.3;
+    // A forgotten card is shown again in the same session
+    public static final int RELEARN_MINUTES = 10;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    // Hash of the normalised front and back, so a card generated again is not added twice
+    @Column(name = "card_hash", nullable = false, length = 64)
+    private String cardHash;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String front;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String back;
+
+    // Successful reviews in a row
+    @Column(name = "repetitions", nullable = false)
+    private int repetitions;
+
+    @Column(name = "interval_days", nullable = false)
+    private int intervalDays;
+
+    @Column(name = "ease_factor", nullable = false)
+    private double easeFactor = INITIAL_EASE;
+
+    @Column(name = "lapses", nullable = false)
+    private int lapses;
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt;
+
+    @Column(name = "last_reviewed_at")
+    private LocalDateTime lastReviewedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (dueAt == null) {
+            dueAt = createdAt;
+        }
+    }
+
+    // Constructors
+    public Flashcard() {}
+
+    public Flashcard(Long studentId, Long courseId, String front, String back) {
+        this.studentId = studentId;
+        this.courseId = courseId;
+        this.front = front;
+        this.back = back;
+        this.cardHash = cardHash(front, back);
+    }
+
+    // Business methods
+    public static String cardHash(String front, String back) {
+        return QuestionItem.stemHash(front + "\n" + back);
+    }
+
+    /**
+     * Schedule the next review (SM-2): a recalled card is due after 1 day,
+     * then 6, then the previous interval times the ease factor; a forgotten
+     * card starts over and is due again in a few minutes. The ease factor
+     * follows the grade, never below MIN_EASE.
+     */
+    public void review(ReviewGrade grade, LocalDateTime now) {
+        int quality = grade.getQuality();
+        easeFactor = Math.max(MIN_EASE, easeFactor + 0.1 - (5 - quality) * (0.08 + (5 - quality) * 0.02));
+        if (grade.isRecalled()) {
+            intervalDays = switch (repetitions) {
+                case 0 -> 1;
+                case 1 -> 6;
+                default -> (int) Math.round(intervalDays * easeFactor);
+            };
+            repetitions++;
+            dueAt = now.plusDays(intervalDays);
+        } else {
+            repetitions = 0;
+            intervalDays = 0;
+            lapses++;
+            dueAt = now.plusMinutes(RELEARN_MINUTES);
+        }
+        lastReviewedAt = now;
+    }
+
+    public boolean isNew() {
+        return lastReviewedAt == null;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getCardHash() {
+        return cardHash;
+    }
+
+    public void setCardHash(String cardHash) {
+        this.cardHash = cardHash;
+    }
+
+    public String getFront() {
+        return front;
+    }
+
+    public void setFront(String front) {
+        this.front = front;
+    }
+
+    public String getBack() {
+        return back;
+    }
+
+    public void setBack(String back) {
+        this.back = back;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public void setRepetitions(int repetitions) {
+        this.repetitions = repetitions;
+    }
+
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+
+    public void setIntervalDays(int intervalDays) {
+        this.intervalDays = intervalDays;
+    }
+
+    public double getEaseFactor() {
+        return easeFactor;
+    }
+
+    public void setEaseFactor(double easeFactor) {
+        this.easeFactor = easeFactor;
+    }
+
+    public int getLapses() {
+        return lapses;
+    }
+
+    public void setLapses(int lapses) {
+        this.lapses = lapses;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(LocalDateTime dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public LocalDateTime getLastReviewedAt() {
+        return lastReviewedAt;
+    }
+
+    public void setLastReviewedAt(LocalDateTime lastReviewedAt) {
+        this.lastReviewedAt = lastReviewedAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ItemCalibration entity holding the calibrated difficulty of a question of a
+ * course, or of a whole difficulty level (the expected difficulty of the
+ * questions generated at that level), see AdaptiveRatingEngine.
+ */
+@Entity
+@Table(name = "item_calibrations", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_item_calibration", columnNames = {"course_id", "item_key"})
+})
+public class ItemCalibration {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    // "level:<DIFFICULTY>" or "question:<hash of the question text>"
+    @Column(name = "item_key", nullable = false, length = 80)
+    private String itemKey;
+
+    @Column(name = "difficulty", nullable = false)
+    private double difficulty;
+
+    // Number of answers the difficulty is calibrated from
+    @Column(name = "answered", nullable = false)
+    private int answered;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public ItemCalibration() {}
+
+    public ItemCalibration(Long courseId, String itemKey) {
+        this.courseId = courseId;
+        this.itemKey = itemKey;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getItemKey() {
+        return itemKey;
+    }
+
+    public void setItemKey(String itemKey) {
+        this.itemKey = itemKey;
+    }
+
+    public double getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(double difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public int getAnswered() {
+        return answered;
+    }
+
+    public void setAnswered(int answered) {
+        this.answered = answered;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * ItemStatistics entity holding the classical item analysis of a question of a
+ * course (keyed by the hash of its stem, like QuestionItem), maintained
+ * incrementally from each evaluated submission (see ItemAnalyticsService):
+ * 1. Difficulty index: share of the responses that were correct
+ * 2. Discrimination: point-biserial correlation between answering the
+ *    question correctly and the score of the submission
+ * 3. How often each option was selected
+ *
+ * The score mean and variance are kept as streaming accumulators (count,
+ * mean, sum of squared deviations), merged with the parallel form of
+ * Welford's algorithm.
+ */
+@Entity
+@Table(name = "item_statistics", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_item_statistics", columnNames = {"course_id", "stem_hash"})
+})
+public class ItemStatistics {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "stem_hash", nullable = false, length = 64)
+    private String stemHash;
+
+    @Column(name = "question_text", columnDefinition = "TEXT")
+    private String questionText;
+
+    // Submissions that included the question, answered or not
+    @Column(name = "responses", nullable = false)
+    private long responses;
+
+    @Column(name = "correct", nullable = false)
+    private long correct;
+
+    @Column(name = "unanswered", nullable = false)
+    private long unanswered;
+
+    // Score of the submissions (percentage): mean and sum of squared deviations
+    @Column(name = "score_mean", nullable = false)
+    private double scoreMean;
+
+    @Column(name = "score_m2", nullable = false)
+    private double scoreM2;
+
+    // Mean score of the submissions that answered the question correctly
+    @Column(name = "correct_score_mean", nullable = false)
+    private double correctScoreMean;
+
+    // Times each option was selected, comma-separated by option index
+    @Column(name = "option_counts", length = 255)
+    private String optionCounts;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public ItemStatistics() {}
+
+    public ItemStatistics(Long courseId, String stemHash) {
+        this.courseId = courseId;
+        this.stemHash = stemHash;
+    }
+
+    // Business methods
+    /**
+     * Add a batch of responses summarised the same way (count, mean and sum
+     * of squared deviations of their scores).
+     */
+    public void merge(long responses, long correct, long unanswered, double scoreMean, double scoreM2,
+                      double correctScoreMean, long[] optionCounts) {
+        if (responses == 0) {
+            return;
+        }
+        long total = this.responses + responses;
+        double delta = scoreMean - this.scoreMean;
+        this.scoreM2 += scoreM2 + delta * delta * this.responses * responses / total;
+        this.scoreMean += delta * responses / total;
+        if (this.correct + correct > 0) {
+            this.correctScoreMean = (this.correctScoreMean * this.correct + correctScoreMean * correct)
+                    / (this.correct + correct);
+        }
+        this.responses = total;
+        this.correct += correct;
+        this.unanswered += unanswered;
+
+        long[] counts = getOptionCountArray();
+        if (counts.length < optionCounts.length) {
+            counts = Arrays.copyOf(counts, optionCounts.length);
+        }
+        for (int i = 0; i < optionCounts.length; i++) {
+            counts[i] += optionCounts[i];
+        }
+        this.optionCounts = LongStream.of(counts).mapToObj(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Share of the responses that were correct (0-1); higher is easier.
+     */
+    public double getDifficultyIndex() {
+        return responses > 0 ? (double) correct / responses : 0.0;
+    }
+
+    /**
+     * Point-biserial correlation (-1 to 1), or null while every response was
+     * correct, every response was wrong or all scores are equal.
+     */
+    public Double getDiscrimination() {
+        long wrong = responses - correct;
+        double variance = responses > 0 ? scoreM2 / responses : 0.0;
+        if (correct == 0 || wrong == 0 || variance <= 0) {
+            return null;
+        }
+        double wrongScoreMean = (scoreMean * responses - correctScoreMean * correct) / wrong;
+        double p = (double) correct / responses;
+        return (correctScoreMean - wrongScoreMean) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+    }
+
+    public long[] getOptionCountArray() {
+        if (optionCounts == null || optionCounts.isBlank()) {
+            return new long[0];
+        }
+        return Arrays.stream(optionCounts.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    /**
+     * Share of the responses that selected each option (0-1), by option index.
+     */
+    public double[] getOptionFrequencies() {
+        return LongStream.of(getOptionCountArray())
+                .mapToDouble(count -> responses > 0 ? (double) count / responses : 0.0)
+                .toArray();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getStemHash() {
+        return stemHash;
+    }
+
+    public void setStemHash(String stemHash) {
+        this.stemHash = stemHash;
+    }
+
+    public String getQuestionText() {
+        return questionText;
+    }
+
+    public void setQuestionText(String questionText) {
+        this.questionText = questionText;
+    }
+
+    public long getResponses() {
+        return responses;
+    }
+
+    public void setResponses(long responses) {
+        this.responses = responses;
+    }
+
+    public long getCorrect() {
+        return correct;
+    }
+
+    public void setCorrect(long correct) {
+        this.correct = correct;
+    }
+
+    public long getUnanswered() {
+        return unanswered;
+    }
+
+    public void setUnanswered(long unanswered) {
+        this.unanswered = unanswered;
+    }
+
+    public double getScoreMean() {
+        return scoreMean;
+    }
+
+    public void setScoreMean(double scoreMean) {
+        this.scoreMean = scoreMean;
+    }
+
+    public double getScoreM2() {
+        return scoreM2;
+    }
+
+    public void setScoreM2(double scoreM2) {
+        this.scoreM2 = scoreM2;
+    }
+
+    public double getCorrectScoreMean() {
+        return correctScoreMean;
+    }
+
+    public void setCorrectScoreMean(double correctScoreMean) {
+        this.correctScoreMean = correctScoreMean;
+    }
+
+    public String getOptionCounts() {
+        return optionCounts;
+    }
+
+    public void setOptionCounts(String optionCounts) {
+        this.optionCounts = optionCounts;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.demo.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+/**
+ * LLMUsage entity representing aggregated LLM token usage.
+ * One row holds the calls made by one user, for one course, operation and
+ * model during a day; each flush adds to it. Daily totals are obtained by
+ * summing rows.
+ */
+@Entity
+@Table(name = "llm_usage", indexes = {
+        @Index(name = "idx_llm_usage_date_user", columnList = "usage_date, user_id"),
+        @Index(name = "idx_llm_usage_date_course", columnList = "usage_date, course_id")
+})
+public class LLMUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    private Role role;
+
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(nullable = false, length = 32)
+    private String operation;
+
+    @Column(nullable = false, length = 64)
+    private String model;
+
+    @Column(nullable = false)
+    private long callCount;
+
+    @Column(nullable = false)
+    private long inputTokens;
+
+    @Column(nullable = false)
+    private long outputTokens;
+
+    // Input tokens served from a provider-side prompt cache (included in inputTokens)
+    @Column(name = "cached_input_tokens")
+    private long cachedInputTokens;
+
+    @Column(nullable = false)
+    private long totalLatencyMs;
+
+    @Column(nullable = false)
+    private LocalDateTime recordedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        recordedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        recordedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public LLMUsage() {}
+
+    public LLMUsage(LocalDate usageDate, Long userId, Role role, Long courseId, String operation, String model) {
+        this.usageDate = usageDate;
+        this.userId = userId;
+        this.role = role;
+        this.courseId = courseId;
+        this.operation = operation;
+        this.model = model;
+    }
+
+    public long getTotalTokens() {
+        return inputTokens + outputTokens;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getUsageDate() {
+        return usageDate;
+    }
+
+    public void setUsageDate(LocalDate usageDate) {
+        this.usageDate = usageDate;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public void setRole(Role role) {
+        this.role = role;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public void setCallCount(long callCount) {
+        this.callCount = callCount;
+    }
+
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(long inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(long outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public long getCachedInputTokens() {
+        return cachedInputTokens;
+    }
+
+    public void setCachedInputTokens(long cachedInputTokens) {
+        this.cachedInputTokens = cachedInputTokens;
+    }
+
+    public long getTotalLatencyMs() {
+        return totalLatencyMs;
+    }
+
+    public void setTotalLatencyMs(long totalLatencyMs) {
+        this.totalLatencyMs = totalLatencyMs;
+    }
+
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(LocalDateTime recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+}
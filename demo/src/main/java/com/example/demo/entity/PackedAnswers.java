@@ -0,0 +1,104 @@
+package com.example.demo.entity;
+
+/**
+ * Codec for the answers of a quiz result stored in quiz_results.answers.
+ *
+ * Answers are positional (same order as the quiz questions) and take one
+ * nibble each, two per byte, low nibble first, after a one-byte format version:
+ * - bits 0-2: selected option index (0-6), 7 when the question was not answered
+ * - bit 3: answer was correct
+ *
+ * A 20-question result is 11 bytes in the result row, instead of 20 rows in
+ * quiz_answers.
+ */
+public final class PackedAnswers {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final int UNANSWERED = -1;
+    public static final int MAX_OPTIONS = 7;
+
+    private static final int NO_SELECTION = 0b111;
+    private static final int CORRECT_BIT = 0b1000;
+
+    private PackedAnswers() {}
+
+    /**
+     * Pack the selected option of each question (UNANSWERED if none) and whether it was correct.
+     */
+    public static byte[] encode(int[] selectedOptions, boolean[] correct) {
+        if (selectedOptions.length != correct.length) {
+            throw new IllegalArgumentException("One correctness flag is needed per answer");
+        }
+        byte[] packed = new byte[1 + (selectedOptions.length + 1) / 2];
+        packed[0] = (byte) FORMAT_VERSION;
+        for (int i = 0; i < selectedOptions.length; i++) {
+            int selected = selectedOptions[i];
+            if (selected < UNANSWERED || selected >= MAX_OPTIONS) {
+                throw new IllegalArgumentException("Option index out of range: " + selected);
+            }
+            int nibble = (selected == UNANSWERED ? NO_SELECTION : selected) | (correct[i] ? CORRECT_BIT : 0);
+            packed[1 + i / 2] |= (byte) (i % 2 == 0 ? nibble : nibble << 4);
+        }
+        if (selectedOptions.length % 2 != 0) {
+            // The padding slot of an odd count reads as unanswered, not as option 0
+            packed[packed.length - 1] |= (byte) (NO_SELECTION << 4);
+        }
+        return packed;
+    }
+
+    /**
+     * Number of answer slots (the last one may be padding for an odd question count,
+     * reported as unanswered).
+     */
+    public static int size(byte[] packed) {
+        checkVersion(packed);
+        return (packed.length - 1) * 2;
+    }
+
+    /**
+     * Selected option of the question at this position, or UNANSWERED.
+     */
+    public static int selectedOption(byte[] packed, int position) {
+        int selected = nibble(packed, position) & NO_SELECTION;
+        return selected == NO_SELECTION ? UNANSWERED : selected;
+    }
+
+    public static boolean isCorrect(byte[] packed, int position) {
+        return (nibble(packed, position) & CORRECT_BIT) != 0;
+    }
+
+    /**
+     * Selected options of the first count questions.
+     */
+    public static int[] selectedOptions(byte[] packed, int count) {
+        int[] selected = new int[count];
+        for (int i = 0; i < count; i++) {
+            selected[i] = selectedOption(packed, i);
+        }
+        return selected;
+    }
+
+    public static int countCorrect(byte[] packed) {
+        checkVersion(packed);
+        int correct = 0;
+        for (int i = 1; i < packed.length; i++) {
+            correct += ((packed[i] & CORRECT_BIT) != 0 ? 1 : 0) + ((packed[i] & (CORRECT_BIT << 4)) != 0 ? 1 : 0);
+        }
+        return correct;
+    }
+
+    private static int nibble(byte[] packed, int position) {
+        checkVersion(packed);
+        if (position < 0 || 1 + position / 2 >= packed.length) {
+            return NO_SELECTION;
+        }
+        int value = packed[1 + position / 2] & 0xFF;
+        return position % 2 == 0 ? value & 0x0F : value >> 4;
+    }
+
+    private static void checkVersion(byte[] packed) {
+        if (packed == null || packed.length == 0 || packed[0] != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported packed answers format");
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * QuestionItem entity: a question of the shared bank of a course.
+ *
+ * Generated questions are stored once per course, keyed by the hash of their
+ * normalised stem, and quizzes reference them (see QuestionBankService). The
+ * question is stored as a one-question QuizDocument.
+ *
+ * Past quizzes and results refer to an item by id and to its options by
+ * position, so an item is never changed once written: a question generated
+ * again from new course content is a new item of the new index generation.
+ * Only its explanations are filled in, once, when first generated.
+ */
+@Entity
+@Table(name = "question_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_question_item_stem_generation",
+                columnNames = {"course_id", "stem_hash", "index_generation"})
+}, indexes = {
+        @Index(name = "idx_question_item_draw", columnList = "course_id, difficulty, exposures")
+})
+public class QuestionItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "course_id", nullable = false, updatable = false)
+    private Long courseId;
+
+    @Column(name = "stem_hash", nullable = false, updatable = false, length = 64)
+    private String stemHash;
+
+    // Course index generation the question was generated from; older items are not served
+    @Column(name = "index_generation", nullable = false, updatable = false)
+    private int indexGeneration;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "difficulty", nullable = false, updatable = false)
+    private DifficultyLevel difficulty;
+
+    @Column(name = "content", nullable = false, updatable = false, length = 65536)
+    private byte[] content;
+
+    // The question with its explanations, once generated (see QuestionItemRepository.saveExplanations)
+    @Column(name = "explained_content", updatable = false, length = 131072)
+    private byte[] explainedContent;
+
+    // Ids of the course chunks the question was generated from, comma-separated
+    @Column(name = "source_chunk_ids", updatable = false, length = 255)
+    private String sourceChunkIds;
+
+    // Number of quizzes the item was served in
+    @Column(name = "exposures", nullable = false)
+    private int exposures;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public QuestionItem() {}
+
+    public QuestionItem(Long courseId, int indexGeneration, DifficultyLevel difficulty, Question question) {
+        this.courseId = courseId;
+        this.indexGeneration = indexGeneration;
+        this.difficulty = difficulty;
+        this.stemHash = stemHash(question.getQuestionText());
+        this.content = QuizDocument.encode(List.of(question));
+    }
+
+    // Business methods
+    /**
+     * Hash of the normalised stem (lower case, single spaces), so rewordings in
+     * case or spacing are the same item.
+     */
+    public static String stemHash(String questionText) {
+        String stem = questionText == null ? ""
+                : questionText.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(stem.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The question, with its explanations once generated.
+     */
+    public Question getQuestion() {
+        return QuizDocument.decode(explainedContent != null ? explainedContent : content).get(0);
+    }
+
+    public boolean isExplained() {
+        return explainedContent != null;
+    }
+
+    /**
+     * The item's own question with the explanations of the given one copied in,
+     * encoded for saveExplanations; text, options and answer stay the item's.
+     */
+    public byte[] explainedContent(Question explained) {
+        Question question = QuizDocument.decode(content).get(0);
+        question.setExplanation(explained.getExplanation());
+        List<AnswerOption> options = question.getOptions();
+        for (int i = 0; i < options.size() && i < explained.getOptions().size(); i++) {
+            options.get(i).setExplanation(explained.getOptions().get(i).getExplanation());
+        }
+        return QuizDocument.encode(List.of(question));
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getStemHash() {
+        return stemHash;
+    }
+
+    public void setStemHash(String stemHash) {
+        this.stemHash = stemHash;
+    }
+
+    public int getIndexGeneration() {
+        return indexGeneration;
+    }
+
+    public void setIndexGeneration(int indexGeneration) {
+        this.indexGeneration = indexGeneration;
+    }
+
+    public DifficultyLevel getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(DifficultyLevel difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    public byte[] getExplainedContent() {
+        return explainedContent;
+    }
+
+    public void setExplainedContent(byte[] explainedContent) {
+        this.explainedContent = explainedContent;
+    }
+
+    public String getSourceChunkIds() {
+        return sourceChunkIds;
+    }
+
+    public void setSourceChunkIds(String sourceChunkIds) {
+        this.sourceChunkIds = sourceChunkIds;
+    }
+
+    public int getExposures() {
+        return exposures;
+    }
+
+    public void setExposures(int exposures) {
+        this.exposures = exposures;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -2,7 +2,9 @@ package com.example.demo.entity;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -20,6 +22,7 @@ import jakarta.persistence.OneToOne;
 import jakarta.persistence.OrderBy;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 /**
  * Quiz entity representing an AI-generated multiple-choice quiz (QCM).
@@ -60,10 +63,37 @@ public class Quiz {
     @Column(name = "llm_model_used")
     private String llmModelUsed;
 
+    // Generated without explanations; they are added when the result is first viewed
+    @Column(name = "explanations_pending")
+    private boolean explanationsPending = false;
+
+    // Questions stored as rows (quizzes created before document storage)
     @OneToMany(mappedBy = "quiz", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("questionIndex ASC")
     private List<Question> questions = new ArrayList<>();
 
+    // Questions stored as one compressed document (see QuizDocument), also for question bank
+    // quizzes; null for row storage and bank quizzes created without document storage
+    @Column(name = "content", length = 10485760)
+    private byte[] content;
+
+    // Ids of the question bank items the quiz is made of, comma-separated (see QuestionItem);
+    // null for quizzes of generated questions only
+    @Column(name = "item_ids", length = 1000)
+    private String itemIds;
+
+    // Answers selected so far while the quiz is taken, packed like result answers
+    // (see PackedAnswers, correctness unset); written behind by QuizDraftService
+    @Column(name = "draft_answers", length = 1024)
+    private byte[] draftAnswers;
+
+    @Column(name = "draft_saved_at")
+    private LocalDateTime draftSavedAt;
+
+    // Questions decoded from the document, or resolved from the item bank
+    @Transient
+    private List<Question> documentQuestions;
+
     @OneToOne(mappedBy = "quiz", cascade = CascadeType.ALL, orphanRemoval = true)
     private QuizResult result;
 
@@ -94,6 +124,62 @@ public class Quiz {
         return result != null;
     }
 
+    /**
+     * Store the questions as one document instead of rows.
+     */
+    public void setDocumentQuestions(List<Question> questions) {
+        this.content = QuizDocument.encode(questions);
+        this.documentQuestions = null;
+    }
+
+    /**
+     * Write changes made to the decoded questions (e.g. explanations) back to the document.
+     */
+    public void updateDocument() {
+        if (content != null && documentQuestions != null) {
+            this.content = QuizDocument.encode(documentQuestions);
+        }
+    }
+
+    public boolean isDocumentStored() {
+        return content != null;
+    }
+
+    /**
+     * Reference question bank items instead of storing the questions; the
+     * questions are kept for the rest of the request.
+     */
+    public void setItems(List<Long> itemIds, List<Question> questions) {
+        this.itemIds = itemIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        this.documentQuestions = questions;
+    }
+
+    public boolean isItemBacked() {
+        return itemIds != null;
+    }
+
+    /**
+     * Whether the questions must be loaded from the item bank: item-backed
+     * quizzes without their own document.
+     */
+    public boolean requiresItemLoad() {
+        return itemIds != null && content == null;
+    }
+
+    public List<Long> getItemIdList() {
+        if (itemIds == null || itemIds.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(itemIds.split(",")).map(Long::valueOf).toList();
+    }
+
+    /**
+     * Questions of the referenced items, loaded by QuestionBankService.
+     */
+    public void setItemQuestions(List<Question> questions) {
+        this.documentQuestions = questions;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -167,7 +253,27 @@ public class Quiz {
         this.llmModelUsed = llmModelUsed;
     }
 
+    public boolean isExplanationsPending() {
+        return explanationsPending;
+    }
+
+    public void setExplanationsPending(boolean explanationsPending) {
+        this.explanationsPending = explanationsPending;
+    }
+
     public List<Question> getQuestions() {
+        if (content != null) {
+            if (documentQuestions == null) {
+                documentQuestions = QuizDocument.decode(content);
+            }
+            return documentQuestions;
+        }
+        if (itemIds != null) {
+            if (documentQuestions == null) {
+                throw new IllegalStateException("Question bank items of quiz " + id + " are not loaded");
+            }
+            return documentQuestions;
+        }
         return questions;
     }
 
@@ -175,6 +281,40 @@ public class Quiz {
         this.questions = questions;
     }
 
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+        this.documentQuestions = null;
+    }
+
+    public String getItemIds() {
+        return itemIds;
+    }
+
+    public void setItemIds(String itemIds) {
+        this.itemIds = itemIds;
+        this.documentQuestions = null;
+    }
+
+    public byte[] getDraftAnswers() {
+        return draftAnswers;
+    }
+
+    public void setDraftAnswers(byte[] draftAnswers) {
+        this.draftAnswers = draftAnswers;
+    }
+
+    public LocalDateTime getDraftSavedAt() {
+        return draftSavedAt;
+    }
+
+    public void setDraftSavedAt(LocalDateTime draftSavedAt) {
+        this.draftSavedAt = draftSavedAt;
+    }
+
     public QuizResult getResult() {
         return result;
     }
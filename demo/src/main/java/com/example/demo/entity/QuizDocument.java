@@ -0,0 +1,92 @@
+package com.example.demo.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Codec for the content of a quiz stored as a document (quizzes.content).
+ *
+ * The questions, options and explanations of a quiz are written as one
+ * gzip-compressed JSON document with short field names and a schema version:
+ * {"v":1,"q":[{"t":text,"s":source,"c":correct,"e":explanation,"o":[{"t":text,"e":explanation}]}]}
+ *
+ * Decoded questions and options are plain, unmanaged Question / AnswerOption
+ * objects, so views keep using the same model. Their ids are their index in
+ * the quiz, which is what student answers refer to for document quizzes.
+ */
+public final class QuizDocument {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private QuizDocument() {}
+
+    public static byte[] encode(List<Question> questions) {
+        List<QuestionDoc> docs = new ArrayList<>(questions.size());
+        for (Question question : questions) {
+            List<OptionDoc> options = new ArrayList<>(question.getOptions().size());
+            for (AnswerOption option : question.getOptions()) {
+                options.add(new OptionDoc(option.getOptionText(), option.getExplanation()));
+            }
+            docs.add(new QuestionDoc(question.getQuestionText(), question.getSourceContext(),
+                    question.getCorrectOptionIndex(), question.getExplanation(), options));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            MAPPER.writeValue(gzip, new Doc(SCHEMA_VERSION, docs));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode quiz document", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<Question> decode(byte[] content) {
+        Doc doc;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            doc = MAPPER.readValue(gzip, Doc.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode quiz document", e);
+        }
+        if (doc.version() != SCHEMA_VERSION) {
+            throw new IllegalStateException("Unsupported quiz document version: " + doc.version());
+        }
+
+        List<Question> questions = new ArrayList<>(doc.questions().size());
+        for (QuestionDoc questionDoc : doc.questions()) {
+            Question question = new Question(questionDoc.text(), questionDoc.source(),
+                    questionDoc.correct(), questionDoc.explanation());
+            question.setId((long) questions.size());
+            question.setQuestionIndex(questions.size());
+            for (OptionDoc optionDoc : questionDoc.options()) {
+                AnswerOption option = new AnswerOption(optionDoc.text(), optionDoc.explanation());
+                question.addOption(option);
+                option.setId((long) option.getOptionIndex());
+            }
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    private record Doc(@JsonProperty("v") int version, @JsonProperty("q") List<QuestionDoc> questions) {}
+
+    private record QuestionDoc(@JsonProperty("t") String text, @JsonProperty("s") String source,
+                               @JsonProperty("c") int correct, @JsonProperty("e") String explanation,
+                               @JsonProperty("o") List<OptionDoc> options) {}
+
+    private record OptionDoc(@JsonProperty("t") String text, @JsonProperty("e") String explanation) {}
+}
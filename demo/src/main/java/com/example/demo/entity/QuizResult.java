@@ -19,13 +19,16 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 /**
  * QuizResult entity representing the outcome of a student's quiz attempt.
  * Used by the Agentic AI to evaluate performance and decide course validation.
  */
 @Entity
-@Table(name = "quiz_results")
+@Table(name = "quiz_results", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_quiz_result_quiz", columnNames = {"quiz_id"})
+})
 public class QuizResult {
 
     @Id
@@ -64,9 +67,22 @@ public class QuizResult {
     @Column(columnDefinition = "TEXT")
     private String agentFeedback;
 
+    // Score is final; the AI feedback is filled in by a later batched call
+    @Column(name = "feedback_pending")
+    private boolean feedbackPending = false;
+
     @Enumerated(EnumType.STRING)
     private DifficultyLevel recommendedNextDifficulty;
 
+    // Idempotency key of the submission that produced the result, scoped to its quiz and student
+    @Column(name = "submission_key", length = 64)
+    private String submissionKey;
+
+    // Answers packed in question order (see PackedAnswers)
+    @Column(name = "answers", length = 1024)
+    private byte[] answers;
+
+    // One row per answer; only results submitted before packed answers use it
     @ElementCollection
     @CollectionTable(name = "quiz_answers", joinColumns = @JoinColumn(name = "result_id"))
     private List<StudentAnswer> studentAnswers = new ArrayList<>();
@@ -95,6 +111,21 @@ public class QuizResult {
         }
     }
 
+    /**
+     * Answer to the question at this position of the quiz, or null if it was not answered.
+     */
+    public StudentAnswer getAnswer(int position, Question question) {
+        if (answers != null) {
+            int selected = PackedAnswers.selectedOption(answers, position);
+            return selected == PackedAnswers.UNANSWERED ? null
+                    : new StudentAnswer(question.getId(), selected, question.getCorrectOptionIndex());
+        }
+        return studentAnswers.stream()
+                .filter(a -> a.getQuestionId().equals(question.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
     public void addAnswer(StudentAnswer answer) {
         studentAnswers.add(answer);
         if (answer.isCorrect()) {
@@ -200,6 +231,30 @@ public class QuizResult {
         this.recommendedNextDifficulty = recommendedNextDifficulty;
     }
 
+    public boolean isFeedbackPending() {
+        return feedbackPending;
+    }
+
+    public void setFeedbackPending(boolean feedbackPending) {
+        this.feedbackPending = feedbackPending;
+    }
+
+    public String getSubmissionKey() {
+        return submissionKey;
+    }
+
+    public void setSubmissionKey(String submissionKey) {
+        this.submissionKey = submissionKey;
+    }
+
+    public byte[] getAnswers() {
+        return answers;
+    }
+
+    public void setAnswers(byte[] answers) {
+        this.answers = answers;
+    }
+
     public List<StudentAnswer> getStudentAnswers() {
         return studentAnswers;
     }
@@ -0,0 +1,26 @@
+package com.example.demo.entity;
+
+/**
+ * Enumeration representing how well a student recalled a flashcard, with its
+ * SM-2 quality (0-5); below 3 the card was forgotten.
+ */
+public enum ReviewGrade {
+    AGAIN(1),
+    HARD(3),
+    GOOD(4),
+    EASY(5);
+
+    private final int quality;
+
+    ReviewGrade(int quality) {
+        this.quality = quality;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    public boolean isRecalled() {
+        return quality >= 3;
+    }
+}
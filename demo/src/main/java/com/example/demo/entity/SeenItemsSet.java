@@ -0,0 +1,92 @@
+package com.example.demo.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Codec for the question bank items a student has been served in a course,
+ * stored in student_course_stats.seen_items.
+ *
+ * The exact set of item ids, sorted, after a one-byte format version: the
+ * first id then the gap to each next one, as unsigned varints. Item ids are
+ * allocated in sequence, so a gap takes one to three bytes and 5,000 items
+ * fit in about 10 KB; an item never served is never reported as seen.
+ */
+public final class SeenItemsSet {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final long[] NONE = new long[0];
+
+    private SeenItemsSet() {}
+
+    public static byte[] empty() {
+        return encode(NONE);
+    }
+
+    /**
+     * Sorted ids of the set (none if null or of another format).
+     */
+    public static long[] decode(byte[] packed) {
+        if (packed == null || packed.length == 0 || packed[0] != FORMAT_VERSION) {
+            return NONE;
+        }
+        long[] ids = new long[16];
+        int count = 0;
+        long previous = 0;
+        int position = 1;
+        while (position < packed.length) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = packed[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += value;
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = previous;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    public static byte[] encode(long[] sortedIds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + sortedIds.length * 2);
+        out.write(FORMAT_VERSION);
+        long previous = 0;
+        for (long id : sortedIds) {
+            long gap = id - previous;
+            if (gap < 0) {
+                throw new IllegalArgumentException("Item ids must be sorted and positive");
+            }
+            while ((gap & ~0x7FL) != 0) {
+                out.write((int) ((gap & 0x7F) | 0x80));
+                gap >>>= 7;
+            }
+            out.write((int) gap);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Union of the sorted ids and the items.
+     */
+    public static long[] add(long[] sortedIds, Collection<Long> itemIds) {
+        long[] merged = Arrays.copyOf(sortedIds, sortedIds.length + itemIds.size());
+        int count = sortedIds.length;
+        for (Long itemId : itemIds) {
+            merged[count++] = itemId;
+        }
+        Arrays.sort(merged);
+        return Arrays.stream(merged).distinct().toArray();
+    }
+
+    public static boolean contains(long[] sortedIds, long itemId) {
+        return Arrays.binarySearch(sortedIds, itemId) >= 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * StudentCourseStats entity holding the quiz performance of a student in a
+ * course, maintained incrementally on each evaluation (see StudentStatsService)
+ * so adaptive decisions do not need to scan the student's results.
+ */
+@Entity
+@Table(name = "student_course_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_student_course_stats", columnNames = {"student_id", "course_id"})
+})
+public class StudentCourseStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "passes", nullable = false)
+    private int passes;
+
+    @Column(name = "score_sum", nullable = false)
+    private double scoreSum;
+
+    // Exponentially weighted moving average of the scores, recent attempts weigh most
+    @Column(name = "recent_score", nullable = false)
+    private double recentScore;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_difficulty")
+    private DifficultyLevel lastDifficulty;
+
+    // Question bank items served to the student (see SeenItemsSet)
+    @Column(name = "seen_items", length = 1048576)
+    private byte[] seenItems;
+
+    // Incremented on each change of seen_items, so concurrent changes never overwrite each other
+    @Column(name = "seen_version", nullable = false)
+    private int seenVersion;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public StudentCourseStats() {}
+
+    // Business methods
+    public double getAverageScore() {
+        return attempts > 0 ? scoreSum / attempts : 0.0;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Long courseId) {
+        this.courseId = courseId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    public void setPasses(int passes) {
+        this.passes = passes;
+    }
+
+    public double getScoreSum() {
+        return scoreSum;
+    }
+
+    public void setScoreSum(double scoreSum) {
+        this.scoreSum = scoreSum;
+    }
+
+    public double getRecentScore() {
+        return recentScore;
+    }
+
+    public void setRecentScore(double recentScore) {
+        this.recentScore = recentScore;
+    }
+
+    public DifficultyLevel getLastDifficulty() {
+        return lastDifficulty;
+    }
+
+    public void setLastDifficulty(DifficultyLevel lastDifficulty) {
+        this.lastDifficulty = lastDifficulty;
+    }
+
+    public byte[] getSeenItems() {
+        return seenItems;
+    }
+
+    public void setSeenItems(byte[] seenItems) {
+        this.seenItems = seenItems;
+    }
+
+    public int getSeenVersion() {
+        return seenVersion;
+    }
+
+    public void setSeenVersion(int seenVersion) {
+        this.seenVersion = seenVersion;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
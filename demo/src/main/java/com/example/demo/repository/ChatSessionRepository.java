@@ -0,0 +1,43 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.ChatSession;
+
+/**
+ * Repository for ChatSession entity operations.
+ */
+@Repository
+public interface ChatSessionRepository extends JpaRepository<ChatSession, Long> {
+
+    Optional<ChatSession> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Reserve the next count turn seqs of a session. The row stays locked
+     * until the transaction ends, so concurrent appends take turns.
+     */
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.lastSeq = s.lastSeq + :count, s.updatedAt = :now WHERE s.id = :sessionId")
+    int reserveSeqs(@Param("sessionId") Long sessionId, @Param("count") int count, @Param("now") LocalDateTime now);
+
+    @Query("SELECT s.lastSeq FROM ChatSession s WHERE s.id = :sessionId")
+    int findLastSeq(@Param("sessionId") Long sessionId);
+
+    /**
+     * Replace the summary, unless the session was compacted by another turn
+     * since previousSeq was read.
+     */
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.summary = :summary, s.summarizedThroughSeq = :throughSeq, s.updatedAt = :now " +
+           "WHERE s.id = :sessionId AND s.summarizedThroughSeq = :previousSeq")
+    int updateSummary(@Param("sessionId") Long sessionId, @Param("summary") String summary,
+                      @Param("previousSeq") int previousSeq, @Param("throughSeq") int throughSeq,
+                      @Param("now") LocalDateTime now);
+}
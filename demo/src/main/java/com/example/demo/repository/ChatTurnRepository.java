@@ -0,0 +1,23 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.ChatTurn;
+
+/**
+ * Repository for ChatTurn entity operations.
+ */
+@Repository
+public interface ChatTurnRepository extends JpaRepository<ChatTurn, Long> {
+
+    /**
+     * Turns not yet folded into the session summary (the sliding window).
+     */
+    @Query("SELECT t FROM ChatTurn t WHERE t.sessionId = :sessionId AND t.seq > :afterSeq ORDER BY t.seq ASC")
+    List<ChatTurn> findWindow(@Param("sessionId") Long sessionId, @Param("afterSeq") int afterSeq);
+}
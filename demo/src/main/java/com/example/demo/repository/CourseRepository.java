@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -46,4 +47,10 @@ public interface CourseRepository extends JpaRepository<Course, Long> {
     List<Course> findCoursesWithoutModule();
 
     List<Course> findAllByOrderByModuleIdAscDisplayOrderAscTitleAsc();
+
+    @Query("SELECT c.indexGeneration FROM Course c WHERE c.id = :courseId")
+    Optional<Integer> findIndexGeneration(@Param("courseId") Long courseId);
+
+    @Query("SELECT c.id FROM Course c WHERE c.indexed = true AND c.summary IS NULL")
+    List<Long> findIndexedIdsWithoutSummary();
 }
@@ -0,0 +1,17 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.CourseSectionSummary;
+
+/**
+ * Repository for CourseSectionSummary entity operations.
+ */
+@Repository
+public interface CourseSectionSummaryRepository extends JpaRepository<CourseSectionSummary, Long> {
+
+    List<CourseSectionSummary> findByCourseIdOrderBySectionIndexAsc(Long courseId);
+}
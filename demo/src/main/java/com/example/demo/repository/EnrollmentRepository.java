@@ -1,9 +1,11 @@
 package com.example.demo.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,6 +26,16 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
     Optional<Enrollment> findByStudentIdAndCourseId(Long studentId, Long courseId);
     
     boolean existsByStudentIdAndCourseId(Long studentId, Long courseId);
+
+    /**
+     * Claim the generation of the student's first flashcard deck: 1 for the
+     * first caller, 0 once claimed.
+     */
+    @Modifying
+    @Query("UPDATE Enrollment e SET e.flashcardDeckRequestedAt = :now " +
+           "WHERE e.student.id = :studentId AND e.course.id = :courseId AND e.flashcardDeckRequestedAt IS NULL")
+    int claimFlashcardDeck(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                           @Param("now") LocalDateTime now);
     
     List<Enrollment> findByStudentIdAndStatus(Long studentId, EnrollmentStatus status);
     
@@ -0,0 +1,42 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.Flashcard;
+
+/**
+ * Repository for Flashcard entity operations.
+ * Due queries read the (student, course, due) index in order and stop at the page size.
+ */
+@Repository
+public interface FlashcardRepository extends JpaRepository<Flashcard, Long> {
+
+    @Query("SELECT f FROM Flashcard f WHERE f.studentId = :studentId AND f.courseId = :courseId " +
+           "AND f.dueAt <= :now ORDER BY f.dueAt ASC")
+    List<Flashcard> findDue(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                            @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT COUNT(f) FROM Flashcard f WHERE f.studentId = :studentId AND f.courseId = :courseId " +
+           "AND f.dueAt <= :now")
+    long countDue(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                  @Param("now") LocalDateTime now);
+
+    @Query("SELECT MIN(f.dueAt) FROM Flashcard f WHERE f.studentId = :studentId AND f.courseId = :courseId")
+    Optional<LocalDateTime> findNextDueAt(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
+
+    @Query("SELECT f.cardHash FROM Flashcard f WHERE f.studentId = :studentId AND f.courseId = :courseId " +
+           "AND f.cardHash IN :cardHashes")
+    List<String> findExistingHashes(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                                    @Param("cardHashes") Collection<String> cardHashes);
+
+    boolean existsByStudentIdAndCourseId(Long studentId, Long courseId);
+}
@@ -0,0 +1,21 @@
+package com.example.demo.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.ItemCalibration;
+
+/**
+ * Repository for ItemCalibration entity operations.
+ */
+@Repository
+public interface ItemCalibrationRepository extends JpaRepository<ItemCalibration, Long> {
+
+    Optional<ItemCalibration> findByCourseIdAndItemKey(Long courseId, String itemKey);
+
+    List<ItemCalibration> findByCourseIdAndItemKeyIn(Long courseId, Collection<String> itemKeys);
+}
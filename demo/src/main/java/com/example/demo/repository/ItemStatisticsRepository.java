@@ -0,0 +1,23 @@
+package com.example.demo.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.ItemStatistics;
+
+/**
+ * Repository for ItemStatistics entity operations.
+ */
+@Repository
+public interface ItemStatisticsRepository extends JpaRepository<ItemStatistics, Long> {
+
+    List<ItemStatistics> findByCourseIdAndStemHashIn(Long courseId, Collection<String> stemHashes);
+
+    @Query("SELECT s FROM ItemStatistics s WHERE s.courseId = :courseId ORDER BY s.responses DESC, s.id ASC")
+    List<ItemStatistics> findByCourseId(@Param("courseId") Long courseId);
+}
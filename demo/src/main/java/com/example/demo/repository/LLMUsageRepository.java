@@ -0,0 +1,52 @@
+package com.example.demo.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.dto.LLMUsageSummaryDTO;
+import com.example.demo.entity.LLMUsage;
+import com.example.demo.entity.Role;
+
+/**
+ * Repository for LLMUsage entity operations.
+ */
+@Repository
+public interface LLMUsageRepository extends JpaRepository<LLMUsage, Long> {
+
+    /**
+     * The row of a usage key (null ids match null columns). Rows written before
+     * usage was upserted may be several; the first one is extended.
+     */
+    Optional<LLMUsage> findFirstByUsageDateAndUserIdAndRoleAndCourseIdAndOperationAndModelOrderByIdAsc(
+            LocalDate usageDate, Long userId, Role role, Long courseId, String operation, String model);
+
+    @Query("SELECT COALESCE(SUM(u.inputTokens + u.outputTokens), 0) FROM LLMUsage u WHERE u.usageDate = :date AND u.userId = :userId")
+    long sumTokensByDateAndUserId(@Param("date") LocalDate date, @Param("userId") Long userId);
+
+    @Query("SELECT COALESCE(SUM(u.inputTokens + u.outputTokens), 0) FROM LLMUsage u WHERE u.usageDate = :date AND u.courseId = :courseId")
+    long sumTokensByDateAndCourseId(@Param("date") LocalDate date, @Param("courseId") Long courseId);
+
+    @Query("SELECT new com.example.demo.dto.LLMUsageSummaryDTO(u.operation, SUM(u.callCount), SUM(u.inputTokens), SUM(u.outputTokens), SUM(u.cachedInputTokens), SUM(u.totalLatencyMs)) " +
+           "FROM LLMUsage u WHERE u.usageDate >= :since GROUP BY u.operation ORDER BY SUM(u.inputTokens + u.outputTokens) DESC")
+    List<LLMUsageSummaryDTO> summarizeByOperationSince(@Param("since") LocalDate since);
+
+    @Query("SELECT new com.example.demo.dto.LLMUsageSummaryDTO(u.model, SUM(u.callCount), SUM(u.inputTokens), SUM(u.outputTokens), SUM(u.cachedInputTokens), SUM(u.totalLatencyMs)) " +
+           "FROM LLMUsage u WHERE u.usageDate >= :since GROUP BY u.model ORDER BY SUM(u.inputTokens + u.outputTokens) DESC")
+    List<LLMUsageSummaryDTO> summarizeByModelSince(@Param("since") LocalDate since);
+
+    @Query("SELECT new com.example.demo.dto.LLMUsageSummaryDTO(usr.id, usr.fullName, SUM(u.callCount), SUM(u.inputTokens), SUM(u.outputTokens), SUM(u.cachedInputTokens), SUM(u.totalLatencyMs)) " +
+           "FROM LLMUsage u, User usr WHERE usr.id = u.userId AND u.usageDate >= :since " +
+           "GROUP BY usr.id, usr.fullName ORDER BY SUM(u.inputTokens + u.outputTokens) DESC")
+    List<LLMUsageSummaryDTO> summarizeByUserSince(@Param("since") LocalDate since);
+
+    @Query("SELECT new com.example.demo.dto.LLMUsageSummaryDTO(c.id, c.title, SUM(u.callCount), SUM(u.inputTokens), SUM(u.outputTokens), SUM(u.cachedInputTokens), SUM(u.totalLatencyMs)) " +
+           "FROM LLMUsage u, Course c WHERE c.id = u.courseId AND u.usageDate >= :since " +
+           "GROUP BY c.id, c.title ORDER BY SUM(u.inputTokens + u.outputTokens) DESC")
+    List<LLMUsageSummaryDTO> summarizeByCourseSince(@Param("since") LocalDate since);
+}
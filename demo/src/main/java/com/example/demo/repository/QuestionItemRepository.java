@@ -0,0 +1,43 @@
+package com.example.demo.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.QuestionItem;
+
+/**
+ * Repository for QuestionItem entity operations.
+ */
+@Repository
+public interface QuestionItemRepository extends JpaRepository<QuestionItem, Long> {
+
+    List<QuestionItem> findByCourseIdAndIndexGenerationAndStemHashIn(Long courseId, int indexGeneration,
+                                                                    Collection<String> stemHashes);
+
+    /**
+     * Items of a course and level generated from the current content, least served first.
+     */
+    @Query("SELECT i FROM QuestionItem i WHERE i.courseId = :courseId AND i.indexGeneration = :generation " +
+           "AND i.difficulty = :difficulty ORDER BY i.exposures ASC, i.id ASC")
+    List<QuestionItem> findDrawCandidates(@Param("courseId") Long courseId, @Param("generation") int generation,
+                                          @Param("difficulty") DifficultyLevel difficulty, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE QuestionItem i SET i.exposures = i.exposures + 1 WHERE i.id IN :ids")
+    int incrementExposures(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Store the explained question of an item, unless it was already explained.
+     */
+    @Modifying
+    @Query("UPDATE QuestionItem i SET i.explainedContent = :content WHERE i.id = :id AND i.explainedContent IS NULL")
+    int saveExplanations(@Param("id") Long id, @Param("content") byte[] content);
+}
@@ -1,8 +1,11 @@
 package com.example.demo.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,12 +27,22 @@ public interface QuizRepository extends JpaRepository<Quiz, Long> {
     @Query("SELECT q FROM Quiz q WHERE q.student.id = :studentId ORDER BY q.createdAt DESC")
     List<Quiz> findByStudentIdOrderByCreatedAtDesc(@Param("studentId") Long studentId);
     
-    @Query("SELECT q FROM Quiz q LEFT JOIN FETCH q.questions WHERE q.id = :quizId")
-    Quiz findByIdWithQuestions(@Param("quizId") Long quizId);
+    /**
+     * Quiz with everything its take and result pages render, in one query.
+     * Document quizzes carry their questions in the row; questions stored as
+     * rows are loaded separately (QuestionRepository.findByQuizIdWithOptions).
+     */
+    @EntityGraph(attributePaths = {"course", "result", "result.studentAnswers"})
+    @Query("SELECT q FROM Quiz q WHERE q.id = :quizId")
+    Quiz findByIdForView(@Param("quizId") Long quizId);
     
     @Query("SELECT COUNT(q) FROM Quiz q WHERE q.student.id = :studentId")
     long countByStudentId(@Param("studentId") Long studentId);
     
     @Query("SELECT COUNT(q) FROM Quiz q WHERE q.course.id = :courseId")
     long countByCourseId(@Param("courseId") Long courseId);
+    
+    @Modifying
+    @Query("UPDATE Quiz q SET q.draftAnswers = :answers, q.draftSavedAt = :savedAt WHERE q.id = :quizId")
+    int saveDraft(@Param("quizId") Long quizId, @Param("answers") byte[] answers, @Param("savedAt") LocalDateTime savedAt);
 }
@@ -1,12 +1,15 @@
 package com.example.demo.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.entity.QuizResult;
 
@@ -37,4 +40,15 @@ public interface QuizResultRepository extends JpaRepository<QuizResult, Long> {
     
     @Query("SELECT COUNT(qr) FROM QuizResult qr WHERE qr.quiz.course.id = :courseId AND qr.student.id = :studentId AND qr.passed = true")
     long countPassedByCourseIdAndStudentId(@Param("courseId") Long courseId, @Param("studentId") Long studentId);
+
+    @Query("SELECT qr FROM QuizResult qr WHERE qr.quiz.id IN :quizIds")
+    List<QuizResult> findByQuizIdIn(@Param("quizIds") Collection<Long> quizIds);
+
+    @Query("SELECT qr FROM QuizResult qr JOIN FETCH qr.quiz q JOIN FETCH q.course WHERE qr.feedbackPending = true")
+    List<QuizResult> findFeedbackPending();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE QuizResult qr SET qr.agentFeedback = :feedback, qr.feedbackPending = false WHERE qr.id = :resultId")
+    int updateFeedback(@Param("resultId") Long resultId, @Param("feedback") String feedback);
 }
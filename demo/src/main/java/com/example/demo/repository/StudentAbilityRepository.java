@@ -0,0 +1,17 @@
+package com.example.demo.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.StudentAbility;
+
+/**
+ * Repository for StudentAbility entity operations.
+ */
+@Repository
+public interface StudentAbilityRepository extends JpaRepository<StudentAbility, Long> {
+
+    Optional<StudentAbility> findByStudentIdAndCourseId(Long studentId, Long courseId);
+}
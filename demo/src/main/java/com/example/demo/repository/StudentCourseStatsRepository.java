@@ -0,0 +1,89 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.StudentCourseStats;
+
+/**
+ * Repository for StudentCourseStats entity operations.
+ */
+@Repository
+public interface StudentCourseStatsRepository extends JpaRepository<StudentCourseStats, Long> {
+
+    Optional<StudentCourseStats> findByStudentIdAndCourseId(Long studentId, Long courseId);
+
+    @Query("SELECT s.passes FROM StudentCourseStats s WHERE s.studentId = :studentId AND s.courseId = :courseId")
+    Optional<Integer> findPasses(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
+
+    @Query("SELECT s.seenItems FROM StudentCourseStats s WHERE s.studentId = :studentId AND s.courseId = :courseId")
+    Optional<byte[]> findSeenItems(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
+
+    @Query("SELECT s.seenItems AS seenItems, s.seenVersion AS seenVersion FROM StudentCourseStats s " +
+           "WHERE s.studentId = :studentId AND s.courseId = :courseId")
+    Optional<SeenItems> findSeenItemsVersion(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
+
+    /**
+     * Replace the seen items if they are still at the given version (0 rows
+     * updated if they changed meanwhile).
+     */
+    @Modifying
+    @Query("UPDATE StudentCourseStats s SET s.seenItems = :seenItems, s.seenVersion = s.seenVersion + 1 " +
+           "WHERE s.studentId = :studentId AND s.courseId = :courseId AND s.seenVersion = :version")
+    int updateSeenItems(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                        @Param("seenItems") byte[] seenItems, @Param("version") int version);
+
+    /**
+     * Create the (empty) stats row of a student and course if it does not exist
+     * yet. Concurrent inserts of the same row may still both pass the check:
+     * the unique constraint rejects the second one.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO student_course_stats (student_id, course_id, attempts, passes, score_sum, recent_score, seen_version) " +
+                   "SELECT :studentId, :courseId, 0, 0, 0, 0, 0 WHERE NOT EXISTS " +
+                   "(SELECT 1 FROM student_course_stats WHERE student_id = :studentId AND course_id = :courseId)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
+
+    /**
+     * Add one attempt in a single statement, so concurrent evaluations never
+     * lose an update. The first attempt sets the recent score.
+     */
+    @Modifying
+    @Query(value = "UPDATE student_course_stats SET attempts = attempts + 1, passes = passes + :passed, " +
+                   "score_sum = score_sum + :score, " +
+                   "recent_score = CASE WHEN attempts = 0 THEN :score ELSE recent_score + :alpha * (:score - recent_score) END, " +
+                   "last_difficulty = :difficulty, updated_at = :now " +
+                   "WHERE student_id = :studentId AND course_id = :courseId",
+           nativeQuery = true)
+    int recordAttempt(@Param("studentId") Long studentId, @Param("courseId") Long courseId,
+                      @Param("score") double score, @Param("passed") int passed, @Param("alpha") double alpha,
+                      @Param("difficulty") String difficulty, @Param("now") LocalDateTime now);
+
+    /**
+     * Build the stats of every student and course from the existing quiz results
+     * (the recent score starts as the average).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO student_course_stats (student_id, course_id, attempts, passes, score_sum, recent_score, seen_version, updated_at) " +
+                   "SELECT r.student_id, q.course_id, COUNT(*), SUM(CASE WHEN r.passed THEN 1 ELSE 0 END), " +
+                   "SUM(r.score_percentage), AVG(r.score_percentage), 0, MAX(r.completed_at) " +
+                   "FROM quiz_results r JOIN quizzes q ON q.id = r.quiz_id GROUP BY r.student_id, q.course_id",
+           nativeQuery = true)
+    int rebuildFromResults();
+
+    /**
+     * Seen items of a stats row with their version.
+     */
+    interface SeenItems {
+        byte[] getSeenItems();
+
+        int getSeenVersion();
+    }
+}
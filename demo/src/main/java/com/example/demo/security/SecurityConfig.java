@@ -34,6 +34,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         // Public resources
                         .requestMatchers("/", "/login", "/css/**", "/js/**", "/images/**", "/webjars/**", "/error").permitAll()
+                        // Health probes for load balancers
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
                         // H2 Console for development
                         .requestMatchers("/h2-console/**").permitAll()
                         // Super Admin endpoints (ADMINISTRATOR role)
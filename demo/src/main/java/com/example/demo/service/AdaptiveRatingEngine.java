@@ -0,0 +1,402 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.ItemCalibration;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.QuestionItem;
+import com.example.demo.entity.StudentAbility;
+import com.example.demo.repository.ItemCalibrationRepository;
+import com.example.demo.repository.StudentAbilityRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Adaptive Rating Engine.
+ *
+ * Online Elo-style estimation of a Rasch (1PL IRT) model, per course:
+ * 1. Each student has an ability and each item a difficulty on a logit scale;
+ *    the chance of a correct answer is 1 / (1 + e^(difficulty - ability))
+ * 2. Items are the questions (keyed by their stem hash) and the difficulty levels
+ *    (the expected difficulty of the questions generated at that level, which
+ *    is also the starting difficulty of a new question)
+ * 3. Every answered question moves the ability and the difficulties by
+ *    k x (outcome - expected), k shrinking as the rating gathers answers
+ * 4. A new quiz gets the level where the student's expected success is
+ *    closest to target-success
+ *
+ * Ratings live in memory and are updated by compare-and-set, so concurrent
+ * submissions never block each other. Changed ratings are written in one batch
+ * every flush interval; ratings unchanged for a whole interval are dropped
+ * from memory and reloaded from the database on next use.
+ */
+@Component
+public class AdaptiveRatingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRatingEngine.class);
+
+    private static final Map<DifficultyLevel, Double> LEVEL_PRIORS = new EnumMap<>(Map.of(
+            DifficultyLevel.EASY, -1.5,
+            DifficultyLevel.MEDIUM, -0.5,
+            DifficultyLevel.HARD, 0.5,
+            DifficultyLevel.EXPERT, 1.5));
+
+    // Marks a slot dropped from memory; updates seeing it retry on a reloaded slot
+    private static final Rating RETIRED = new Rating(Double.NaN, -1);
+
+    private final StudentAbilityRepository abilityRepository;
+    private final ItemCalibrationRepository calibrationRepository;
+
+    private final Map<StudentKey, Slot> students = new ConcurrentHashMap<>();
+    private final Map<ItemKey, Slot> items = new ConcurrentHashMap<>();
+
+    @Value("${app.adaptive.target-success:0.7}")
+    private double targetSuccess;
+
+    @Value("${app.adaptive.student-k:0.4}")
+    private double studentK;
+
+    @Value("${app.adaptive.item-k:0.2}")
+    private double itemK;
+
+    @Value("${app.adaptive.k-decay:0.05}")
+    private double kDecay;
+
+    public AdaptiveRatingEngine(StudentAbilityRepository abilityRepository,
+                                ItemCalibrationRepository calibrationRepository) {
+        this.abilityRepository = abilityRepository;
+        this.calibrationRepository = calibrationRepository;
+    }
+
+    /**
+     * Update the student's ability and the difficulty of each answered question
+     * and of the quiz level. Unanswered questions (UNANSWERED) are skipped.
+     * Inside a transaction the ratings are updated once it commits, so a
+     * submission rolled back is not counted.
+     *
+     * @return the student's ability once the answers are applied (the
+     *         ratings themselves may not be updated yet)
+     */
+    public double recordAnswers(Long studentId, Long courseId, DifficultyLevel level,
+                                List<Question> questions, int[] selectedOptions, boolean[] correct) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAnswers(studentId, courseId, level, questions, selectedOptions, correct);
+                }
+            });
+            return projectAbility(studentId, courseId, level, questions, selectedOptions, correct);
+        }
+        applyAnswers(studentId, courseId, level, questions, selectedOptions, correct);
+        return getAbility(studentId, courseId);
+    }
+
+    /**
+     * Ability the student will have once the answers are applied, computed as
+     * applyAnswers does without changing any rating.
+     */
+    private double projectAbility(Long studentId, Long courseId, DifficultyLevel level,
+                                  List<Question> questions, int[] selectedOptions, boolean[] correct) {
+        Function<ItemKey, Slot> questionLoader = questionLoader(courseId, level);
+        Rating student = current(students, new StudentKey(studentId, courseId), this::loadStudent);
+        double ability = student.value();
+        int count = student.count();
+        for (int i = 0; i < questions.size(); i++) {
+            if (selectedOptions[i] < 0) {
+                continue;
+            }
+            ItemKey questionKey = new ItemKey(courseId, questionKey(questions.get(i)));
+            double difficulty = current(items, questionKey, questionLoader).value();
+            double residual = (correct[i] ? 1.0 : 0.0) - expectedSuccess(ability, difficulty);
+            ability += studentK / (1.0 + kDecay * count) * residual;
+            count++;
+        }
+        return ability;
+    }
+
+    private void applyAnswers(Long studentId, Long courseId, DifficultyLevel level,
+                              List<Question> questions, int[] selectedOptions, boolean[] correct) {
+        StudentKey studentKey = new StudentKey(studentId, courseId);
+        ItemKey levelKey = new ItemKey(courseId, levelKey(level));
+        Function<ItemKey, Slot> levelLoader = levelLoader(level);
+        Function<ItemKey, Slot> questionLoader = questionLoader(courseId, level);
+
+        for (int i = 0; i < questions.size(); i++) {
+            if (selectedOptions[i] < 0) {
+                continue;
+            }
+            ItemKey questionKey = new ItemKey(courseId, questionKey(questions.get(i)));
+            double ability = current(students, studentKey, this::loadStudent).value();
+            double difficulty = current(items, questionKey, questionLoader).value();
+            double residual = (correct[i] ? 1.0 : 0.0) - expectedSuccess(ability, difficulty);
+
+            update(students, studentKey, this::loadStudent, studentK, residual);
+            update(items, questionKey, questionLoader, itemK, -residual);
+            update(items, levelKey, levelLoader, itemK, -residual);
+        }
+    }
+
+    /**
+     * Level whose expected success for the student is closest to the target.
+     */
+    public DifficultyLevel selectDifficulty(Long studentId, Long courseId) {
+        return selectDifficultyForAbility(courseId, getAbility(studentId, courseId));
+    }
+
+    /**
+     * Level whose expected success for the given ability is closest to the target.
+     */
+    public DifficultyLevel selectDifficultyForAbility(Long courseId, double ability) {
+        DifficultyLevel best = DifficultyLevel.MEDIUM;
+        double bestGap = Double.MAX_VALUE;
+        for (DifficultyLevel level : DifficultyLevel.values()) {
+            double difficulty = current(items, new ItemKey(courseId, levelKey(level)), levelLoader(level)).value();
+            double gap = successGap(ability, difficulty);
+            if (gap < bestGap) {
+                bestGap = gap;
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    public double getAbility(Long studentId, Long courseId) {
+        return current(students, new StudentKey(studentId, courseId), this::loadStudent).value();
+    }
+
+    /**
+     * Calibration key of a question: the hash of its normalised stem, so the
+     * same question keeps its rating across quizzes.
+     */
+    public static String questionKey(Question question) {
+        return questionKey(QuestionItem.stemHash(question.getQuestionText()));
+    }
+
+    public static String questionKey(String stemHash) {
+        return "question:" + stemHash;
+    }
+
+    /**
+     * Calibrated difficulty of questions of a course, by stem hash; questions
+     * never answered get the current difficulty of the level. Read-only: the
+     * ratings not in memory are loaded in one query and not kept.
+     */
+    public Map<String, Double> questionDifficulties(Long courseId, DifficultyLevel level, Collection<String> stemHashes) {
+        double levelDifficulty = current(items, new ItemKey(courseId, levelKey(level)), levelLoader(level)).value();
+        Map<String, Double> difficulties = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String stemHash : stemHashes) {
+            Slot slot = items.get(new ItemKey(courseId, questionKey(stemHash)));
+            Rating rating = slot != null ? slot.rating.get() : RETIRED;
+            if (rating != RETIRED) {
+                difficulties.put(stemHash, rating.value());
+            } else {
+                missing.add(questionKey(stemHash));
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (ItemCalibration calibration : calibrationRepository.findByCourseIdAndItemKeyIn(courseId, missing)) {
+                difficulties.put(calibration.getItemKey().substring("question:".length()), calibration.getDifficulty());
+            }
+        }
+        for (String stemHash : stemHashes) {
+            difficulties.putIfAbsent(stemHash, levelDifficulty);
+        }
+        return difficulties;
+    }
+
+    /**
+     * Distance between the expected success of a student on an item and the target.
+     */
+    public double successGap(double ability, double difficulty) {
+        return Math.abs(expectedSuccess(ability, difficulty) - targetSuccess);
+    }
+
+    public static double expectedSuccess(double ability, double difficulty) {
+        return 1.0 / (1.0 + Math.exp(difficulty - ability));
+    }
+
+    /**
+     * Write the ratings changed since the last flush, and drop from memory the
+     * ones unchanged since then.
+     */
+    @Scheduled(fixedDelayString = "${app.adaptive.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        flushSlots(students, (key, slot, rating) -> {
+            StudentAbility ability = new StudentAbility(key.studentId(), key.courseId());
+            ability.setId(slot.rowId);
+            ability.setAbility(rating.value());
+            ability.setAnswered(rating.count());
+            ability.setUpdatedAt(LocalDateTime.now());
+            return ability;
+        }, abilityRepository::saveAll, StudentAbility::getId);
+
+        flushSlots(items, (key, slot, rating) -> {
+            ItemCalibration calibration = new ItemCalibration(key.courseId(), key.itemKey());
+            calibration.setId(slot.rowId);
+            calibration.setDifficulty(rating.value());
+            calibration.setAnswered(rating.count());
+            calibration.setUpdatedAt(LocalDateTime.now());
+            return calibration;
+        }, calibrationRepository::saveAll, ItemCalibration::getId);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not flush adaptive ratings on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private <K, E> void flushSlots(Map<K, Slot> slots, RowMapper<K, E> mapper,
+                                   Function<List<E>, List<E>> saveAll, Function<E, Long> idOf) {
+        List<Slot> written = new ArrayList<>();
+        List<Rating> ratings = new ArrayList<>();
+        List<E> rows = new ArrayList<>();
+
+        for (Map.Entry<K, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            Rating rating = slot.rating.get();
+            if (slot.dirty.getAndSet(false)) {
+                Rating latest = slot.rating.get();
+                written.add(slot);
+                ratings.add(latest);
+                rows.add(mapper.toRow(entry.getKey(), slot, latest));
+            } else if (rating == slot.flushed && slot.rating.compareAndSet(rating, RETIRED)) {
+                slots.remove(entry.getKey(), slot);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<E> saved = saveAll.apply(rows);
+            for (int i = 0; i < written.size(); i++) {
+                written.get(i).rowId = idOf.apply(saved.get(i));
+                written.get(i).flushed = ratings.get(i);
+            }
+            logger.debug("Flushed {} adaptive ratings", rows.size());
+        } catch (RuntimeException e) {
+            written.forEach(slot -> slot.dirty.set(true));
+            throw e;
+        }
+    }
+
+    private <K> Rating current(Map<K, Slot> slots, K key, Function<K, Slot> loader) {
+        while (true) {
+            Slot slot = slot(slots, key, loader);
+            Rating rating = slot.rating.get();
+            if (rating != RETIRED) {
+                return rating;
+            }
+            slots.remove(key, slot);
+        }
+    }
+
+    private <K> void update(Map<K, Slot> slots, K key, Function<K, Slot> loader, double baseK, double residual) {
+        while (true) {
+            Slot slot = slot(slots, key, loader);
+            Rating rating = slot.rating.get();
+            if (rating == RETIRED) {
+                slots.remove(key, slot);
+                continue;
+            }
+            double k = baseK / (1.0 + kDecay * rating.count());
+            if (slot.rating.compareAndSet(rating, new Rating(rating.value() + k * residual, rating.count() + 1))) {
+                slot.dirty.set(true);
+                return;
+            }
+        }
+    }
+
+    private <K> Slot slot(Map<K, Slot> slots, K key, Function<K, Slot> loader) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            Slot loaded = loader.apply(key);
+            slot = slots.putIfAbsent(key, loaded);
+            if (slot == null) {
+                slot = loaded;
+            }
+        }
+        return slot;
+    }
+
+    private Slot loadStudent(StudentKey key) {
+        return abilityRepository.findByStudentIdAndCourseId(key.studentId(), key.courseId())
+                .map(row -> new Slot(new Rating(row.getAbility(), row.getAnswered()), row.getId()))
+                .orElseGet(() -> new Slot(new Rating(0.0, 0), null));
+    }
+
+    /**
+     * Levels start from their prior; a new question starts from the current
+     * difficulty of the level it was generated at.
+     */
+    private Function<ItemKey, Slot> levelLoader(DifficultyLevel level) {
+        double prior = LEVEL_PRIORS.get(level != null ? level : DifficultyLevel.MEDIUM);
+        return key -> loadItem(key, prior);
+    }
+
+    private Function<ItemKey, Slot> questionLoader(Long courseId, DifficultyLevel level) {
+        ItemKey levelKey = new ItemKey(courseId, levelKey(level));
+        Function<ItemKey, Slot> levelLoader = levelLoader(level);
+        return key -> loadItem(key, current(items, levelKey, levelLoader).value());
+    }
+
+    private Slot loadItem(ItemKey key, double prior) {
+        return calibrationRepository.findByCourseIdAndItemKey(key.courseId(), key.itemKey())
+                .map(row -> new Slot(new Rating(row.getDifficulty(), row.getAnswered()), row.getId()))
+                .orElseGet(() -> new Slot(new Rating(prior, 0), null));
+    }
+
+    private static String levelKey(DifficultyLevel level) {
+        return "level:" + (level != null ? level : DifficultyLevel.MEDIUM).name();
+    }
+
+    private record StudentKey(Long studentId, Long courseId) {}
+
+    private record ItemKey(Long courseId, String itemKey) {}
+
+    private record Rating(double value, int count) {}
+
+    @FunctionalInterface
+    private interface RowMapper<K, E> {
+        E toRow(K key, Slot slot, Rating rating);
+    }
+
+    private static final class Slot {
+        final AtomicReference<Rating> rating;
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // Rating last written (or loaded); only touched by flush
+        volatile Rating flushed;
+        volatile Long rowId;
+
+        Slot(Rating rating, Long rowId) {
+            this.rating = new AtomicReference<>(rating);
+            this.flushed = rating;
+            this.rowId = rowId;
+        }
+    }
+}
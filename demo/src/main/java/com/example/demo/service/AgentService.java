@@ -2,21 +2,28 @@ package com.example.demo.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.demo.dto.QuizRequestDTO;
 import com.example.demo.dto.QuizSubmissionDTO;
 import com.example.demo.entity.AnswerOption;
 import com.example.demo.entity.Course;
 import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.PackedAnswers;
 import com.example.demo.entity.Question;
+import com.example.demo.entity.QuestionItem;
 import com.example.demo.entity.Quiz;
 import com.example.demo.entity.QuizResult;
-import com.example.demo.entity.StudentAnswer;
+import com.example.demo.entity.StudentCourseStats;
 import com.example.demo.entity.User;
 import com.example.demo.repository.EnrollmentRepository;
 import com.example.demo.repository.QuizRepository;
@@ -49,7 +56,7 @@ public class AgentService {
 
     private static final Logger logger = LoggerFactory.getLogger(AgentService.class);
 
-    private static final double VALIDATION_THRESHOLD = 70.0;
+    private static final double VALIDATION_THRESHOLD = EvaluationEngine.PASSING_THRESHOLD;
     private static final int MIN_QUESTIONS = 3;
     private static final int MAX_QUESTIONS = 20;
 
@@ -58,17 +65,50 @@ public class AgentService {
     private final QuizRepository quizRepository;
     private final QuizResultRepository quizResultRepository;
     private final EnrollmentRepository enrollmentRepository;
+    private final EvaluationBatcher evaluationBatcher;
+    private final EvaluationEngine evaluationEngine;
+    private final StudentStatsService studentStatsService;
+    private final AdaptiveRatingEngine ratingEngine;
+    private final ItemAnalyticsService itemAnalytics;
+    private final QuestionBankService questionBank;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${app.llm.evaluation.enrichment:true}")
+    private boolean feedbackEnrichment;
+
+    @Value("${app.quiz.document-storage:true}")
+    private boolean documentStorage;
+
+    @Value("${app.quiz.item-bank.enabled:true}")
+    private boolean itemBank;
 
     public AgentService(RAGService ragService,
                         LLMService llmService,
                         QuizRepository quizRepository,
                         QuizResultRepository quizResultRepository,
-                        EnrollmentRepository enrollmentRepository) {
+                        EnrollmentRepository enrollmentRepository,
+                        EvaluationBatcher evaluationBatcher,
+                        EvaluationEngine evaluationEngine,
+                        StudentStatsService studentStatsService,
+                        AdaptiveRatingEngine ratingEngine,
+                        ItemAnalyticsService itemAnalytics,
+                        QuestionBankService questionBank,
+                        PlatformTransactionManager transactionManager) {
         this.ragService = ragService;
         this.llmService = llmService;
         this.quizRepository = quizRepository;
         this.quizResultRepository = quizResultRepository;
         this.enrollmentRepository = enrollmentRepository;
+        this.evaluationBatcher = evaluationBatcher;
+        this.evaluationEngine = evaluationEngine;
+        this.studentStatsService = studentStatsService;
+        this.ratingEngine = ratingEngine;
+        this.itemAnalytics = itemAnalytics;
+        this.questionBank = questionBank;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -76,9 +116,9 @@ public class AgentService {
      * 
      * The agent performs the following steps:
      * 1. Analyze student's history to determine optimal difficulty
-     * 2. Retrieve relevant content using RAG
-     * 3. Generate quiz using LLM
-     * 4. Validate generated content against course material
+     * 2. Draw the questions the student has not seen from the question bank
+     * 3. Retrieve relevant content using RAG for the missing questions
+     * 4. Generate them using LLM and add them to the question bank
      * 5. Return the complete quiz
      */
     public Quiz generateQuiz(User student, Course course, QuizRequestDTO request) {
@@ -91,29 +131,93 @@ public class AgentService {
 
         logger.info("Agent: Determined difficulty={}, questions={}", difficulty, numberOfQuestions);
 
-        // Step 2: Retrieve relevant content via RAG
-        String context = ragService.getQuizContext(course.getId());
-        
-        if (context == null || context.isBlank()) {
-            throw new IllegalStateException("No indexed content available for this course");
+        // Step 2: Serve the questions of the shared bank the student has not seen yet
+        List<QuestionItem> items = new ArrayList<>();
+        if (itemBank) {
+            items.addAll(questionBank.draw(student.getId(), course, difficulty, numberOfQuestions));
+            logger.info("Agent: Drew {} question(s) from the question bank", items.size());
         }
 
-        logger.info("Agent: Retrieved {} characters of context", context.length());
-
-        // Step 3: Generate quiz using LLM
-        LLMModels.QuizResponse llmResponse = llmService.generateQuiz(
-                context, numberOfQuestions, difficulty, course.getTitle());
+        // Steps 3-4: Generate the missing questions from RAG-retrieved content
+        List<Question> generated = new ArrayList<>();
+        LLMModels.QuizResponse llmResponse = null;
+        int missing = numberOfQuestions - items.size();
+        if (missing > 0) {
+            llmResponse = generateQuestions(course, difficulty, missing);
+            generated.addAll(toQuestions(llmResponse));
+        }
 
-        // Step 4: Create and persist the quiz
+        // Step 5: Create the quiz
         Quiz quiz = new Quiz(course, student, 
                 "Quiz: " + course.getTitle(), 
                 difficulty, numberOfQuestions);
         
         // Set AI generation metadata
-        quiz.setGeneratedByGemini(llmResponse.isGeneratedByGemini());
-        quiz.setLlmModelUsed(llmResponse.getModelUsed());
+        if (llmResponse != null) {
+            quiz.setGeneratedByGemini(llmResponse.isGeneratedByGemini());
+            quiz.setLlmModelUsed(llmResponse.getModelUsed());
+        }
 
-        // Step 5: Convert LLM response to quiz questions
+        // Generated questions join the bank and the quiz references its items. The content of
+        // a quiz never changes once generated (bank items are immutable): it is also stored as
+        // one document, so creating the quiz is a single insert and reading it a single query
+        List<Question> questions;
+        if (itemBank) {
+            for (QuestionItem item : questionBank.addGenerated(course, difficulty, generated)) {
+                if (items.stream().noneMatch(drawn -> drawn.getId().equals(item.getId()))) {
+                    items.add(item);
+                }
+            }
+            List<Long> itemIds = items.stream().map(QuestionItem::getId).toList();
+            questions = questionBank.toQuestions(items);
+            if (documentStorage) {
+                quiz.setDocumentQuestions(questions);
+            }
+            quiz.setItems(itemIds, questions);
+            questionBank.markServed(student.getId(), course.getId(), itemIds);
+        } else if (documentStorage) {
+            questions = generated;
+            quiz.setDocumentQuestions(questions);
+        } else {
+            questions = generated;
+            questions.forEach(quiz::addQuestion);
+        }
+        quiz.setNumberOfQuestions(questions.size());
+
+        // Explanations left out of the generation call are produced on first review
+        quiz.setExplanationsPending(questions.stream()
+                .anyMatch(q -> q.getExplanation() == null || q.getExplanation().isBlank()));
+
+        Quiz savedQuiz = quizRepository.save(quiz);
+        logger.info("Agent: Quiz generated successfully with {} questions", savedQuiz.getQuestions().size());
+
+        return savedQuiz;
+    }
+
+    /**
+     * Generate questions with the LLM from the course content, split in disjoint
+     * shards for large quizzes.
+     */
+    private LLMModels.QuizResponse generateQuestions(Course course, DifficultyLevel difficulty, int numberOfQuestions) {
+        List<String> contextShards = ragService.getQuizContextShards(course.getId(),
+                llmService.getQuizShardCount(numberOfQuestions));
+
+        if (contextShards.isEmpty() || contextShards.stream().allMatch(String::isBlank)) {
+            throw new IllegalStateException("No indexed content available for this course");
+        }
+
+        logger.info("Agent: Retrieved {} characters of context in {} shard(s)",
+                contextShards.stream().mapToInt(String::length).sum(), contextShards.size());
+
+        return llmService.generateQuiz(
+                course.getId(), contextShards, numberOfQuestions, difficulty, course.getTitle());
+    }
+
+    /**
+     * Convert the LLM response to quiz questions.
+     */
+    private List<Question> toQuestions(LLMModels.QuizResponse llmResponse) {
+        List<Question> questions = new ArrayList<>();
         for (LLMModels.QuestionData questionData : llmResponse.getQuestions()) {
             Question question = new Question();
             question.setQuestionText(questionData.getQuestionText());
@@ -128,13 +232,104 @@ public class AgentService {
                 question.addOption(option);
             }
 
-            quiz.addQuestion(question);
+            questions.add(question);
         }
+        return questions;
+    }
 
-        Quiz savedQuiz = quizRepository.save(quiz);
-        logger.info("Agent: Quiz generated successfully with {} questions", savedQuiz.getQuestions().size());
+    /**
+     * Generate the explanations of a quiz generated without them.
+     * All questions are explained in one LLM call and the explanations are
+     * persisted, so later views of the result page are served from the database:
+     * 1. The questions are read in a read-only transaction
+     * 2. The LLM is called outside any transaction
+     * 3. The explanations are saved in a new transaction; questions left
+     *    unexplained (e.g. the call failed) keep the quiz pending, so they
+     *    are explained on a later view
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void explainQuiz(Long quizId) {
+        ExplanationRequest request = readOnlyTransaction.execute(status -> prepareExplanations(quizId));
+        if (request == null) {
+            return;
+        }
+        logger.info("Agent: Generating explanations for quiz {}", quizId);
 
-        return savedQuiz;
+        List<LLMModels.QuestionExplanation> explanations = llmService.generateExplanations(
+                request.courseId(), request.courseContext(), request.questions());
+        if (explanations.stream().allMatch(Objects::isNull)) {
+            logger.warn("Agent: No explanations generated for quiz {}, kept pending", quizId);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> saveExplanations(quizId, explanations));
+    }
+
+    private ExplanationRequest prepareExplanations(Long quizId) {
+        Quiz quiz = quizRepository.findById(quizId).orElse(null);
+        if (quiz == null || !quiz.isExplanationsPending()) {
+            return null;
+        }
+        loadItems(quiz);
+
+        List<LLMModels.QuestionData> questionData = new ArrayList<>();
+        for (Question question : quiz.getQuestions()) {
+            LLMModels.QuestionData data = new LLMModels.QuestionData();
+            data.setQuestionText(question.getQuestionText());
+            data.setCorrectOptionIndex(question.getCorrectOptionIndex());
+            List<LLMModels.OptionData> options = new ArrayList<>();
+            for (AnswerOption option : question.getOptions()) {
+                LLMModels.OptionData optionData = new LLMModels.OptionData();
+                optionData.setText(option.getOptionText());
+                options.add(optionData);
+            }
+            data.setOptions(options);
+            questionData.add(data);
+        }
+
+        Long courseId = quiz.getCourse().getId();
+        return new ExplanationRequest(courseId, ragService.getQuizContext(courseId), questionData);
+    }
+
+    private void saveExplanations(Long quizId, List<LLMModels.QuestionExplanation> explanations) {
+        Quiz quiz = quizRepository.findById(quizId).orElse(null);
+        if (quiz == null || !quiz.isExplanationsPending()) {
+            return;
+        }
+        loadItems(quiz);
+
+        List<Question> questions = quiz.getQuestions();
+        List<Long> explainedItems = new ArrayList<>();
+        List<Question> explainedQuestions = new ArrayList<>();
+        boolean pending = false;
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
+            LLMModels.QuestionExplanation explanation = i < explanations.size() ? explanations.get(i) : null;
+            if (explanation == null) {
+                pending |= question.getExplanation() == null || question.getExplanation().isBlank();
+                continue;
+            }
+            question.setExplanation(explanation.getExplanation());
+            List<AnswerOption> options = question.getOptions();
+            for (int o = 0; o < options.size() && o < explanation.getOptionExplanations().size(); o++) {
+                options.get(o).setExplanation(explanation.getOptionExplanations().get(o));
+            }
+            if (quiz.isItemBacked()) {
+                explainedItems.add(quiz.getItemIdList().get(i));
+                explainedQuestions.add(question);
+            }
+        }
+        if (quiz.isItemBacked()) {
+            questionBank.saveExplanations(explainedItems, explainedQuestions);
+        }
+        quiz.updateDocument();
+        quiz.setExplanationsPending(pending);
+        quizRepository.save(quiz);
+    }
+
+    private void loadItems(Quiz quiz) {
+        if (quiz.requiresItemLoad()) {
+            quiz.setItemQuestions(questionBank.loadQuestions(quiz.getItemIdList()));
+        }
     }
 
     /**
@@ -142,35 +337,39 @@ public class AgentService {
      * 
      * The agent:
      * 1. Scores the quiz
-     * 2. Analyzes performance patterns
-     * 3. Generates personalized feedback using LLM
-     * 4. Determines next recommended difficulty
-     * 5. Decides if course should be marked as validated
+     * 2. Evaluates it with the rule-based engine (pass/fail, feedback)
+     * 3. Updates the student's ability and question calibration (next difficulty)
+     * 4. Decides if course should be marked as validated
+     * 5. Optionally queues personalized LLM feedback (batched, asynchronous)
+     *
+     * No course content is loaded and no model is called: submission is a
+     * database write.
      */
     public QuizResult evaluateQuiz(Quiz quiz, QuizSubmissionDTO submission) {
         logger.info("Agent: Evaluating quiz {} for student {}", quiz.getId(), quiz.getStudent().getId());
 
         // Step 1: Calculate score
+        List<Question> questions = quiz.getQuestions();
         int correctAnswers = 0;
-        List<StudentAnswer> studentAnswers = new ArrayList<>();
+        int[] selectedOptions = new int[questions.size()];
+        boolean[] correct = new boolean[questions.size()];
         List<String> incorrectTopics = new ArrayList<>();
 
-        for (Question question : quiz.getQuestions()) {
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
             Integer selectedIndex = submission.getAnswers().get(question.getId());
-            if (selectedIndex != null) {
-                boolean isCorrect = question.isCorrect(selectedIndex);
-                if (isCorrect) {
-                    correctAnswers++;
-                } else {
-                    incorrectTopics.add(question.getSourceContext());
-                }
-                
-                StudentAnswer answer = new StudentAnswer(
-                        question.getId(),
-                        selectedIndex,
-                        question.getCorrectOptionIndex()
-                );
-                studentAnswers.add(answer);
+            if (selectedIndex == null || selectedIndex < 0 || selectedIndex >= question.getOptions().size()
+                    || selectedIndex >= PackedAnswers.MAX_OPTIONS) {
+                selectedOptions[i] = PackedAnswers.UNANSWERED;
+                continue;
+            }
+
+            selectedOptions[i] = selectedIndex;
+            correct[i] = question.isCorrect(selectedIndex);
+            if (correct[i]) {
+                correctAnswers++;
+            } else {
+                incorrectTopics.add(question.getSourceContext());
             }
         }
 
@@ -180,25 +379,41 @@ public class AgentService {
 
         logger.info("Agent: Score calculated - {}/{} ({}%)", correctAnswers, totalQuestions, scorePercentage);
 
-        // Step 2: Get LLM evaluation
-        String courseContext = ragService.getQuizContext(quiz.getCourse().getId());
-        LLMModels.EvaluationResponse evaluation = llmService.evaluateQuizResults(
-                courseContext, scorePercentage, correctAnswers, totalQuestions, incorrectTopics, quiz.getDifficulty());
+        // Step 2: Rule-based evaluation
+        LLMModels.EvaluationResponse evaluation = evaluationEngine.evaluate(
+                correctAnswers, totalQuestions, incorrectTopics, quiz.getDifficulty());
+
+        // Step 3: Update the student's ability, the calibration and the statistics of the questions
+        Long studentId = quiz.getStudent().getId();
+        Long courseId = quiz.getCourse().getId();
+        double ability = ratingEngine.recordAnswers(studentId, courseId, quiz.getDifficulty(),
+                questions, selectedOptions, correct);
+        itemAnalytics.recordSubmission(courseId, questions, selectedOptions, correct, scorePercentage);
 
-        // Step 3: Create quiz result
         QuizResult result = new QuizResult(quiz, quiz.getStudent(), totalQuestions, submission.getTimeTakenSeconds());
         result.setCorrectAnswers(correctAnswers);
         result.setScorePercentage(scorePercentage);
         result.setPassed(scorePercentage >= VALIDATION_THRESHOLD);
         result.setAgentFeedback(evaluation.getFeedback());
-        result.setRecommendedNextDifficulty(evaluation.getRecommendedDifficulty());
-        result.setStudentAnswers(studentAnswers);
+        result.setRecommendedNextDifficulty(ratingEngine.selectDifficultyForAbility(courseId, ability));
+        result.setFeedbackPending(feedbackEnrichment);
+        result.setAnswers(PackedAnswers.encode(selectedOptions, correct));
+        result.setSubmissionKey(submission.getSubmissionKey());
 
         QuizResult savedResult = quizResultRepository.save(result);
+        int passedCount = studentStatsService.recordAttempt(studentId, courseId,
+                scorePercentage, savedResult.isPassed(), quiz.getDifficulty());
 
         // Step 4: Update enrollment status if course is validated
         if (evaluation.isCourseValidated()) {
-            updateEnrollmentStatus(quiz.getStudent().getId(), quiz.getCourse().getId(), scorePercentage);
+            updateEnrollmentStatus(studentId, courseId, scorePercentage, passedCount);
+        }
+
+        // Step 5: Personalized feedback replaces the templated one later
+        if (feedbackEnrichment) {
+            evaluationBatcher.submit(savedResult.getId(), courseId,
+                    new LLMModels.EvaluationInput(scorePercentage, correctAnswers, totalQuestions, incorrectTopics,
+                            quiz.getDifficulty()));
         }
 
         logger.info("Agent: Evaluation complete - passed={}, recommended_difficulty={}", 
@@ -208,37 +423,14 @@ public class AgentService {
     }
 
     /**
-     * Determine the optimal difficulty based on student's history.
+     * Determine the optimal difficulty: the level the student is expected to
+     * answer at the target success rate, from their rated ability.
      */
     private DifficultyLevel determineOptimalDifficulty(Long studentId, Long courseId, DifficultyLevel requestedDifficulty) {
         if (requestedDifficulty != null) {
             return requestedDifficulty;
         }
-
-        // Check student's previous quiz results for this course
-        List<QuizResult> previousResults = quizResultRepository.findByCourseIdAndStudentId(courseId, studentId);
-
-        if (previousResults.isEmpty()) {
-            return DifficultyLevel.MEDIUM; // Default for new students
-        }
-
-        // Calculate average score from recent results
-        double averageScore = previousResults.stream()
-                .limit(5) // Consider last 5 quizzes
-                .mapToDouble(QuizResult::getScorePercentage)
-                .average()
-                .orElse(50.0);
-
-        // Adaptive difficulty based on performance
-        if (averageScore >= 90) {
-            return DifficultyLevel.EXPERT;
-        } else if (averageScore >= 75) {
-            return DifficultyLevel.HARD;
-        } else if (averageScore >= 50) {
-            return DifficultyLevel.MEDIUM;
-        } else {
-            return DifficultyLevel.EASY;
-        }
+        return ratingEngine.selectDifficulty(studentId, courseId);
     }
 
     /**
@@ -251,12 +443,10 @@ public class AgentService {
     /**
      * Update enrollment status based on quiz performance.
      */
-    private void updateEnrollmentStatus(Long studentId, Long courseId, double scorePercentage) {
+    private void updateEnrollmentStatus(Long studentId, Long courseId, double scorePercentage, int passedCount) {
         enrollmentRepository.findByStudentIdAndCourseId(studentId, courseId)
                 .ifPresent(enrollment -> {
                     // Check if student has passed enough quizzes to validate the course
-                    long passedCount = quizResultRepository.countPassedByCourseIdAndStudentId(courseId, studentId);
-                    
                     if (passedCount >= 2 && scorePercentage >= VALIDATION_THRESHOLD) {
                         enrollment.markAsCompleted();
                         enrollmentRepository.save(enrollment);
@@ -275,18 +465,15 @@ public class AgentService {
      */
     public List<String> getStudentRecommendations(Long studentId, Long courseId) {
         List<String> recommendations = new ArrayList<>();
-        List<QuizResult> results = quizResultRepository.findByCourseIdAndStudentId(courseId, studentId);
+        StudentCourseStats stats = studentStatsService.getStats(studentId, courseId).orElse(null);
 
-        if (results.isEmpty()) {
+        if (stats == null || stats.getAttempts() == 0) {
             recommendations.add("Start with an easy quiz to assess your current understanding.");
             recommendations.add("Read through the course material before attempting quizzes.");
             return recommendations;
         }
 
-        double averageScore = results.stream()
-                .mapToDouble(QuizResult::getScorePercentage)
-                .average()
-                .orElse(0.0);
+        double averageScore = stats.getAverageScore();
 
         if (averageScore >= 80) {
             recommendations.add("Excellent progress! Try harder difficulty levels.");
@@ -302,4 +489,6 @@ public class AgentService {
 
         return recommendations;
     }
+
+    private record ExplanationRequest(Long courseId, String courseContext, List<LLMModels.QuestionData> questions) {}
 }
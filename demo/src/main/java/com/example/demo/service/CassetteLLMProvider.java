@@ -0,0 +1,209 @@
+package com.example.demo.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Record/replay decorator around the active provider.
+ *
+ * In record mode every completion is passed through and the first one of each
+ * request is appended to a JSONL cassette with the hash of the request
+ * (operation, course and prompt), the response text, token counts and latency.
+ * In replay mode completions are served from the cassette by request hash,
+ * without calling the delegate, sleeping for the recorded latency times a scale
+ * factor (0 for none), so that runs are byte-identical and comparable.
+ *
+ * A request always replays the same response, whatever the order or
+ * concurrency of the calls. A request missing from the cassette fails like a
+ * server error, so callers take their usual fallback path. The cassette is
+ * flushed and closed on shutdown.
+ *
+ * Installed by LLMCassetteConfig when app.llm.cassette.mode is record or replay.
+ */
+public class CassetteLLMProvider implements LLMProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CassetteLLMProvider.class);
+
+    public enum Mode { OFF, RECORD, REPLAY }
+
+    private final LLMProvider delegate;
+    private final Mode mode;
+    private final Path path;
+    private final double latencyScale;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> recorded = ConcurrentHashMap.newKeySet();
+    private BufferedWriter writer;
+
+    public CassetteLLMProvider(LLMProvider delegate, Mode mode, Path path, double latencyScale,
+                               ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.mode = mode;
+        this.path = path;
+        this.latencyScale = latencyScale;
+        this.objectMapper = objectMapper;
+        if (mode == Mode.REPLAY) {
+            load();
+        } else if (mode == Mode.RECORD && Files.exists(path)) {
+            // Appending to an earlier cassette: keep its responses
+            load();
+            recorded.addAll(entries.keySet());
+            entries.clear();
+        }
+    }
+
+    public static Mode parseMode(String value) {
+        return value == null || value.isBlank() ? Mode.OFF : Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public Completion complete(Request request) {
+        String key = key(request);
+        return mode == Mode.REPLAY ? replay(key, request) : record(key, request);
+    }
+
+    private Completion record(String key, Request request) {
+        Completion completion = delegate.complete(request);
+        if (recorded.add(key)) {
+            append(new Entry(key, request.operation().name(), completion.text(), completion.model(),
+                    completion.inputTokens(), completion.outputTokens(), completion.cachedInputTokens(),
+                    completion.latencyMs()));
+        }
+        return completion;
+    }
+
+    private Completion replay(String key, Request request) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            logger.warn("No cassette entry for {} call {}", request.operation(), key.substring(0, 12));
+            throw new IllegalStateException("500 INTERNAL: no cassette entry for " + request.operation() + " call");
+        }
+
+        long delay = Math.round(entry.latencyMs() * latencyScale);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new Completion(entry.text(), entry.model(), entry.inputTokens(), entry.outputTokens(),
+                entry.cachedInputTokens(), entry.latencyMs());
+    }
+
+    private synchronized void append(Entry entry) {
+        try {
+            if (writer == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(objectMapper.writeValueAsString(entry));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("Could not record cassette entry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Could not close cassette {}: {}", path, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            logger.warn("Cassette {} not found, every call will miss", path);
+            return;
+        }
+        try {
+            int count = 0;
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Entry entry = objectMapper.readValue(line, Entry.class);
+                // Cassettes recorded before requests were deduplicated may repeat one
+                entries.putIfAbsent(entry.key(), entry);
+                count++;
+            }
+            logger.info("Loaded {} cassette entries ({} distinct requests) from {}", count, entries.size(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cassette " + path, e);
+        }
+    }
+
+    private String key(Request request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.operation().name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(request.courseId()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(request.prompt().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public void evictCachedPrefixes(Long courseId, int currentGeneration) {
+        if (mode == Mode.RECORD) {
+            delegate.evictCachedPrefixes(courseId, currentGeneration);
+        }
+    }
+
+    @Override
+    public String name() {
+        return delegate.name() + " (" + mode.name().toLowerCase(Locale.ROOT) + ")";
+    }
+
+    @Override
+    public boolean isReady() {
+        return mode == Mode.REPLAY || delegate.isReady();
+    }
+
+    @Override
+    public String status() {
+        return mode == Mode.REPLAY
+                ? "replaying " + entries.size() + " requests from " + path
+                : delegate.status() + ", recording to " + path;
+    }
+
+    /**
+     * One recorded completion.
+     */
+    public record Entry(String key, String operation, String text, String model, int inputTokens,
+                        int outputTokens, int cachedInputTokens, long latencyMs) {}
+}
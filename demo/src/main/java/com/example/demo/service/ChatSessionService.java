@@ -0,0 +1,213 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.ChatSession;
+import com.example.demo.entity.ChatTurn;
+import com.example.demo.repository.ChatSessionRepository;
+import com.example.demo.repository.ChatTurnRepository;
+import com.example.demo.security.SecurityUtils;
+
+/**
+ * Chat Session Service.
+ *
+ * Keeps tutoring conversations server-side, with a bounded memory:
+ * 1. Turns are appended to the session's log (chat_turns) and never rewritten
+ * 2. Each answer sees the rolling summary plus the recent turns that have not
+ *    been summarized yet (the sliding window)
+ * 3. When the window goes over its token budget, its oldest turns are folded
+ *    into the summary, itself capped at summary-tokens
+ *
+ * The history sent with each question is therefore bounded by the window and
+ * summary budgets, whatever the length of the conversation.
+ *
+ * No transaction is held during model calls. The turns of an answer are
+ * appended in one transaction that reserves their seqs on the session row,
+ * so concurrent messages to a session get consecutive seqs instead of
+ * colliding; a summary is only saved if no other turn compacted the session
+ * meanwhile.
+ *
+ * The opening question of a session has no history, so it is answered from the
+ * SemanticAnswerCache when a close enough question was answered from the same
+ * context before.
+ */
+@Service
+public class ChatSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSessionService.class);
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatTurnRepository chatTurnRepository;
+    private final LLMService llmService;
+    private final SemanticAnswerCache answerCache;
+    private final SecurityUtils securityUtils;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.chat.history.window-tokens:1500}")
+    private int windowTokens;
+
+    @Value("${app.chat.history.summary-tokens:300}")
+    private int summaryTokens;
+
+    @Value("${app.chat.history.keep-turns:2}")
+    private int keepTurns;
+
+    public ChatSessionService(ChatSessionRepository chatSessionRepository, ChatTurnRepository chatTurnRepository,
+            LLMService llmService, SemanticAnswerCache answerCache, SecurityUtils securityUtils,
+            PlatformTransactionManager transactionManager) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatTurnRepository = chatTurnRepository;
+        this.llmService = llmService;
+        this.answerCache = answerCache;
+        this.securityUtils = securityUtils;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Answer a message within a session of the current user. A new session is
+     * started when none is given, or when the given one is unknown or belongs to
+     * another course.
+     *
+     * @throws QuotaExceededException if the user or course is over its daily quota
+     */
+    public ChatReply chat(Long sessionId, Long courseId, String message, String courseContext) {
+        ChatSession session = resolveSession(sessionId, courseId);
+        List<ChatTurn> window = new ArrayList<>(
+                chatTurnRepository.findWindow(session.getId(), session.getSummarizedThroughSeq()));
+
+        String response;
+        if (window.isEmpty() && session.getSummary() == null) {
+            response = answerOpeningQuestion(courseId, message, courseContext);
+        } else {
+            response = llmService.chatWithCourse(courseId, message, courseContext,
+                    formatHistory(session.getSummary(), window));
+        }
+
+        window.addAll(append(session.getId(), message, response));
+        compact(session, window);
+
+        return new ChatReply(session.getId(), response);
+    }
+
+    private String answerOpeningQuestion(Long courseId, String message, String courseContext) {
+        // Scoped by course and context, so answers from another context (e.g. before
+        // re-indexing, or for a student not enrolled) are never served
+        String scope = courseId + ":" + Integer.toHexString(Objects.hashCode(courseContext));
+        String cached = answerCache.get(scope, message);
+        if (cached != null) {
+            return cached;
+        }
+
+        String response = llmService.chatWithCourse(courseId, message, courseContext, null);
+        if (llmService.isLLMAvailable() && !LLMService.CHAT_ERROR_RESPONSE.equals(response)) {
+            answerCache.put(scope, message, response);
+        }
+        return response;
+    }
+
+    private ChatSession resolveSession(Long sessionId, Long courseId) {
+        Long userId = securityUtils.getCurrentUserId();
+        if (sessionId != null) {
+            ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId).orElse(null);
+            if (session != null && Objects.equals(session.getCourseId(), courseId)) {
+                return session;
+            }
+        }
+        return chatSessionRepository.save(new ChatSession(userId, courseId));
+    }
+
+    /**
+     * Append a question and its answer as the next two turns of the session.
+     */
+    private List<ChatTurn> append(Long sessionId, String message, String response) {
+        return transactionTemplate.execute(status -> {
+            chatSessionRepository.reserveSeqs(sessionId, 2, LocalDateTime.now());
+            int seq = chatSessionRepository.findLastSeq(sessionId) - 1;
+            return chatTurnRepository.saveAll(List.of(
+                    turn(sessionId, seq, ChatTurn.ROLE_USER, message),
+                    turn(sessionId, seq + 1, ChatTurn.ROLE_ASSISTANT, response)));
+        });
+    }
+
+    private ChatTurn turn(Long sessionId, int seq, String role, String content) {
+        String text = content != null ? content : "";
+        return new ChatTurn(sessionId, seq, role, text, LLMProvider.estimateTokens(text));
+    }
+
+    /**
+     * Fold the oldest turns of the window into the summary once the window is
+     * over budget, always keeping the last keep-turns turns verbatim.
+     */
+    private void compact(ChatSession session, List<ChatTurn> window) {
+        int total = window.stream().mapToInt(ChatTurn::getTokens).sum();
+        if (total <= windowTokens) {
+            return;
+        }
+
+        List<ChatTurn> folded = new ArrayList<>();
+        int remaining = total;
+        for (int i = 0; i < window.size() - keepTurns && remaining > windowTokens / 2; i++) {
+            folded.add(window.get(i));
+            remaining -= window.get(i).getTokens();
+        }
+        if (folded.isEmpty()) {
+            return;
+        }
+
+        try {
+            String summary = llmService.summarizeChat(session.getCourseId(), session.getSummary(),
+                    formatTurns(folded), summaryTokens);
+            int throughSeq = folded.get(folded.size() - 1).getSeq();
+            Integer updated = transactionTemplate.execute(status -> chatSessionRepository.updateSummary(
+                    session.getId(), summary, session.getSummarizedThroughSeq(), throughSeq, LocalDateTime.now()));
+            if (updated != null && updated > 0) {
+                logger.debug("Folded {} turns of chat session {} into its summary", folded.size(), session.getId());
+            } else {
+                // Compacted by a concurrent turn: this one's window is folded on a later turn
+                logger.debug("Chat session {} compacted concurrently, summary dropped", session.getId());
+            }
+        } catch (QuotaExceededException e) {
+            // Retried on the next turn; the window just stays longer until then
+            logger.debug("Chat session {} not compacted: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private String formatHistory(String summary, List<ChatTurn> window) {
+        StringBuilder history = new StringBuilder();
+        if (summary != null && !summary.isBlank()) {
+            history.append("Summary of earlier conversation:\n").append(summary).append("\n\n");
+        }
+        history.append(formatTurns(window));
+        return history.toString().trim();
+    }
+
+    private String formatTurns(List<ChatTurn> turns) {
+        // A single turn never takes more than half of the window
+        int maxChars = windowTokens * 2;
+        StringBuilder text = new StringBuilder();
+        for (ChatTurn turn : turns) {
+            String content = turn.getContent().replace('\n', ' ');
+            if (content.length() > maxChars) {
+                content = content.substring(0, maxChars - 3) + "...";
+            }
+            text.append(ChatTurn.ROLE_USER.equals(turn.getRole()) ? "Student: " : "Assistant: ")
+                    .append(content).append("\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Answer of a chat turn, with the session to continue.
+     */
+    public record ChatReply(Long sessionId, String response) {}
+}
@@ -0,0 +1,279 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Course;
+import com.example.demo.entity.CourseChunk;
+import com.example.demo.entity.CourseSectionSummary;
+import com.example.demo.repository.CourseChunkRepository;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.CourseSectionSummaryRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Course Summary Service.
+ *
+ * Summaries are materialized when a course is indexed instead of being
+ * generated on every request:
+ * 1. Once the indexing transaction commits, a background job groups the
+ *    chunks into fixed-size sections and summarizes them concurrently
+ * 2. The course summary is reduced from the section summaries (map-reduce)
+ * 3. Both are stored in one short transaction with a hash of the indexed
+ *    content, so re-indexing unchanged content does not call the LLM again;
+ *    a result is dropped if the course was re-indexed meanwhile
+ *
+ * Indexed courses still without a summary (e.g. after a restart) are
+ * summarized again at startup. The stored summaries double as a compact
+ * "map" context for chat turns that don't need the full course text.
+ */
+@Service
+public class CourseSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourseSummaryService.class);
+
+    private final LLMService llmService;
+    private final CourseRepository courseRepository;
+    private final CourseChunkRepository chunkRepository;
+    private final CourseSectionSummaryRepository sectionSummaryRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Courses with a job running, and courses to summarize (again) once it is done
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.rag.summary-section-chunks:8}")
+    private int sectionChunks;
+
+    public CourseSummaryService(LLMService llmService,
+                                CourseRepository courseRepository,
+                                CourseChunkRepository chunkRepository,
+                                CourseSectionSummaryRepository sectionSummaryRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.llmService = llmService;
+        this.courseRepository = courseRepository;
+        this.chunkRepository = chunkRepository;
+        this.sectionSummaryRepository = sectionSummaryRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Summarize a course in the background. Inside a transaction the job
+     * starts after commit, so it reads the freshly indexed chunks.
+     */
+    public void summarizeAfterCommit(Long courseId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    request(courseId);
+                }
+            });
+        } else {
+            request(courseId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void summarizeMissing() {
+        List<Long> courseIds = courseRepository.findIndexedIdsWithoutSummary();
+        courseIds.forEach(this::request);
+        if (!courseIds.isEmpty()) {
+            logger.info("Queued {} indexed courses still without a summary", courseIds.size());
+        }
+    }
+
+    /**
+     * Whether no summary job is running or waiting.
+     */
+    public boolean isIdle() {
+        return running.isEmpty() && requested.isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One job per course at a time; a request arriving while it runs makes it
+     * run once more, so the last indexing always gets summarized.
+     */
+    private void request(Long courseId) {
+        requested.add(courseId);
+        if (running.add(courseId)) {
+            executor.execute(() -> drain(courseId));
+        }
+    }
+
+    private void drain(Long courseId) {
+        do {
+            try {
+                while (requested.remove(courseId)) {
+                    summarize(courseId);
+                }
+            } finally {
+                running.remove(courseId);
+            }
+        } while (requested.contains(courseId) && running.add(courseId));
+    }
+
+    private void summarize(Long courseId) {
+        try {
+            IndexedContent indexed = readTransaction.execute(status -> {
+                Course course = courseRepository.findById(courseId).orElse(null);
+                if (course == null) {
+                    return null;
+                }
+                String summaryContentHash = course.hasSummary() ? course.getSummaryContentHash() : null;
+                return new IndexedContent(course.getIndexGeneration(), summaryContentHash,
+                        chunkRepository.findByCourseIdOrderByChunkIndexAsc(courseId));
+            });
+            if (indexed == null || indexed.chunks().isEmpty()) {
+                return;
+            }
+
+            String contentHash = contentHash(indexed.chunks());
+            if (contentHash.equals(indexed.summaryContentHash())) {
+                logger.info("Summary for course {} is up to date, skipping", courseId);
+                return;
+            }
+
+            List<SectionDraft> sections = summarizeSections(courseId, indexed.chunks());
+
+            // Reduce the section summaries instead of re-sending the whole course
+            String sectionMap = sections.stream()
+                    .map(SectionDraft::summary)
+                    .collect(Collectors.joining("\n\n"));
+            String summary = llmService.summarizeCourse(courseId, sectionMap);
+
+            boolean stored = Boolean.TRUE.equals(writeTransaction.execute(status -> {
+                Course course = courseRepository.findById(courseId).orElse(null);
+                if (course == null || course.getIndexGeneration() != indexed.indexGeneration()) {
+                    return false;
+                }
+                // Through the collection, so the orphaned sections are removed with it
+                course.getSectionSummaries().clear();
+                for (SectionDraft section : sections) {
+                    course.getSectionSummaries().add(new CourseSectionSummary(course, section.sectionIndex(),
+                            section.startChunkIndex(), section.endChunkIndex(), section.summary(), section.contentHash()));
+                }
+                course.updateSummary(summary, contentHash);
+                return true;
+            }));
+            if (stored) {
+                logger.info("Stored summary and {} section summaries for course {}", sections.size(), courseId);
+            } else {
+                logger.info("Course {} was re-indexed while being summarized, dropping the result", courseId);
+            }
+        } catch (Exception e) {
+            logger.error("Could not summarize course {}: {}", courseId, e.getMessage());
+        }
+    }
+
+    /**
+     * Summarize every section, concurrently.
+     */
+    private List<SectionDraft> summarizeSections(Long courseId, List<CourseChunk> chunks)
+            throws InterruptedException, ExecutionException {
+        int size = Math.max(1, sectionChunks);
+        List<Future<SectionDraft>> futures = new ArrayList<>();
+        try (ExecutorService sectionExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int start = 0; start < chunks.size(); start += size) {
+                List<CourseChunk> sectionChunkList = chunks.subList(start, Math.min(start + size, chunks.size()));
+                int sectionIndex = futures.size();
+                futures.add(sectionExecutor.submit(() -> {
+                    String sectionText = sectionChunkList.stream()
+                            .map(CourseChunk::getContent)
+                            .collect(Collectors.joining("\n\n"));
+                    return new SectionDraft(
+                            sectionIndex,
+                            sectionChunkList.get(0).getChunkIndex(),
+                            sectionChunkList.get(sectionChunkList.size() - 1).getChunkIndex(),
+                            llmService.summarizeSection(courseId, sectionText),
+                            contentHash(sectionChunkList));
+                }));
+            }
+        }
+
+        List<SectionDraft> sections = new ArrayList<>();
+        for (Future<SectionDraft> future : futures) {
+            sections.add(future.get());
+        }
+        return sections;
+    }
+
+    /**
+     * Build a compact context from the stored summaries: the course summary
+     * followed by one line per section with its chunk range.
+     * Returns null when the course has no stored summary.
+     */
+    @Transactional(readOnly = true)
+    public String getMapContext(Long courseId) {
+        Course course = courseRepository.findById(courseId).orElse(null);
+        if (course == null || !course.hasSummary()) {
+            return null;
+        }
+
+        StringBuilder context = new StringBuilder();
+        context.append("COURSE: ").append(course.getTitle()).append("\n\n");
+        context.append("SUMMARY:\n").append(course.getSummary()).append("\n\n");
+        context.append("SECTIONS:\n");
+        for (CourseSectionSummary section : sectionSummaryRepository.findByCourseIdOrderBySectionIndexAsc(courseId)) {
+            context.append(String.format("[Section %d, chunks %d-%d] %s%n",
+                    section.getSectionIndex() + 1,
+                    section.getStartChunkIndex(),
+                    section.getEndChunkIndex(),
+                    section.getSummary().replaceAll("\\s+", " ")));
+        }
+        return context.toString();
+    }
+
+    private record IndexedContent(int indexGeneration, String summaryContentHash, List<CourseChunk> chunks) {}
+
+    private record SectionDraft(int sectionIndex, int startChunkIndex, int endChunkIndex,
+                                String summary, String contentHash) {}
+
+    private String contentHash(List<CourseChunk> chunks) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (CourseChunk chunk : chunks) {
+                digest.update(chunk.getContent().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
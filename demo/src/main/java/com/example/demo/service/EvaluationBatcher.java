@@ -0,0 +1,226 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Question;
+import com.example.demo.entity.Quiz;
+import com.example.demo.entity.QuizResult;
+import com.example.demo.entity.StudentAnswer;
+import com.example.demo.repository.QuestionRepository;
+import com.example.demo.repository.QuizResultRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Evaluation Batcher.
+ *
+ * Quiz results are evaluated by the rule-based engine and saved at submission;
+ * personalised AI feedback, which replaces the templated one, is produced here,
+ * off the request path:
+ * 1. Submissions are queued once their transaction commits
+ * 2. Every batch window the queue is drained and grouped by course, in batches
+ *    of at most max-batch-size results
+ * 3. Each batch is evaluated in a single multi-student call, on its own virtual
+ *    thread, and the feedback is written back to each result
+ * 4. A failed batch is queued again after an exponential backoff, up to
+ *    max-retries times; after that its results keep the templated feedback
+ *    until the next startup
+ *
+ * Results still pending at startup (e.g. after a restart) are queued again,
+ * with the topics of their wrong answers recomputed from the stored answers.
+ */
+@Component
+public class EvaluationBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EvaluationBatcher.class);
+
+    // Upper bound of the delay between two attempts
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+
+    private final LLMService llmService;
+    private final QuizResultRepository quizResultRepository;
+    private final QuestionRepository questionRepository;
+    private final QuestionBankService questionBank;
+    private final TransactionTemplate readTransaction;
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+
+    @Value("${app.llm.evaluation.max-batch-size:25}")
+    private int maxBatchSize;
+
+    @Value("${app.llm.evaluation.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${app.llm.evaluation.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+
+    public EvaluationBatcher(LLMService llmService, QuizResultRepository quizResultRepository,
+                             QuestionRepository questionRepository, QuestionBankService questionBank,
+                             PlatformTransactionManager transactionManager) {
+        this.llmService = llmService;
+        this.quizResultRepository = quizResultRepository;
+        this.questionRepository = questionRepository;
+        this.questionBank = questionBank;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Queue a saved result for feedback. Inside a transaction the result is
+     * queued after commit, so the batch never races the insert.
+     */
+    public void submit(Long resultId, Long courseId, LLMModels.EvaluationInput input) {
+        Pending pending = new Pending(resultId, courseId, input);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queue.add(pending);
+                }
+            });
+        } else {
+            queue.add(pending);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeuePending() {
+        List<Pending> pending = readTransaction.execute(status -> quizResultRepository.findFeedbackPending().stream()
+                .map(this::pendingOf)
+                .toList());
+        queue.addAll(pending);
+        if (!pending.isEmpty()) {
+            logger.info("Queued {} quiz results still waiting for feedback", pending.size());
+        }
+    }
+
+    /**
+     * Evaluate everything queued since the last window.
+     */
+    @Scheduled(fixedDelayString = "${app.llm.evaluation.batch-window-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        Map<Long, List<Pending>> byCourse = new LinkedHashMap<>();
+        List<Pending> backingOff = new ArrayList<>();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending.retryAt() > now) {
+                backingOff.add(pending);
+            } else {
+                byCourse.computeIfAbsent(pending.courseId(), k -> new ArrayList<>()).add(pending);
+            }
+        }
+        queue.addAll(backingOff);
+        if (byCourse.isEmpty()) {
+            return;
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Pending> coursePending : byCourse.values()) {
+                int size = Math.max(1, maxBatchSize);
+                for (int from = 0; from < coursePending.size(); from += size) {
+                    List<Pending> batch = coursePending.subList(from, Math.min(from + size, coursePending.size()));
+                    executor.submit(() -> evaluate(batch));
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not evaluate queued quiz results on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private void evaluate(List<Pending> batch) {
+        try {
+            List<LLMModels.EvaluationResponse> evaluations = llmService.evaluateQuizResultsBatch(
+                    batch.get(0).courseId(), batch.stream().map(Pending::input).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                LLMModels.EvaluationResponse evaluation = evaluations.get(i);
+                quizResultRepository.updateFeedback(batch.get(i).resultId(), evaluation.getFeedback());
+            }
+            logger.debug("Evaluated a batch of {} quiz results", batch.size());
+        } catch (Exception e) {
+            retryLater(batch, e);
+        }
+    }
+
+    private void retryLater(List<Pending> batch, Exception e) {
+        long now = System.currentTimeMillis();
+        int givenUp = 0;
+        for (Pending pending : batch) {
+            if (pending.attempts() < maxRetries) {
+                long backoff = Math.min(MAX_BACKOFF_MS, Math.max(1, retryBackoffMs) << Math.min(pending.attempts(), 20));
+                queue.add(pending.retryAt(now + backoff));
+            } else {
+                givenUp++;
+            }
+        }
+        if (givenUp == 0) {
+            logger.warn("Batched evaluation of {} results failed, retrying: {}", batch.size(), e.getMessage());
+        } else {
+            // Left pending in the database; picked up again on the next startup
+            logger.error("Batched evaluation of {} results failed, giving up on {} after {} attempts: {}",
+                    batch.size(), givenUp, maxRetries + 1, e.getMessage());
+        }
+    }
+
+    /**
+     * Evaluation input of a stored result: the topics are those of the
+     * questions answered wrong, as at submission.
+     */
+    private Pending pendingOf(QuizResult result) {
+        Quiz quiz = result.getQuiz();
+        List<Question> questions;
+        if (quiz.requiresItemLoad()) {
+            questions = questionBank.loadQuestions(quiz.getItemIdList());
+        } else if (quiz.isDocumentStored()) {
+            questions = quiz.getQuestions();
+        } else {
+            questions = questionRepository.findByQuizIdWithOptions(quiz.getId());
+        }
+
+        List<String> incorrectTopics = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            StudentAnswer answer = result.getAnswer(i, questions.get(i));
+            if (answer != null && !answer.isCorrect()) {
+                incorrectTopics.add(questions.get(i).getSourceContext());
+            }
+        }
+        return new Pending(result.getId(), quiz.getCourse().getId(),
+                new LLMModels.EvaluationInput(result.getScorePercentage(), result.getCorrectAnswers(),
+                        result.getTotalQuestions(), incorrectTopics, quiz.getDifficulty()));
+    }
+
+    private record Pending(Long resultId, Long courseId, LLMModels.EvaluationInput input, int attempts, long retryAt) {
+
+        Pending(Long resultId, Long courseId, LLMModels.EvaluationInput input) {
+            this(resultId, courseId, input, 0, 0);
+        }
+
+        Pending retryAt(long time) {
+            return new Pending(resultId, courseId, input, attempts + 1, time);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.DifficultyLevel;
+
+/**
+ * Evaluation Engine.
+ *
+ * Deterministic evaluation of a quiz attempt, computed locally at submission:
+ * 1. Score and pass/fail against the validation threshold
+ * 2. Next difficulty from the progression rules below (a fallback only: the
+ *    level recommended with a result comes from the student's rated ability,
+ *    so the feedback text does not name one)
+ * 3. Templated feedback, strengths, weaknesses and recommendations, naming the
+ *    topics of the missed questions
+ *
+ * No course content is needed. Personalised LLM feedback, when enabled, only
+ * replaces the feedback text later (see EvaluationBatcher).
+ */
+@Component
+public class EvaluationEngine {
+
+    public static final double PASSING_THRESHOLD = 70.0;
+
+    private static final int MAX_TOPICS = 3;
+    private static final int MAX_TOPIC_LENGTH = 80;
+
+    /**
+     * Evaluate an attempt from its counts and the source topics of the missed questions.
+     */
+    public LLMModels.EvaluationResponse evaluate(int correctAnswers, int totalQuestions, List<String> incorrectTopics,
+            DifficultyLevel currentDifficulty) {
+        double scorePercentage = totalQuestions > 0 ? ((double) correctAnswers / totalQuestions) * 100 : 0;
+        DifficultyLevel nextDifficulty = calculateNextDifficulty(currentDifficulty, scorePercentage);
+        List<String> topics = topicsToReview(incorrectTopics);
+
+        LLMModels.EvaluationResponse response = new LLMModels.EvaluationResponse();
+        String summary = String.format("You answered %d of %d questions correctly (%.0f%%).",
+                correctAnswers, totalQuestions, scorePercentage);
+
+        if (scorePercentage >= 90) {
+            response.setFeedback(summary + " Excellent performance! You've mastered this level.");
+            response.setStrengths(List.of("Excellent understanding", "Strong grasp of concepts"));
+            response.setWeaknesses(List.of());
+            response.setRecommendations(List.of("Ready for the next challenge!"));
+        } else if (scorePercentage >= PASSING_THRESHOLD) {
+            response.setFeedback(summary + " Good job! You passed the quiz.");
+            response.setStrengths(List.of("Good understanding"));
+            response.setWeaknesses(topics.isEmpty() ? List.of("Minor areas to review") : topics);
+            response.setRecommendations(List.of("Review incorrect answers before moving on"));
+        } else if (scorePercentage >= 50) {
+            response.setFeedback(summary + " You're making progress. Keep practicing!");
+            response.setStrengths(List.of("Effort shown", "Partial understanding"));
+            response.setWeaknesses(topics.isEmpty() ? List.of("Some concepts need more review") : topics);
+            response.setRecommendations(List.of("Focus on the topics you missed"));
+        } else {
+            response.setFeedback(summary + " Keep studying! Review the material carefully.");
+            response.setStrengths(List.of("Taking initiative to learn"));
+            response.setWeaknesses(topics.isEmpty() ? List.of("Core concepts need reinforcement") : topics);
+            response.setRecommendations(List.of("Re-read course content", "Try easier questions first"));
+        }
+
+        if (!topics.isEmpty() && scorePercentage < 90) {
+            response.setFeedback(response.getFeedback() + " Review: " + String.join("; ", topics) + ".");
+        }
+
+        response.setCourseValidated(scorePercentage >= PASSING_THRESHOLD);
+        response.setRecommendedDifficulty(nextDifficulty);
+        return response;
+    }
+
+    /**
+     * Calculate the next recommended difficulty based on current level and
+     * performance.
+     *
+     * Logic:
+     * - Score >= 90%: Move UP one level (or stay at EXPERT)
+     * - Score >= 70%: Stay at current level or move up slightly
+     * - Score >= 50%: Stay at current level
+     * - Score < 50%: Move DOWN one level (or stay at EASY)
+     */
+    public static DifficultyLevel calculateNextDifficulty(DifficultyLevel current, double scorePercentage) {
+        DifficultyLevel[] levels = DifficultyLevel.values();
+        int currentIndex = current.ordinal();
+
+        if (scorePercentage >= 90) {
+            // Excellent: Move up one level
+            return levels[Math.min(currentIndex + 1, levels.length - 1)];
+        } else if (scorePercentage >= 70) {
+            // Good: Stay at current level (consolidate knowledge)
+            return current;
+        } else if (scorePercentage >= 50) {
+            // Moderate: Stay at current level
+            return current;
+        } else {
+            // Poor: Move down one level
+            return levels[Math.max(currentIndex - 1, 0)];
+        }
+    }
+
+    private List<String> topicsToReview(List<String> incorrectTopics) {
+        if (incorrectTopics == null) {
+            return List.of();
+        }
+        Set<String> topics = new LinkedHashSet<>();
+        for (String topic : incorrectTopics) {
+            if (topic == null || topic.isBlank()) {
+                continue;
+            }
+            String trimmed = topic.trim();
+            topics.add(trimmed.length() > MAX_TOPIC_LENGTH ? trimmed.substring(0, MAX_TOPIC_LENGTH - 3) + "..." : trimmed);
+            if (topics.size() == MAX_TOPICS) {
+                break;
+            }
+        }
+        return new ArrayList<>(topics);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Course;
+import com.example.demo.entity.Flashcard;
+import com.example.demo.entity.ReviewGrade;
+import com.example.demo.repository.EnrollmentRepository;
+import com.example.demo.repository.FlashcardRepository;
+
+/**
+ * Flashcard Service.
+ *
+ * Flashcards are kept per student and course and reviewed with spaced repetition:
+ * 1. Generated cards are added to the student's deck, due at once; a card
+ *    already in the deck is not added again, even when two generations race
+ * 2. The review queue is the next cards due, oldest due first, in one query
+ *    on the (student, course, due) index whatever the size of the deck
+ * 3. Each review schedules the card's next due date (SM-2, see Flashcard)
+ *
+ * A student opening the flashcards of a course for the first time gets a
+ * generated deck. It is generated once per enrollment, before the review queue
+ * is read and outside any transaction, so the model call holds no connection.
+ */
+@Service
+@Transactional
+public class FlashcardService {
+
+    private final FlashcardRepository flashcardRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final LLMService llmService;
+    private final TransactionTemplate writeTransaction;
+
+    @Value("${app.flashcards.new-cards:5}")
+    private int newCards;
+
+    @Value("${app.flashcards.max-due:50}")
+    private int maxDue;
+
+    public FlashcardService(FlashcardRepository flashcardRepository, EnrollmentRepository enrollmentRepository,
+                            LLMService llmService, PlatformTransactionManager transactionManager) {
+        this.flashcardRepository = flashcardRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.llmService = llmService;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Generate the first deck of a student for a course, unless the enrollment
+     * already had one generated (even if that generation added no card).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void ensureFirstDeck(Long studentId, Course course) {
+        if (flashcardRepository.existsByStudentIdAndCourseId(studentId, course.getId())) {
+            return;
+        }
+        Integer claimed = writeTransaction.execute(status ->
+                enrollmentRepository.claimFlashcardDeck(studentId, course.getId(), LocalDateTime.now()));
+        if (claimed != null && claimed > 0) {
+            generate(studentId, course, newCards);
+        }
+    }
+
+    /**
+     * Number of cards a review queue of the requested size holds.
+     */
+    public int queueSize(int requested) {
+        return Math.max(1, Math.min(requested, maxDue));
+    }
+
+    /**
+     * Up to count cards due now (at most max-due), oldest due first.
+     */
+    @Transactional(readOnly = true)
+    public List<Flashcard> findDue(Long studentId, Long courseId, int count) {
+        return flashcardRepository.findDue(studentId, courseId, LocalDateTime.now(),
+                PageRequest.of(0, queueSize(count)));
+    }
+
+    @Transactional(readOnly = true)
+    public long countDue(Long studentId, Long courseId) {
+        return flashcardRepository.countDue(studentId, courseId, LocalDateTime.now());
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> findNextDueAt(Long studentId, Long courseId) {
+        return flashcardRepository.findNextDueAt(studentId, courseId);
+    }
+
+    /**
+     * Generate cards from the course content and add the new ones to the deck.
+     *
+     * @return the number of cards added
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int generate(Long studentId, Course course, int count) {
+        List<LLMModels.Flashcard> generated = llmService.generateFlashcards(course.getId(), course.getContent(), count);
+
+        Map<String, LLMModels.Flashcard> cards = new LinkedHashMap<>();
+        for (LLMModels.Flashcard card : generated) {
+            if (card.getFront() == null || card.getFront().isBlank() || card.getBack() == null) {
+                continue;
+            }
+            cards.putIfAbsent(Flashcard.cardHash(card.getFront().trim(), card.getBack().trim()), card);
+        }
+        if (cards.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return addNew(studentId, course.getId(), cards);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent generation added some of these cards meanwhile: add the others
+            return addNew(studentId, course.getId(), cards);
+        }
+    }
+
+    private int addNew(Long studentId, Long courseId, Map<String, LLMModels.Flashcard> cards) {
+        Integer added = writeTransaction.execute(status -> {
+            Map<String, LLMModels.Flashcard> remaining = new LinkedHashMap<>(cards);
+            flashcardRepository.findExistingHashes(studentId, courseId, remaining.keySet())
+                    .forEach(remaining::remove);
+            List<Flashcard> flashcards = remaining.values().stream()
+                    .map(card -> new Flashcard(studentId, courseId, card.getFront().trim(), card.getBack().trim()))
+                    .toList();
+            flashcardRepository.saveAll(flashcards);
+            return flashcards.size();
+        });
+        return added != null ? added : 0;
+    }
+
+    /**
+     * Record the student's review of a card of this course and schedule its next one.
+     */
+    public Flashcard review(Long studentId, Long courseId, Long cardId, ReviewGrade grade) {
+        Flashcard card = flashcardRepository.findById(cardId)
+                .orElseThrow(() -> new IllegalArgumentException("Flashcard not found: " + cardId));
+        if (!card.getStudentId().equals(studentId) || !card.getCourseId().equals(courseId)) {
+            throw new SecurityException("This flashcard does not belong to the student's deck for this course");
+        }
+        card.review(grade, LocalDateTime.now());
+        return flashcardRepository.save(card);
+    }
+}
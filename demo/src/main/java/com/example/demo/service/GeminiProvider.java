@@ -0,0 +1,265 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.genai.Client;
+import com.google.genai.types.CachedContent;
+import com.google.genai.types.Content;
+import com.google.genai.types.CreateCachedContentConfig;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.HttpOptions;
+import com.google.genai.types.Part;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * LLM provider backed by the Google Gemini API (official SDK).
+ * Active unless app.llm.mock-mode is enabled.
+ *
+ * The clients are built once at startup and shared by all threads. Each SDK
+ * client only opens 2 connections per host and the SDK has no option to change
+ * that, so calls are spread round-robin over enough clients for
+ * app.gemini.pool.max-connections. Once the application is ready, a warm-up
+ * call validates the API key and opens the first TLS connection; until it
+ * succeeds the provider reports itself as not ready, and the warm-up is
+ * retried in the background.
+ *
+ * Stable prompt prefixes (instructions and course content) of hot courses are
+ * registered as Gemini cached content, so repeated calls only send the short
+ * variable suffix and are billed the cached rate for the prefix.
+ */
+@Component
+@ConditionalOnProperty(name = "app.llm.mock-mode", havingValue = "false", matchIfMissing = true)
+public class GeminiProvider implements LLMProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiProvider.class);
+    // Connections per host of an SDK client (its default HTTP client's pool)
+    private static final int CONNECTIONS_PER_CLIENT = 2;
+
+    private final Client[] geminiClients;
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private final Client geminiClient;
+    private final String warmUpModel;
+    private final PromptPrefixCache prefixCache;
+
+    private volatile boolean warmedUp;
+    private volatile String lastError;
+
+    public GeminiProvider(@Value("${app.gemini.api-key:}") String apiKey,
+                          @Value("${app.llm.routing.default-model:gemini-2.0-flash}") String warmUpModel,
+                          @Value("${app.gemini.timeout-ms:60000}") int timeoutMs,
+                          @Value("${app.gemini.pool.max-connections:50}") int maxConnections,
+                          @Value("${app.gemini.cache.enabled:true}") boolean cacheEnabled,
+                          @Value("${app.gemini.cache.ttl-minutes:60}") long cacheTtlMinutes,
+                          @Value("${app.gemini.cache.min-hits:2}") int cacheMinHits,
+                          @Value("${app.gemini.cache.min-prefix-tokens:4096}") int cacheMinPrefixTokens,
+                          @Value("${app.gemini.cache.max-entries:500}") int cacheMaxEntries,
+                          @Value("${app.gemini.cache.retry-after-failure-seconds:30}") long cacheRetrySeconds) {
+        this.warmUpModel = warmUpModel;
+        this.prefixCache = cacheEnabled
+                ? new PromptPrefixCache(Duration.ofMinutes(cacheTtlMinutes), cacheMinHits, cacheMinPrefixTokens,
+                        cacheMaxEntries, Duration.ofSeconds(cacheRetrySeconds), this::deleteCachedContent)
+                : null;
+        this.geminiClients = buildClients(apiKey, timeoutMs, maxConnections);
+        this.geminiClient = geminiClients.length > 0 ? geminiClients[0] : null;
+    }
+
+    private Client[] buildClients(String apiKey, int timeoutMs, int maxConnections) {
+        if (apiKey == null || apiKey.isBlank()) {
+            logger.warn("Gemini API key not configured - LLM calls will use local fallbacks");
+            return new Client[0];
+        }
+        int count = Math.max(1, (maxConnections + CONNECTIONS_PER_CLIENT - 1) / CONNECTIONS_PER_CLIENT);
+        Client[] clients = new Client[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                clients[i] = Client.builder()
+                        .apiKey(apiKey)
+                        .httpOptions(HttpOptions.builder().timeout(timeoutMs).build())
+                        .build();
+            }
+            logger.info("Initialized {} Gemini clients ({} connections, timeout {} ms)",
+                    count, count * CONNECTIONS_PER_CLIENT, timeoutMs);
+            return clients;
+        } catch (Exception e) {
+            logger.error("Error initializing Gemini client: {}", e.getMessage());
+            for (Client client : clients) {
+                if (client != null) {
+                    client.close();
+                }
+            }
+            return new Client[0];
+        }
+    }
+
+    /**
+     * Next client, round-robin.
+     */
+    private Client client() {
+        return geminiClients[Math.floorMod(nextClient.getAndIncrement(), geminiClients.length)];
+    }
+
+    /**
+     * Validate the API key and prime the connection pool before traffic arrives.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (geminiClient == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            geminiClient.models.get(warmUpModel, null);
+            warmedUp = true;
+            lastError = null;
+            logger.info("Gemini client warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.warn("Gemini warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Retry a failed warm-up in the background.
+     */
+    @Scheduled(initialDelayString = "${app.gemini.warm-up-retry-ms:30000}",
+               fixedDelayString = "${app.gemini.warm-up-retry-ms:30000}")
+    public void retryWarmUp() {
+        if (!warmedUp) {
+            warmUp();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Client client : geminiClients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public Completion complete(Request request) {
+        if (geminiClient == null) {
+            throw new IllegalStateException("Failed to initialize Gemini client");
+        }
+
+        long start = System.nanoTime();
+        GenerateContentResponse response = generate(request);
+        long latencyMs = (System.nanoTime() - start) / 1_000_000;
+
+        if (response == null) {
+            throw new IllegalStateException("Empty response from Gemini");
+        }
+
+        String text = response.text();
+        if (text == null) {
+            throw new IllegalStateException("Gemini returned no text");
+        }
+        int inputTokens = response.usageMetadata()
+                .flatMap(GenerateContentResponseUsageMetadata::promptTokenCount)
+                .orElse(LLMProvider.estimateTokens(request.prompt()));
+        int outputTokens = response.usageMetadata()
+                .flatMap(GenerateContentResponseUsageMetadata::candidatesTokenCount)
+                .orElse(LLMProvider.estimateTokens(text));
+        int cachedTokens = response.usageMetadata()
+                .flatMap(GenerateContentResponseUsageMetadata::cachedContentTokenCount)
+                .orElse(0);
+
+        return new Completion(text, request.model(), inputTokens, outputTokens, cachedTokens, latencyMs);
+    }
+
+    /**
+     * Send only the suffix when the prefix is registered as cached content;
+     * fall back to the full prompt if the cache entry is no longer accepted.
+     */
+    private GenerateContentResponse generate(Request request) {
+        String cachedContent = prefixCache != null
+                ? prefixCache.acquire(request.model(), request.prefix(), text -> createCachedContent(request.model(), text))
+                : null;
+        if (cachedContent == null) {
+            return client().models.generateContent(request.model(), request.prompt(), null);
+        }
+
+        try {
+            return client().models.generateContent(request.model(), request.suffix(),
+                    GenerateContentConfig.builder().cachedContent(cachedContent).build());
+        } catch (RuntimeException e) {
+            String message = e.getMessage() != null ? e.getMessage() : "";
+            if (message.contains("429") || message.contains("RESOURCE_EXHAUSTED")) {
+                throw e;
+            }
+            logger.warn("Cached content {} rejected, sending full prompt: {}", cachedContent, message);
+            prefixCache.invalidate(request.model(), request.prefix());
+            return client().models.generateContent(request.model(), request.prompt(), null);
+        }
+    }
+
+    private String createCachedContent(String model, String prefix) {
+        try {
+            CachedContent cached = client().caches.create(model, CreateCachedContentConfig.builder()
+                    .ttl(prefixCache.getTtl())
+                    .contents(List.of(Content.builder().role("user").parts(List.of(Part.fromText(prefix))).build()))
+                    .build());
+            logger.info("Registered prompt prefix as cached content {} ({} tokens est.)",
+                    cached.name().orElse("?"), LLMProvider.estimateTokens(prefix));
+            return cached.name().orElse(null);
+        } catch (Exception e) {
+            logger.warn("Could not create cached content: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteCachedContent(String name) {
+        if (geminiClient == null) {
+            return;
+        }
+        try {
+            client().caches.delete(name, null);
+        } catch (Exception e) {
+            logger.debug("Could not delete cached content {} (expires with its TTL): {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public void evictCachedPrefixes(Long courseId, int currentGeneration) {
+        if (prefixCache != null) {
+            prefixCache.evict(courseId, currentGeneration);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    /**
+     * Ready once warmed up. Without an API key the provider is never called
+     * (LLMService uses local fallbacks), so the node is ready as well.
+     * Only reports the state: a failed warm-up is retried by retryWarmUp.
+     */
+    @Override
+    public boolean isReady() {
+        return geminiClient == null || warmedUp;
+    }
+
+    @Override
+    public String status() {
+        if (geminiClient == null) {
+            return "not configured (local fallback)";
+        }
+        return warmedUp ? "ready" : "warming up" + (lastError != null ? ": " + lastError : "");
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.ItemStatistics;
+import com.example.demo.entity.PackedAnswers;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.QuestionItem;
+import com.example.demo.repository.ItemStatisticsRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Item Analytics Service.
+ *
+ * Item statistics (see ItemStatistics) are maintained from each evaluated
+ * submission, never by scanning the answers:
+ * 1. Each question of the submission adds its response to an in-memory tally of its
+ *    item: counts, option counts and the streaming (Welford) mean and variance
+ *    of the submission scores
+ * 2. Every flush interval, the tallies are merged into their item rows in one
+ *    transaction and start over, so the database sees one write per item and
+ *    interval
+ * 3. A course's analysis is read from its item rows, one per question
+ *
+ * Inside a transaction a submission is tallied once it commits, so a
+ * submission rolled back is not counted.
+ */
+@Component
+public class ItemAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemAnalyticsService.class);
+
+    private final ItemStatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<ItemKey, Tally> tallies = new ConcurrentHashMap<>();
+
+    // Responses needed before a question is flagged as too easy, too hard or not discriminating
+    @Value("${app.analytics.min-responses:10}")
+    private int minResponses;
+
+    public ItemAnalyticsService(ItemStatisticsRepository statisticsRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Add the responses of an evaluated submission to the statistics of its questions.
+     */
+    public void recordSubmission(Long courseId, List<Question> questions, int[] selectedOptions,
+                                 boolean[] correct, double scorePercentage) {
+        // Read the questions now: they may not be readable once the transaction is over
+        List<Response> responses = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
+            responses.add(new Response(new ItemKey(courseId, QuestionItem.stemHash(question.getQuestionText())),
+                    question.getQuestionText(), question.getOptions().size(), selectedOptions[i], correct[i]));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tally(responses, scorePercentage);
+                }
+            });
+        } else {
+            tally(responses, scorePercentage);
+        }
+    }
+
+    /**
+     * Statistics of the questions of a course, most answered first.
+     */
+    public List<ItemStatistics> findByCourse(Long courseId) {
+        return statisticsRepository.findByCourseId(courseId);
+    }
+
+    public int getMinResponses() {
+        return minResponses;
+    }
+
+    /**
+     * Merge the tallies gathered since the last flush into their item rows.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<ItemKey, Tally> taken = new HashMap<>();
+        for (ItemKey key : tallies.keySet()) {
+            Tally tally = tallies.remove(key);
+            if (tally != null) {
+                tally.close();
+                taken.put(key, tally);
+            }
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> merge(taken));
+            logger.debug("Merged item statistics of {} questions", taken.size());
+        } catch (RuntimeException e) {
+            taken.forEach(this::restore);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not flush item statistics on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private void tally(List<Response> responses, double scorePercentage) {
+        for (Response response : responses) {
+            while (!tallies.computeIfAbsent(response.key(), k -> new Tally()).add(response, scorePercentage)) {
+                // Taken by a flush meanwhile: add to the next tally
+            }
+        }
+    }
+
+    private void merge(Map<ItemKey, Tally> taken) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, List<ItemKey>> byCourse = taken.keySet().stream()
+                .collect(Collectors.groupingBy(ItemKey::courseId));
+        List<ItemStatistics> rows = new ArrayList<>();
+        for (Map.Entry<Long, List<ItemKey>> course : byCourse.entrySet()) {
+            Map<String, ItemStatistics> existing = statisticsRepository.findByCourseIdAndStemHashIn(course.getKey(),
+                            course.getValue().stream().map(ItemKey::stemHash).toList())
+                    .stream()
+                    .collect(Collectors.toMap(ItemStatistics::getStemHash, Function.identity()));
+            for (ItemKey key : course.getValue()) {
+                Tally tally = taken.get(key);
+                ItemStatistics row = existing.computeIfAbsent(key.stemHash(),
+                        stemHash -> new ItemStatistics(key.courseId(), stemHash));
+                row.merge(tally.responses, tally.correct, tally.unanswered, tally.scoreMean, tally.scoreM2,
+                        tally.correct > 0 ? tally.correctScoreSum / tally.correct : 0.0,
+                        Arrays.copyOf(tally.optionCounts, tally.options));
+                row.setQuestionText(tally.questionText);
+                row.setUpdatedAt(now);
+                rows.add(row);
+            }
+        }
+        statisticsRepository.saveAll(rows);
+    }
+
+    private void restore(ItemKey key, Tally taken) {
+        while (!tallies.computeIfAbsent(key, k -> new Tally()).absorb(taken)) {
+            // Taken by a flush meanwhile: add to the next tally
+        }
+    }
+
+    private record ItemKey(Long courseId, String stemHash) {}
+
+    private record Response(ItemKey key, String questionText, int options, int selectedOption, boolean correct) {}
+
+    /**
+     * Responses to one question since the last flush.
+     */
+    private static final class Tally {
+        String questionText;
+        int options;
+        long responses;
+        long correct;
+        long unanswered;
+        double scoreMean;
+        double scoreM2;
+        double correctScoreSum;
+        final long[] optionCounts = new long[PackedAnswers.MAX_OPTIONS];
+        boolean closed;
+
+        /**
+         * Add a response; false if the tally was taken by a flush.
+         */
+        synchronized boolean add(Response response, double score) {
+            if (closed) {
+                return false;
+            }
+            questionText = response.questionText();
+            options = Math.max(options, Math.min(response.options(), optionCounts.length));
+            responses++;
+            double delta = score - scoreMean;
+            scoreMean += delta / responses;
+            scoreM2 += delta * (score - scoreMean);
+            int selected = response.selectedOption();
+            if (selected < 0) {
+                unanswered++;
+            } else if (selected < optionCounts.length) {
+                optionCounts[selected]++;
+            }
+            if (response.correct()) {
+                correct++;
+                correctScoreSum += score;
+            }
+            return true;
+        }
+
+        /**
+         * Add the responses of another tally; false if this one was taken by a flush.
+         */
+        synchronized boolean absorb(Tally other) {
+            if (closed) {
+                return false;
+            }
+            long total = responses + other.responses;
+            double delta = other.scoreMean - scoreMean;
+            scoreM2 += other.scoreM2 + delta * delta * responses * other.responses / total;
+            scoreMean += delta * other.responses / total;
+            responses = total;
+            correct += other.correct;
+            unanswered += other.unanswered;
+            correctScoreSum += other.correctScoreSum;
+            for (int i = 0; i < optionCounts.length; i++) {
+                optionCounts[i] += other.optionCounts[i];
+            }
+            if (questionText == null) {
+                questionText = other.questionText;
+            }
+            options = Math.max(options, other.options);
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+}
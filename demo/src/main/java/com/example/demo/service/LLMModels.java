@@ -134,6 +134,50 @@ public class LLMModels {
         }
     }
 
+    /**
+     * Explanations of one question, generated after the quiz is submitted.
+     */
+    public static class QuestionExplanation {
+        @JsonProperty("question_index")
+        private int questionIndex;
+
+        @JsonProperty("explanation")
+        private String explanation;
+
+        @JsonProperty("option_explanations")
+        private List<String> optionExplanations;
+
+        public int getQuestionIndex() {
+            return questionIndex;
+        }
+
+        public void setQuestionIndex(int questionIndex) {
+            this.questionIndex = questionIndex;
+        }
+
+        public String getExplanation() {
+            return explanation;
+        }
+
+        public void setExplanation(String explanation) {
+            this.explanation = explanation;
+        }
+
+        public List<String> getOptionExplanations() {
+            return optionExplanations;
+        }
+
+        public void setOptionExplanations(List<String> optionExplanations) {
+            this.optionExplanations = optionExplanations;
+        }
+    }
+
+    /**
+     * Inputs of one quiz evaluation, as sent in a batched evaluation call.
+     */
+    public record EvaluationInput(double scorePercentage, int correctAnswers, int totalQuestions,
+                                  List<String> incorrectTopics, DifficultyLevel currentDifficulty) {}
+
     /**
      * Evaluation response from LLM for quiz results.
      */
@@ -0,0 +1,16 @@
+package com.example.demo.service;
+
+/**
+ * Enumeration of the operations the platform asks an LLM provider to perform.
+ * Providers, routing and usage accounting are keyed by operation.
+ */
+public enum LLMOperation {
+    QUIZ,
+    EXPLANATION,
+    EVALUATION,
+    FLASHCARDS,
+    CHAT,
+    CHAT_SUMMARY,
+    SUMMARY,
+    SECTION_SUMMARY
+}
@@ -0,0 +1,95 @@
+package com.example.demo.service;
+
+import java.util.Map;
+
+/**
+ * Abstraction over the backend that turns a prompt into a completion.
+ *
+ * LLMService builds prompts and parses responses; a provider only performs the
+ * call. Requests carry the structured inputs (operation, course context and
+ * attributes such as the number of questions) next to the rendered prompt so
+ * that non-network providers can produce realistic output without parsing it.
+ */
+public interface LLMProvider {
+
+    /**
+     * Perform a completion. Failures are reported as runtime exceptions whose
+     * message carries the HTTP status (e.g. "429", "500") like the Gemini SDK.
+     */
+    Completion complete(Request request);
+
+    /**
+     * Name reported in logs and stored with generated content.
+     */
+    String name();
+
+    /**
+     * Whether the provider is ready to serve calls (client built and warmed up).
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * Short description of the provider state for the health endpoint.
+     */
+    default String status() {
+        return "ready";
+    }
+
+    /**
+     * Release the cached prompt prefixes of a course built for an index
+     * generation older than the given one.
+     */
+    default void evictCachedPrefixes(Long courseId, int currentGeneration) {
+    }
+
+    /**
+     * A completion request. When a prefix is given, the prompt starts with it
+     * and the provider may serve it from its context cache.
+     */
+    record Request(LLMOperation operation,
+                   Long courseId,
+                   String model,
+                   CachedPrefix prefix,
+                   String prompt,
+                   String context,
+                   Map<String, Object> attributes) {
+
+        public Object attribute(String key) {
+            return attributes != null ? attributes.get(key) : null;
+        }
+
+        /**
+         * The variable part of the prompt that follows the prefix.
+         */
+        public String suffix() {
+            return prefix != null ? prompt.substring(prefix.text().length()) : prompt;
+        }
+    }
+
+    /**
+     * Stable prompt prefix (instructions and course content) of a course at a
+     * given index generation.
+     */
+    record CachedPrefix(Long courseId, int generation, String text) {}
+
+    /**
+     * A completion result with token accounting. Cached input tokens are the part
+     * of the input tokens served from the provider's prompt cache.
+     */
+    record Completion(String text,
+                      String model,
+                      int inputTokens,
+                      int outputTokens,
+                      int cachedInputTokens,
+                      long latencyMs) {}
+
+    /**
+     * Rough token estimate (about 4 characters per token) used when a backend
+     * does not report usage.
+     */
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight coalescing of identical concurrent LLM calls.
+ *
+ * When a whole class opens the same flashcards or summary, or a button is
+ * double-clicked, the identical calls arrive together. The first caller for a
+ * key performs the call; callers arriving while it is in flight wait for the
+ * same future and receive its result (or its exception). Nothing is cached:
+ * the key is released as soon as the call completes.
+ */
+@Component
+public class LLMRequestCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMRequestCoalescer.class);
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executedCalls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    /**
+     * Build the key of a call: operation, course, model and a hash of the
+     * rendered prompt (which contains the course content and all parameters).
+     */
+    public String key(LLMOperation operation, Long courseId, String model, String prompt) {
+        return operation + ":" + courseId + ":" + model + ":" + sha256(prompt);
+    }
+
+    /**
+     * Run the call, or join the identical call already in flight.
+     */
+    public <T> T execute(String key, Supplier<T> call) {
+        return execute(key, call, result -> {});
+    }
+
+    /**
+     * Same as above; onJoined is given the shared result when this caller
+     * joined a call in flight instead of running it (e.g. to meter it).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call, Consumer<T> onJoined) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            coalescedCalls.increment();
+            logger.debug("Joined in-flight LLM call {}", key);
+            T result;
+            try {
+                result = (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            onJoined.accept(result);
+            return result;
+        }
+
+        executedCalls.increment();
+        try {
+            T result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Get the number of calls performed and of calls saved by coalescing.
+     */
+    public Stats getStats() {
+        return new Stats(executedCalls.sum(), coalescedCalls.sum());
+    }
+
+    private String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Coalescing counters since startup.
+     */
+    public record Stats(long executedCalls, long coalescedCalls) {
+
+        public double getSavedRatio() {
+            long total = executedCalls + coalescedCalls;
+            return total > 0 ? (double) coalescedCalls / total : 0.0;
+        }
+    }
+}
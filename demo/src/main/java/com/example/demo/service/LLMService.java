@@ -1,21 +1,40 @@
 package com.example.demo.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.security.SecurityUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.genai.Client;
-import com.google.genai.types.GenerateContentResponse;
 
 /**
- * LLM (Large Language Model) Service using Google Gemini API with official SDK.
+ * LLM (Large Language Model) Service.
+ *
+ * Builds prompts and parses responses; the actual call is delegated to the
+ * active {@link LLMProvider} (Gemini, or the simulated provider when
+ * app.llm.mock-mode is enabled). Without a provider available the local mock
+ * generators below are used.
  */
 @Service
 public class LLMService {
@@ -23,18 +42,91 @@ public class LLMService {
     private static final Logger logger = LoggerFactory.getLogger(LLMService.class);
 
     private final ObjectMapper objectMapper;
-    private Client geminiClient;
+    private final LLMProvider provider;
+    private final LLMUsageMeter usageMeter;
+    private final ModelRouter modelRouter;
+    private final LLMRequestCoalescer coalescer;
+    private final SecurityUtils securityUtils;
+    private final LocalQuestionSynthesizer questionSynthesizer;
+    private final EvaluationEngine evaluationEngine;
+    private final CourseRepository courseRepository;
+    // Index generation per course, read from the course on first use
+    private final Map<Long, Integer> indexGenerations = new ConcurrentHashMap<>();
 
     @Value("${app.gemini.api-key:}")
     private String geminiApiKey;
 
-    // Using gemini-2.0-flash - the currently supported model
-    private static final String GEMINI_MODEL = "gemini-2.0-flash";
+    @Value("${app.llm.mock-mode:false}")
+    private boolean mockMode;
+
+    @Value("${app.llm.cassette.mode:off}")
+    private String cassetteMode;
+
+    @Value("${app.llm.quiz.local-easy:true}")
+    private boolean localEasyQuizzes;
+
+    @Value("${app.llm.quiz.shard-size:5}")
+    private int quizShardSize;
+
+    @Value("${app.llm.quiz.duplicate-similarity:0.8}")
+    private double duplicateSimilarity;
+
+    @Value("${app.llm.quiz.lazy-explanations:true}")
+    private boolean lazyExplanations;
+
+    // Answer given when a chat call fails
+    public static final String CHAT_ERROR_RESPONSE =
+            "I'm having trouble processing your request right now. Please try again.";
+
     private static final int MAX_RETRIES = 3;
     private static final long INITIAL_DELAY_MS = 5000; // 5 seconds
 
-    public LLMService(ObjectMapper objectMapper) {
+    // Lean quiz format: explanations are generated later, on the result page
+    private static final String QUIZ_FORMAT = """
+            {
+              "questions": [
+                {
+                  "question_text": "Question text with $inline math$ or $$display math$$",
+                  "options": ["Option A with $formula$ if needed", "Option B", "Option C", "Option D"],
+                  "correct_option_index": 0,
+                  "source_context": "Topic of the question in a few words"
+                }
+              ]
+            }
+            """;
+
+    private static final String QUIZ_FORMAT_WITH_EXPLANATIONS = """
+            {
+              "questions": [
+                {
+                  "question_text": "Question text with $inline math$ or $$display math$$",
+                  "options": [
+                    {"text": "Option A with $formula$ if needed", "explanation": "Why correct/incorrect"},
+                    {"text": "Option B", "explanation": "Why correct/incorrect"},
+                    {"text": "Option C", "explanation": "Why correct/incorrect"},
+                    {"text": "Option D", "explanation": "Why correct/incorrect"}
+                  ],
+                  "correct_option_index": 0,
+                  "explanation": "Overall explanation with $formulas$ if relevant",
+                  "source_context": "Source from content"
+                }
+              ]
+            }
+            """;
+
+    public LLMService(ObjectMapper objectMapper, LLMProvider provider,
+            LLMUsageMeter usageMeter, ModelRouter modelRouter, LLMRequestCoalescer coalescer,
+            SecurityUtils securityUtils, LocalQuestionSynthesizer questionSynthesizer,
+            EvaluationEngine evaluationEngine, CourseRepository courseRepository) {
         this.objectMapper = objectMapper;
+        this.provider = provider;
+        this.usageMeter = usageMeter;
+        this.modelRouter = modelRouter;
+        this.coalescer = coalescer;
+        this.securityUtils = securityUtils;
+        this.questionSynthesizer = questionSynthesizer;
+        this.evaluationEngine = evaluationEngine;
+        this.courseRepository = courseRepository;
     }
 
     private void logDebug(String message) {
@@ -48,70 +140,148 @@ public class LLMService {
     }
 
     /**
-     * Initialize the Gemini client lazily with API key.
+     * Send a prompt to the active provider. The structured inputs travel with the
+     * prompt so the simulated provider can answer without parsing it.
+     * The call is checked against the quotas and metered for the current user
+     * and the given course (either may be null, e.g. during startup indexing).
+     * The model is chosen by the router, which is fed back the call's latency
+     * and outcome.
+     * Identical concurrent calls are coalesced: only the first one is sent,
+     * the others share its result. Every caller is checked against its own
+     * quota before joining, and metered for the call (with no tokens when it
+     * shared another caller's call).
      */
-    private Client getGeminiClient() {
-        logDebug("getGeminiClient called. Key present: " + (geminiApiKey != null));
-        if (geminiClient == null && geminiApiKey != null && !geminiApiKey.isBlank()) {
-            try {
-                geminiClient = Client.builder().apiKey(geminiApiKey).build();
-                logDebug("Initialized Gemini client successfully with model: " + GEMINI_MODEL);
-                logger.info("Initialized Gemini client with model: {}", GEMINI_MODEL);
-            } catch (Exception e) {
-                logDebug("Error initializing Gemini client: " + e.getMessage());
-                e.printStackTrace();
-            }
+    private LLMProvider.Completion complete(LLMOperation operation, Long courseId, String prompt, String context,
+            Map<String, Object> attributes) {
+        return complete(operation, courseId, null, prompt, context, attributes);
+    }
+
+    /**
+     * Same as above for a prompt made of a stable prefix (instructions and course
+     * content) and a variable suffix. The prefix is tagged with the course's index
+     * generation so that the provider may cache it until the course is re-indexed.
+     */
+    private LLMProvider.Completion complete(LLMOperation operation, Long courseId, String prefix, String suffix,
+            String context, Map<String, Object> attributes) {
+        String prompt = prefix != null ? prefix + suffix : suffix;
+        LLMProvider.CachedPrefix cachedPrefix = prefix != null && courseId != null
+                ? new LLMProvider.CachedPrefix(courseId, indexGeneration(courseId), prefix)
+                : null;
+
+        User user = securityUtils.getCurrentUser();
+        Long userId = user != null ? user.getId() : null;
+        Role role = user != null ? user.getRole() : null;
+        usageMeter.checkQuota(userId, role, courseId);
+
+        DifficultyLevel difficulty = attributes.get("difficulty") instanceof DifficultyLevel d ? d : null;
+        String key = coalescer.key(operation, courseId, modelRouter.primaryModel(operation, difficulty), prompt);
+        long start = System.nanoTime();
+        return coalescer.execute(key,
+                () -> callProvider(operation, courseId, userId, role, difficulty, cachedPrefix, prompt, context,
+                        attributes),
+                shared -> usageMeter.recordCoalesced(userId, role, courseId, operation, shared.model(),
+                        (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * Record that a course was re-indexed: cached prompt prefixes of older
+     * generations are released.
+     */
+    public void onCourseIndexed(Long courseId, int indexGeneration) {
+        indexGenerations.put(courseId, indexGeneration);
+        provider.evictCachedPrefixes(courseId, indexGeneration);
+    }
+
+    /**
+     * Current index generation of a course, kept across restarts by the course.
+     */
+    private int indexGeneration(Long courseId) {
+        return indexGenerations.computeIfAbsent(courseId,
+                id -> courseRepository.findIndexGeneration(id).orElse(0));
+    }
+
+    private LLMProvider.Completion callProvider(LLMOperation operation, Long courseId, Long userId, Role role,
+            DifficultyLevel difficulty, LLMProvider.CachedPrefix cachedPrefix, String prompt, String context,
+            Map<String, Object> attributes) {
+        ModelRouter.Route route = modelRouter.route(operation, difficulty);
+
+        long start = System.nanoTime();
+        LLMProvider.Completion completion;
+        try {
+            completion = provider.complete(new LLMProvider.Request(
+                    operation, courseId, route.model(), cachedPrefix, prompt, context, attributes));
+        } catch (RuntimeException e) {
+            modelRouter.recordFailure(route, (System.nanoTime() - start) / 1_000_000);
+            throw e;
         }
-        return geminiClient;
+        modelRouter.recordSuccess(route, completion.latencyMs());
+        usageMeter.record(userId, role, courseId, operation, completion);
+        return completion;
     }
 
     /**
      * Generate quiz questions using Gemini LLM via official SDK with retry logic.
      */
-    public LLMModels.QuizResponse generateQuiz(String context, int numberOfQuestions,
+    public LLMModels.QuizResponse generateQuiz(Long courseId, String context, int numberOfQuestions,
             DifficultyLevel difficulty, String courseTitle) {
-        logger.info("Starting quiz generation - API key present: {}",
-                (geminiApiKey != null && !geminiApiKey.isBlank()));
+        logger.info("Starting quiz generation - provider: {}", provider.name());
+
+        // EASY quizzes are synthesized locally, without any model call
+        if (difficulty == DifficultyLevel.EASY && localEasyQuizzes) {
+            List<LLMModels.QuestionData> localQuestions = questionSynthesizer.synthesize(context, numberOfQuestions,
+                    synthesisSeed(courseId, context, numberOfQuestions, difficulty));
+            if (localQuestions.size() == numberOfQuestions) {
+                LLMModels.QuizResponse response = new LLMModels.QuizResponse();
+                response.setQuestions(localQuestions);
+                response.setModelUsed("local");
+                logger.info("Synthesized {} EASY questions locally", localQuestions.size());
+                return response;
+            }
+            logger.info("Course content yields {} of {} local questions, using the model",
+                    localQuestions.size(), numberOfQuestions);
+        }
 
-        if (geminiApiKey == null || geminiApiKey.isBlank()) {
+        if (!isLLMAvailable()) {
             logger.warn("Gemini API key not configured - using mock mode");
-            return generateMockQuiz(context, numberOfQuestions, difficulty, courseTitle);
+            return generateMockQuiz(courseId, context, numberOfQuestions, difficulty, courseTitle);
         }
 
-        String prompt = buildQuizPrompt(context, numberOfQuestions, difficulty, courseTitle);
+        String promptPrefix = buildQuizPromptPrefix(context, courseTitle);
+        String promptSuffix = buildQuizPromptSuffix(numberOfQuestions, difficulty);
 
         // Retry logic with exponential backoff
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
-                logger.info("Calling Gemini API ({}) - attempt {}/{}", GEMINI_MODEL, attempt, MAX_RETRIES);
-
-                Client client = getGeminiClient();
-                if (client == null) {
-                    throw new RuntimeException("Failed to initialize Gemini client");
-                }
+                logger.info("Calling {} - attempt {}/{}", provider.name(), attempt, MAX_RETRIES);
 
-                GenerateContentResponse response = client.models.generateContent(
-                        GEMINI_MODEL,
-                        prompt,
-                        null);
+                LLMProvider.Completion completion = complete(LLMOperation.QUIZ, courseId, promptPrefix, promptSuffix, context,
+                        Map.of("count", numberOfQuestions, "difficulty", difficulty, "explanations", !lazyExplanations));
 
-                String responseText = response.text();
-                logger.info("Received Gemini response ({} chars)", responseText.length());
+                String responseText = completion.text();
+                logger.info("Received {} response ({} chars)", provider.name(), responseText.length());
 
-                LLMModels.QuizResponse quizResponse = parseQuizResponse(responseText, numberOfQuestions, difficulty,
-                        context);
+                LLMModels.QuizResponse quizResponse = parseQuizResponse(responseText, courseId, numberOfQuestions,
+                        difficulty, context);
 
                 // Only set model if successfully parsed from Gemini (flag is set in
                 // parseQuizResponse)
                 if (quizResponse.isGeneratedByGemini()) {
-                    quizResponse.setModelUsed(GEMINI_MODEL);
-                    logger.info("Successfully generated quiz with {} questions from Gemini",
-                            quizResponse.getQuestions() != null ? quizResponse.getQuestions().size() : 0);
+                    quizResponse.setModelUsed(completion.model());
+                    logger.info("Successfully generated quiz with {} questions from {}",
+                            quizResponse.getQuestions() != null ? quizResponse.getQuestions().size() : 0,
+                            completion.model());
                 } else {
                     logger.warn("Gemini returned response but parsing failed, using mock quiz");
                 }
                 return quizResponse;
 
+            } catch (QuotaExceededException e) {
+                // Out of quota: generate locally instead of retrying
+                logger.info("Quiz generation over quota ({}), using mock quiz", e.getMessage());
+                LLMModels.QuizResponse mockResponse = generateMockQuiz(courseId, context, numberOfQuestions, difficulty,
+                        courseTitle);
+                mockResponse.setModelUsed("mock (quota-exceeded)");
+                return mockResponse;
             } catch (Exception e) {
                 String errorMsg = e.getMessage() != null ? e.getMessage() : "";
                 logger.warn("Attempt {}/{} failed: {}", attempt, MAX_RETRIES, errorMsg);
@@ -139,38 +309,288 @@ public class LLMService {
         }
 
         logger.warn("All retries exhausted - falling back to mock mode");
-        LLMModels.QuizResponse mockResponse = generateMockQuiz(context, numberOfQuestions, difficulty, courseTitle);
+        LLMModels.QuizResponse mockResponse = generateMockQuiz(courseId, context, numberOfQuestions, difficulty,
+                courseTitle);
         mockResponse.setModelUsed("mock (rate-limited)");
         return mockResponse;
     }
 
     /**
-     * Evaluate quiz results using Gemini.
+     * Number of shards a quiz of this size is generated in.
      */
-    public LLMModels.EvaluationResponse evaluateQuizResults(String courseContext,
-            double scorePercentage,
-            int correctAnswers,
-            int totalQuestions,
-            List<String> incorrectTopics,
-            DifficultyLevel currentDifficulty) {
-        if (geminiApiKey == null || geminiApiKey.isBlank()) {
-            return generateMockEvaluation(scorePercentage, correctAnswers, totalQuestions, currentDifficulty);
+    public int getQuizShardCount(int numberOfQuestions) {
+        return quizShardSize > 0 ? Math.max(1, (numberOfQuestions + quizShardSize - 1) / quizShardSize) : 1;
+    }
+
+    /**
+     * Generate a quiz from context shards (disjoint parts of the course).
+     *
+     * Output length drives generation latency, so a large quiz is requested as
+     * one small quiz per shard, all running concurrently on virtual threads:
+     * 1. Questions are spread evenly over the shards
+     * 2. Each shard goes through the regular pipeline (retries, fallbacks);
+     *    questions of a shard that fell back to the mock quiz are dropped
+     * 3. Near-identical stems (Jaccard similarity of their words) are dropped
+     * 4. Missing questions are topped up locally rather than with another round trip
+     *
+     * The quiz only counts as generated by the model if every shard was.
+     */
+    public LLMModels.QuizResponse generateQuiz(Long courseId, List<String> contextShards, int numberOfQuestions,
+            DifficultyLevel difficulty, String courseTitle) {
+        String fullContext = String.join("\n\n", contextShards);
+        boolean local = difficulty == DifficultyLevel.EASY && localEasyQuizzes;
+        if (contextShards.size() <= 1 || local || !isLLMAvailable()) {
+            return generateQuiz(courseId, fullContext, numberOfQuestions, difficulty, courseTitle);
+        }
+
+        int shards = contextShards.size();
+        List<Callable<LLMModels.QuizResponse>> tasks = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            int count = numberOfQuestions / shards + (s < numberOfQuestions % shards ? 1 : 0);
+            String shardContext = contextShards.get(s);
+            if (count > 0) {
+                tasks.add(() -> generateQuiz(courseId, shardContext, count, difficulty, courseTitle));
+            }
+        }
+        logger.info("Generating {} questions in {} parallel shards", numberOfQuestions, tasks.size());
+
+        List<LLMModels.QuizResponse> responses = new ArrayList<>();
+        // The security context carries the user for quotas and metering
+        try (ExecutorService executor = new DelegatingSecurityContextExecutorService(
+                Executors.newVirtualThreadPerTaskExecutor())) {
+            for (Future<LLMModels.QuizResponse> future : executor.invokeAll(tasks)) {
+                responses.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Quiz generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Quiz shard failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        return mergeShards(responses, courseId, fullContext, numberOfQuestions, difficulty);
+    }
+
+    private LLMModels.QuizResponse mergeShards(List<LLMModels.QuizResponse> responses, Long courseId,
+            String fullContext, int numberOfQuestions, DifficultyLevel difficulty) {
+        LLMModels.QuizResponse merged = new LLMModels.QuizResponse();
+        List<LLMModels.QuestionData> questions = new ArrayList<>();
+        List<Set<String>> stems = new ArrayList<>();
+
+        // Questions of shards that fell back to the mock quiz are dropped (and
+        // topped up from the course content) unless no shard succeeded
+        List<LLMModels.QuizResponse> generated = responses.stream()
+                .filter(LLMModels.QuizResponse::isGeneratedByGemini)
+                .toList();
+        List<LLMModels.QuizResponse> kept = generated.isEmpty() ? responses : generated;
+        if (!generated.isEmpty() && generated.size() < responses.size()) {
+            logger.warn("{} of {} quiz shards failed, replacing their questions",
+                    responses.size() - generated.size(), responses.size());
+        }
+        merged.setGeneratedByGemini(!responses.isEmpty() && generated.size() == responses.size());
+        if (!kept.isEmpty()) {
+            merged.setModelUsed(kept.get(0).getModelUsed());
+        }
+        for (LLMModels.QuizResponse response : kept) {
+            if (response.getQuestions() != null) {
+                addUnlessDuplicate(response.getQuestions(), questions, stems, numberOfQuestions);
+            }
+        }
+
+        if (questions.size() < numberOfQuestions) {
+            logger.info("{} duplicate or missing questions after merging shards, topping up locally",
+                    numberOfQuestions - questions.size());
+            addUnlessDuplicate(questionSynthesizer.synthesize(fullContext, numberOfQuestions,
+                    synthesisSeed(courseId, fullContext, numberOfQuestions, difficulty)), questions, stems, numberOfQuestions);
+        }
+
+        merged.setQuestions(questions);
+        return merged;
+    }
+
+    /**
+     * Seed of the local question synthesizer, so that the same request on the
+     * same indexed content of a course always yields the same questions.
+     */
+    private long synthesisSeed(Long courseId, String context, int numberOfQuestions, DifficultyLevel difficulty) {
+        long seed = 0;
+        if (courseId != null) {
+            seed = courseId * 31 + indexGeneration(courseId);
+        }
+        seed = seed * 31 + (context != null ? context.hashCode() : 0);
+        seed = seed * 31 + numberOfQuestions;
+        return seed * 31 + (difficulty != null ? difficulty.name().hashCode() : 0);
+    }
+
+    private void addUnlessDuplicate(List<LLMModels.QuestionData> candidates, List<LLMModels.QuestionData> questions,
+            List<Set<String>> stems, int limit) {
+        for (LLMModels.QuestionData candidate : candidates) {
+            if (questions.size() >= limit) {
+                return;
+            }
+            Set<String> words = stemWords(candidate.getQuestionText());
+            boolean duplicate = stems.stream().anyMatch(other -> jaccard(words, other) >= duplicateSimilarity);
+            if (!duplicate) {
+                questions.add(candidate);
+                stems.add(words);
+            }
+        }
+    }
+
+    private Set<String> stemWords(String questionText) {
+        Set<String> words = new HashSet<>();
+        for (String word : (questionText != null ? questionText : "").toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (word.length() > 2) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> intersection = new HashSet<>(a);
+        intersection.retainAll(b);
+        return (double) intersection.size() / (a.size() + b.size() - intersection.size());
+    }
+
+    /**
+     * Evaluate several quiz results of a course in one call.
+     * The result has one evaluation per input, in order; inputs the model left
+     * out or answered unparsably get the rule-based evaluation.
+     */
+    public List<LLMModels.EvaluationResponse> evaluateQuizResultsBatch(Long courseId,
+            List<LLMModels.EvaluationInput> inputs) {
+        if (inputs.isEmpty()) {
+            return List.of();
+        }
+        List<LLMModels.EvaluationResponse> parsed = new ArrayList<>();
+        if (isLLMAvailable()) {
+            try {
+                LLMProvider.Completion completion = complete(LLMOperation.EVALUATION, courseId,
+                        buildBatchEvaluationPrompt(inputs), null, Map.of("evaluations", inputs));
+                parsed = parseBatchEvaluationResponse(completion.text(), inputs);
+            } catch (Exception e) {
+                logger.error("Error calling Gemini for batched evaluation: {}", e.getMessage());
+            }
+        }
+
+        List<LLMModels.EvaluationResponse> evaluations = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            LLMModels.EvaluationInput input = inputs.get(i);
+            evaluations.add(i < parsed.size() && parsed.get(i) != null
+                    ? parsed.get(i)
+                    : evaluationEngine.evaluate(input.correctAnswers(), input.totalQuestions(),
+                            input.incorrectTopics(), input.currentDifficulty()));
+        }
+        return evaluations;
+    }
+
+    /**
+     * Generate the explanations of a quiz's questions in one call.
+     * Used when quizzes are generated without explanations: they are only shown
+     * on the result page, so they are produced when it is first viewed.
+     * The result has one entry per question, in order; questions the model left
+     * out, or all of them if the call failed, are null so that they can be
+     * explained later. Without a model, every question gets a generic explanation.
+     */
+    public List<LLMModels.QuestionExplanation> generateExplanations(Long courseId, String courseContext,
+            List<LLMModels.QuestionData> questions) {
+        if (questions.isEmpty()) {
+            return List.of();
+        }
+        if (!isLLMAvailable()) {
+            return fillExplanations(questions, List.of(), true);
         }
 
         try {
-            String prompt = buildEvaluationPrompt(scorePercentage, correctAnswers, totalQuestions, incorrectTopics,
-                    currentDifficulty);
-            Client client = getGeminiClient();
-            GenerateContentResponse response = client.models.generateContent(GEMINI_MODEL, prompt, null);
-            return parseEvaluationResponse(response.text(), scorePercentage, correctAnswers, totalQuestions,
-                    currentDifficulty);
+            LLMProvider.Completion completion = complete(LLMOperation.EXPLANATION, courseId,
+                    buildExplanationPromptPrefix(courseContext), buildExplanationPromptSuffix(questions),
+                    courseContext, Map.of("questions", questions));
+            return parseExplanations(completion.text(), questions);
+        } catch (Exception e) {
+            logger.error("Error generating explanations: {}", e.getMessage());
+            return fillExplanations(questions, List.of(), false);
+        }
+    }
+
+    public boolean isLazyExplanations() {
+        return lazyExplanations;
+    }
+
+    private List<LLMModels.QuestionExplanation> parseExplanations(String responseText,
+            List<LLMModels.QuestionData> questions) {
+        List<LLMModels.QuestionExplanation> parsed = new ArrayList<>();
+        try {
+            String jsonContent = extractJson(responseText);
+            if (jsonContent != null) {
+                JsonNode explanationsNode = objectMapper.readTree(jsonContent).path("explanations");
+                for (JsonNode node : explanationsNode) {
+                    LLMModels.QuestionExplanation explanation = new LLMModels.QuestionExplanation();
+                    explanation.setQuestionIndex(node.path("question_index").asInt(-1));
+                    explanation.setExplanation(node.path("explanation").asText(""));
+                    List<String> optionExplanations = new ArrayList<>();
+                    for (JsonNode optNode : node.path("option_explanations")) {
+                        optionExplanations.add(optNode.asText(""));
+                    }
+                    explanation.setOptionExplanations(optionExplanations);
+                    parsed.add(explanation);
+                }
+            }
         } catch (Exception e) {
-            logger.error("Error calling Gemini for evaluation: {}", e.getMessage());
-            return generateMockEvaluation(scorePercentage, correctAnswers, totalQuestions, currentDifficulty);
+            logger.warn("Could not parse explanations: {}", e.getMessage());
         }
+        return fillExplanations(questions, parsed, false);
     }
 
-    private LLMModels.QuizResponse parseQuizResponse(String responseText, int numberOfQuestions,
+    /**
+     * One explanation per question, taken from the parsed ones when present;
+     * otherwise generic, or null unless genericIfMissing. Option explanations the
+     * model left out are generic.
+     */
+    private List<LLMModels.QuestionExplanation> fillExplanations(List<LLMModels.QuestionData> questions,
+            List<LLMModels.QuestionExplanation> parsed, boolean genericIfMissing) {
+        List<LLMModels.QuestionExplanation> explanations = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            int index = i;
+            LLMModels.QuestionExplanation explanation = parsed.stream()
+                    .filter(e -> e.getQuestionIndex() == index && !e.getExplanation().isBlank())
+                    .findFirst()
+                    .orElse(null);
+            if (explanation == null && !genericIfMissing) {
+                explanations.add(null);
+                continue;
+            }
+            if (explanation == null) {
+                explanation = new LLMModels.QuestionExplanation();
+                explanation.setQuestionIndex(i);
+                explanation.setExplanation("This concept is a core part of the provided material.");
+                explanation.setOptionExplanations(List.of());
+            }
+
+            // Fill in missing option explanations
+            LLMModels.QuestionData question = questions.get(i);
+            int optionCount = question.getOptions() != null ? question.getOptions().size() : 0;
+            List<String> optionExplanations = new ArrayList<>(explanation.getOptionExplanations());
+            for (int o = 0; o < optionCount; o++) {
+                String generic = o == question.getCorrectOptionIndex()
+                        ? "Correct. This is explicitly stated in the text."
+                        : "Incorrect. This is not supported by the text.";
+                if (o >= optionExplanations.size()) {
+                    optionExplanations.add(generic);
+                } else if (optionExplanations.get(o).isBlank()) {
+                    optionExplanations.set(o, generic);
+                }
+            }
+            explanation.setOptionExplanations(optionExplanations.subList(0, optionCount));
+            explanations.add(explanation);
+        }
+        return explanations;
+    }
+
+    private LLMModels.QuizResponse parseQuizResponse(String responseText, Long courseId, int numberOfQuestions,
             DifficultyLevel difficulty, String context) {
         try {
             String jsonContent = extractJson(responseText);
@@ -200,7 +620,7 @@ public class LLMService {
         }
 
         // Return mock quiz (not generated by Gemini)
-        LLMModels.QuizResponse mockResponse = generateMockQuiz(context, numberOfQuestions, difficulty, "Course");
+        LLMModels.QuizResponse mockResponse = generateMockQuiz(courseId, context, numberOfQuestions, difficulty, "Course");
         mockResponse.setGeneratedByGemini(false);
         mockResponse.setModelUsed("mock (parse-failed)");
         return mockResponse;
@@ -219,6 +639,19 @@ public class LLMService {
         return null;
     }
 
+    /**
+     * Same as {@link #extractJson(String)} for responses whose top level is an array.
+     */
+    private String extractJsonArray(String text) {
+        String cleaned = text.replaceAll("```json\\s*", "").replaceAll("```\\s*", "");
+        int start = cleaned.indexOf("[");
+        int end = cleaned.lastIndexOf("]");
+        if (start >= 0 && end > start) {
+            return fixLatexEscapes(cleaned.substring(start, end + 1));
+        }
+        return null;
+    }
+
     /**
      * Fix LaTeX escape sequences that are invalid in JSON.
      * LaTeX uses backslash-pi, backslash-alpha, etc. which need to be
@@ -278,8 +711,9 @@ public class LLMService {
                 JsonNode optionsNode = qNode.path("options");
                 if (optionsNode.isArray()) {
                     for (JsonNode optNode : optionsNode) {
+                        // Lean format: plain strings; full format: objects with explanations
                         LLMModels.OptionData option = new LLMModels.OptionData();
-                        option.setText(optNode.path("text").asText());
+                        option.setText(optNode.isTextual() ? optNode.asText() : optNode.path("text").asText());
                         option.setExplanation(optNode.path("explanation").asText(""));
                         options.add(option);
                     }
@@ -292,16 +726,17 @@ public class LLMService {
         return response;
     }
 
-    private String buildQuizPrompt(String context, int numberOfQuestions,
-            DifficultyLevel difficulty, String courseTitle) {
+    /**
+     * Stable part of the quiz prompt: instructions and course content. It is the
+     * same for every quiz of a course, so providers can serve it from a cache.
+     */
+    private String buildQuizPromptPrefix(String context, String courseTitle) {
         return String.format("""
                 You are an expert educational quiz creator specializing in creating engaging,
                 dynamic questions. Generate a multiple-choice quiz based EXCLUSIVELY on the
                 following course content.
 
                 COURSE TITLE: %s
-                DIFFICULTY LEVEL: %s
-                NUMBER OF QUESTIONS: %d
 
                 COURSE CONTENT:
                 %s
@@ -337,38 +772,83 @@ public class LLMService {
                 - Include "which formula applies" type questions when appropriate
                 - Ask students to identify correct transformations or simplifications
 
+                Respond ONLY with valid JSON (escape special characters properly):
+                %s
+                """, courseTitle, context, lazyExplanations ? QUIZ_FORMAT : QUIZ_FORMAT_WITH_EXPLANATIONS);
+    }
+
+    /**
+     * Variable part of the quiz prompt.
+     */
+    private String buildQuizPromptSuffix(int numberOfQuestions, DifficultyLevel difficulty) {
+        return String.format("""
+                QUIZ REQUEST:
+                DIFFICULTY LEVEL: %s
+                NUMBER OF QUESTIONS: %d
+                """, difficulty.name(), numberOfQuestions);
+    }
+
+    /**
+     * Stable part of the explanation prompt: instructions and course content.
+     */
+    private String buildExplanationPromptPrefix(String context) {
+        return String.format("""
+                You are an expert tutor. Explain the answers of a multiple-choice quiz based
+                EXCLUSIVELY on the following course content.
+
+                COURSE CONTENT:
+                %s
+
+                For every question, explain briefly why the correct option is right and why
+                each other option is wrong. Use LaTeX notation ($...$) for mathematical expressions.
+
                 Respond ONLY with valid JSON (escape special characters properly):
                 {
-                  "questions": [
+                  "explanations": [
                     {
-                      "question_text": "Question text with $inline math$ or $$display math$$",
-                      "options": [
-                        {"text": "Option A with $formula$ if needed", "explanation": "Why correct/incorrect"},
-                        {"text": "Option B", "explanation": "Why correct/incorrect"},
-                        {"text": "Option C", "explanation": "Why correct/incorrect"},
-                        {"text": "Option D", "explanation": "Why correct/incorrect"}
-                      ],
-                      "correct_option_index": 0,
-                      "explanation": "Overall explanation with $formulas$ if relevant",
-                      "source_context": "Source from content"
+                      "question_index": 0,
+                      "explanation": "Overall explanation",
+                      "option_explanations": ["Why option A is correct/incorrect", "...", "...", "..."]
                     }
                   ]
                 }
-                """, courseTitle, difficulty.name(), numberOfQuestions, context);
+
+                """, context);
     }
 
-    private String buildEvaluationPrompt(double scorePercentage, int correctAnswers,
-            int totalQuestions, List<String> incorrectTopics,
-            DifficultyLevel currentDifficulty) {
-        return String.format("""
-                Evaluate quiz results and recommend the NEXT appropriate difficulty level.
+    /**
+     * Variable part of the explanation prompt: the questions and their answers.
+     */
+    private String buildExplanationPromptSuffix(List<LLMModels.QuestionData> questions) {
+        StringBuilder suffix = new StringBuilder("QUESTIONS:\n");
+        for (int i = 0; i < questions.size(); i++) {
+            LLMModels.QuestionData question = questions.get(i);
+            suffix.append("[").append(i).append("] ").append(question.getQuestionText()).append("\n");
+            List<LLMModels.OptionData> options = question.getOptions();
+            for (int o = 0; o < options.size(); o++) {
+                suffix.append("  ").append((char) ('A' + o)).append(". ").append(options.get(o).getText()).append("\n");
+            }
+            suffix.append("  Correct: ").append((char) ('A' + question.getCorrectOptionIndex())).append("\n");
+        }
+        return suffix.toString();
+    }
 
-                CURRENT QUIZ INFO:
-                - Current Difficulty: %s
-                - Score: %.1f%%
-                - Correct: %d/%d
-                - Weak topics: %s
+    private String buildBatchEvaluationPrompt(List<LLMModels.EvaluationInput> inputs) {
+        StringBuilder results = new StringBuilder();
+        for (int i = 0; i < inputs.size(); i++) {
+            LLMModels.EvaluationInput input = inputs.get(i);
+            results.append(String.format("[%d] Difficulty: %s | Score: %.1f%% | Correct: %d/%d | Weak topics: %s%n",
+                    i, input.currentDifficulty().name(), input.scorePercentage(), input.correctAnswers(),
+                    input.totalQuestions(),
+                    input.incorrectTopics() != null && !input.incorrectTopics().isEmpty()
+                            ? String.join(", ", input.incorrectTopics()) : "none"));
+        }
+        return String.format("""
+                Evaluate the quiz results of several students independently and recommend the
+                NEXT appropriate difficulty level for each.
 
+                QUIZ RESULTS:
+                %s
                 DIFFICULTY PROGRESSION RULES:
                 - If score >= 90%% at current level, recommend NEXT HIGHER level
                 - If score >= 70%% at current level, recommend SAME level or SLIGHTLY higher
@@ -377,11 +857,38 @@ public class LLMService {
                 - If already at EXPERT with score >= 90%%, recommend EXPERT
                 - If already at EASY with score < 50%%, recommend EASY
 
-                Return JSON: {"feedback": "message", "strengths": [], "weaknesses": [],
+                Return JSON with one entry per result:
+                {"evaluations": [{"index": 0, "feedback": "message", "strengths": [], "weaknesses": [],
                 "recommendations": [], "recommended_difficulty": "EASY|MEDIUM|HARD|EXPERT",
-                "course_validated": true/false}
-                """, currentDifficulty.name(), scorePercentage, correctAnswers, totalQuestions,
-                incorrectTopics != null ? String.join(", ", incorrectTopics) : "none");
+                "course_validated": true/false}]}
+                """, results);
+    }
+
+    /**
+     * Split a batched evaluation back per input; missing entries are null.
+     */
+    private List<LLMModels.EvaluationResponse> parseBatchEvaluationResponse(String responseText,
+            List<LLMModels.EvaluationInput> inputs) {
+        List<LLMModels.EvaluationResponse> evaluations = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+        try {
+            String jsonContent = extractJson(responseText);
+            if (jsonContent == null) {
+                return evaluations;
+            }
+            for (JsonNode node : objectMapper.readTree(jsonContent).path("evaluations")) {
+                int index = node.path("index").asInt(-1);
+                if (index < 0 || index >= inputs.size()) {
+                    continue;
+                }
+                LLMModels.EvaluationInput input = inputs.get(index);
+                evaluations.set(index, parseEvaluationResponse(objectMapper.writeValueAsString(node),
+                        input.scorePercentage(), input.correctAnswers(), input.totalQuestions(),
+                        input.currentDifficulty()));
+            }
+        } catch (Exception e) {
+            logger.warn("Could not parse batched evaluation: {}", e.getMessage());
+        }
+        return evaluations;
     }
 
     private LLMModels.EvaluationResponse parseEvaluationResponse(String responseText,
@@ -421,17 +928,19 @@ public class LLMService {
         } catch (Exception e) {
             logger.warn("Could not parse evaluation: {}", e.getMessage());
         }
-        return generateMockEvaluation(scorePercentage, correctAnswers, totalQuestions, currentDifficulty);
+        return evaluationEngine.evaluate(correctAnswers, totalQuestions, List.of(), currentDifficulty);
     }
 
-    private LLMModels.QuizResponse generateMockQuiz(String context, int numberOfQuestions,
+    private LLMModels.QuizResponse generateMockQuiz(Long courseId, String context, int numberOfQuestions,
             DifficultyLevel difficulty, String courseTitle) {
         LLMModels.QuizResponse response = new LLMModels.QuizResponse();
-        List<LLMModels.QuestionData> questions = new ArrayList<>();
+        // Questions synthesized from the content first, generic ones if it is too thin
+        List<LLMModels.QuestionData> questions = new ArrayList<>(questionSynthesizer.synthesize(context,
+                numberOfQuestions, synthesisSeed(courseId, context, numberOfQuestions, difficulty)));
 
         String[] paragraphs = context.split("\\n\\n+");
 
-        for (int i = 0; i < numberOfQuestions; i++) {
+        for (int i = questions.size(); i < numberOfQuestions; i++) {
             String paragraph = paragraphs[i % paragraphs.length];
             LLMModels.QuestionData question = createMockQuestion(paragraph, i, difficulty);
             questions.add(question);
@@ -483,83 +992,25 @@ public class LLMService {
         return question;
     }
 
-    private LLMModels.EvaluationResponse generateMockEvaluation(double scorePercentage,
-            int correctAnswers,
-            int totalQuestions,
-            DifficultyLevel currentDifficulty) {
-        LLMModels.EvaluationResponse response = new LLMModels.EvaluationResponse();
-
-        // Intelligent difficulty recommendation based on current level and score
-        DifficultyLevel nextDifficulty = calculateNextDifficulty(currentDifficulty, scorePercentage);
-
-        if (scorePercentage >= 90) {
-            response.setFeedback("Excellent performance! You've mastered this level.");
-            response.setStrengths(List.of("Excellent understanding", "Strong grasp of concepts"));
-            response.setWeaknesses(List.of());
-            response.setCourseValidated(true);
-            response.setRecommendations(List.of("Ready for the next challenge!"));
-        } else if (scorePercentage >= 70) {
-            response.setFeedback("Good job! You passed the quiz.");
-            response.setStrengths(List.of("Good understanding"));
-            response.setWeaknesses(List.of("Minor areas to review"));
-            response.setCourseValidated(true);
-            response.setRecommendations(List.of("Review incorrect answers before moving on"));
-        } else if (scorePercentage >= 50) {
-            response.setFeedback("You're making progress. Keep practicing!");
-            response.setStrengths(List.of("Effort shown", "Partial understanding"));
-            response.setWeaknesses(List.of("Some concepts need more review"));
-            response.setCourseValidated(false);
-            response.setRecommendations(List.of("Focus on the topics you missed"));
-        } else {
-            response.setFeedback("Keep studying! Review the material carefully.");
-            response.setStrengths(List.of("Taking initiative to learn"));
-            response.setWeaknesses(List.of("Core concepts need reinforcement"));
-            response.setCourseValidated(false);
-            response.setRecommendations(List.of("Re-read course content", "Try easier questions first"));
-        }
-
-        response.setRecommendedDifficulty(nextDifficulty);
-        return response;
-    }
-
     /**
-     * Calculate the next recommended difficulty based on current level and
-     * performance.
-     * 
-     * Logic:
-     * - Score >= 90%: Move UP one level (or stay at EXPERT)
-     * - Score >= 70%: Stay at current level or move up slightly
-     * - Score >= 50%: Stay at current level
-     * - Score < 50%: Move DOWN one level (or stay at EASY)
+     * Chat with the AI about a specific course (RAG-based).
+     *
+     * @throws QuotaExceededException if the user or course is over its daily quota
      */
-    private DifficultyLevel calculateNextDifficulty(DifficultyLevel current, double scorePercentage) {
-        DifficultyLevel[] levels = DifficultyLevel.values();
-        int currentIndex = current.ordinal();
-
-        if (scorePercentage >= 90) {
-            // Excellent: Move up one level
-            return levels[Math.min(currentIndex + 1, levels.length - 1)];
-        } else if (scorePercentage >= 70) {
-            // Good: Stay at current level (consolidate knowledge)
-            return current;
-        } else if (scorePercentage >= 50) {
-            // Moderate: Stay at current level
-            return current;
-        } else {
-            // Poor: Move down one level
-            return levels[Math.max(currentIndex - 1, 0)];
-        }
+    public String chatWithCourse(Long courseId, String message, String courseContext) {
+        return chatWithCourse(courseId, message, courseContext, null);
     }
 
     /**
-     * Chat with the AI about a specific course (RAG-based).
-     */
-    /**
-     * Chat with the AI about a specific course (RAG-based).
+     * Chat with the AI about a specific course, continuing a conversation.
+     * The history (rolling summary and recent turns, see ChatSessionService) goes
+     * after the cached course prefix, so it does not break prefix caching.
+     *
+     * @throws QuotaExceededException if the user or course is over its daily quota
      */
-    public String chatWithCourse(String message, String courseContext) {
-        logDebug("chatWithCourse called. Key: " + (geminiApiKey != null ? "PRESENT" : "NULL"));
-        if (geminiApiKey == null || geminiApiKey.isBlank()) {
+    public String chatWithCourse(Long courseId, String message, String courseContext, String history) {
+        logDebug("chatWithCourse called. Provider available: " + isLLMAvailable());
+        if (!isLLMAvailable()) {
             // Smart Mock Response
             String snippet = courseContext.length() > 200 ? courseContext.substring(0, 200) + "..." : courseContext;
             return "**(Demo Mode)** That is an excellent question! Based on the course material, here is a relevant excerpt that might help:\n\n> "
@@ -569,54 +1020,58 @@ public class LLMService {
         }
 
         try {
-            String prompt = String.format(
+            // Instructions and context first so the prefix is the same for every question
+            String promptPrefix = String.format(
                     """
                             You are CogniAI, an intelligent educational assistant for the course.
 
                             COURSE CONTEXT:
                             %s
 
-                            USER QUESTION:
-                            %s
-
                             INSTRUCTIONS:
                             1. Answer the user's question based on the course context provided.
                             2. Be helpful, encouraging, and concise.
                             3. If the answer isn't in the context, say so politely but try to offer general knowledge if relevant.
                             4. Use markdown for formatting (bold, lists, code blocks).
-                            """,
-                    courseContext, message);
 
-            Client client = getGeminiClient();
-            if (client == null) {
-                logDebug("Client is null in chatWithCourse");
-                return "I'm having trouble connecting to the AI service.";
+                            """,
+                    courseContext);
+            String promptSuffix = String.format("""
+                    USER QUESTION:
+                    %s
+                    """, message);
+            if (history != null && !history.isBlank()) {
+                promptSuffix = "CONVERSATION SO FAR:\n" + history + "\n\n" + promptSuffix;
             }
 
-            logDebug("Calling Gemini API for chat...");
-            GenerateContentResponse response = client.models.generateContent(GEMINI_MODEL, prompt, null);
-            logDebug("Gemini chat response received");
-            return response != null ? response.text() : "I received an empty response from the AI.";
+            logDebug("Calling " + provider.name() + " for chat...");
+            LLMProvider.Completion completion = complete(LLMOperation.CHAT, courseId, promptPrefix, promptSuffix,
+                    courseContext,
+                    Map.of("message", message != null ? message : ""));
+            logDebug("Chat response received");
+            return completion.text();
+        } catch (QuotaExceededException e) {
+            throw e;
         } catch (Exception e) {
             logDebug("Error in chatWithCourse: " + e.getMessage());
             logger.error("Error in chatWithCourse: {}", e.getMessage());
-            return "I'm having trouble processing your request right now. Please try again.";
+            return CHAT_ERROR_RESPONSE;
         }
     }
 
     /**
      * Generate flashcards for a course.
      */
-    public List<LLMModels.Flashcard> generateFlashcards(String courseContext, int count) {
-        logDebug("generateFlashcards called. Key: " + (geminiApiKey != null ? "PRESENT" : "NULL"));
-        if (geminiApiKey == null || geminiApiKey.isBlank()) {
-            logDebug("Key is null/blank, using mock");
+    public List<LLMModels.Flashcard> generateFlashcards(Long courseId, String courseContext, int count) {
+        logDebug("generateFlashcards called. Provider available: " + isLLMAvailable());
+        if (!isLLMAvailable()) {
+            logDebug("No provider available, using mock");
             return generateMockFlashcards(courseContext, count);
         }
 
         try {
-            String prompt = String.format("""
-                    Generate %d study flashcards based on the following course content.
+            String promptPrefix = String.format("""
+                    Generate study flashcards based on the following course content.
 
                     COURSE CONTENT:
                     %s
@@ -628,19 +1083,15 @@ public class LLMService {
                         "back": "Answer or Explanation"
                       }
                     ]
-                    """, count, courseContext);
 
-            Client client = getGeminiClient();
-            if (client == null) {
-                logDebug("Client is null, using mock");
-                return generateMockFlashcards(courseContext, count);
-            }
+                    """, courseContext);
+            String promptSuffix = String.format("NUMBER OF FLASHCARDS: %d%n", count);
 
-            logDebug("Calling Gemini API...");
-            GenerateContentResponse response = client.models.generateContent(GEMINI_MODEL, prompt, null);
-            logDebug("Gemini response received: " + (response != null));
-            return response != null ? parseFlashcards(response.text(), courseContext)
-                    : generateMockFlashcards(courseContext, count);
+            logDebug("Calling " + provider.name() + "...");
+            LLMProvider.Completion completion = complete(LLMOperation.FLASHCARDS, courseId, promptPrefix, promptSuffix,
+                    courseContext,
+                    Map.of("count", count));
+            return parseFlashcards(completion.text(), courseContext, count);
         } catch (Exception e) {
             logDebug("Error generating flashcards: " + e.getMessage());
             logger.error("Error generating flashcards: {}", e.getMessage());
@@ -651,9 +1102,9 @@ public class LLMService {
     /**
      * Generate a summary of the course content.
      */
-    public String summarizeCourse(String courseContext) {
-        if (geminiApiKey == null || geminiApiKey.isBlank()) {
-            return "This is a mock summary of the course content. The course covers various topics related to the subject matter.";
+    public String summarizeCourse(Long courseId, String courseContext) {
+        if (!isLLMAvailable()) {
+            return generateMockSummary(courseContext, 6);
         }
 
         try {
@@ -665,21 +1116,122 @@ public class LLMService {
                     %s
                     """, courseContext);
 
-            Client client = getGeminiClient();
-            if (client == null)
-                return "AI service unavailable.";
-
-            GenerateContentResponse response = client.models.generateContent(GEMINI_MODEL, prompt, null);
-            return response != null ? response.text() : "Failed to generate summary.";
+            return complete(LLMOperation.SUMMARY, courseId, prompt, courseContext, Map.of()).text();
         } catch (Exception e) {
             logger.error("Error summarizing course: {}", e.getMessage());
-            return "Failed to generate summary.";
+            return generateMockSummary(courseContext, 6);
         }
     }
 
-    private List<LLMModels.Flashcard> parseFlashcards(String responseText, String contextFallback) {
+    /**
+     * Generate a short summary of one section (a contiguous range of chunks).
+     * Section summaries are kept to a few sentences so that all of them together
+     * form a compact map of the course.
+     */
+    public String summarizeSection(Long courseId, String sectionContent) {
+        if (!isLLMAvailable()) {
+            return generateMockSummary(sectionContent, 2);
+        }
+
         try {
-            String jsonContent = extractJson(responseText);
+            String prompt = String.format("""
+                    Summarize the following section of a course in at most 3 sentences.
+                    Mention the key terms and concepts it introduces. Respond with plain text only.
+
+                    SECTION CONTENT:
+                    %s
+                    """, sectionContent);
+
+            return complete(LLMOperation.SECTION_SUMMARY, courseId, prompt, sectionContent, Map.of()).text().trim();
+        } catch (Exception e) {
+            logger.error("Error summarizing section: {}", e.getMessage());
+            return generateMockSummary(sectionContent, 2);
+        }
+    }
+
+    /**
+     * Fold chat turns that leave the sliding window into the rolling summary of
+     * the conversation, kept under maxTokens.
+     */
+    public String summarizeChat(Long courseId, String previousSummary, String transcript, int maxTokens) {
+        if (!isLLMAvailable()) {
+            return generateMockChatSummary(previousSummary, transcript, maxTokens);
+        }
+
+        try {
+            String prompt = String.format("""
+                    Update the summary of a tutoring conversation between a student and an assistant.
+                    Keep what the student asked, what was explained and any open questions.
+                    Respond with plain text only, in at most %d words.
+
+                    CURRENT SUMMARY:
+                    %s
+
+                    NEW TURNS:
+                    %s
+                    """, maxTokens * 3 / 4, previousSummary != null ? previousSummary : "(none)", transcript);
+
+            String source = previousSummary != null ? previousSummary + "\n" + transcript : transcript;
+            String summary = complete(LLMOperation.CHAT_SUMMARY, courseId, prompt, source,
+                    Map.of("maxTokens", maxTokens)).text().trim();
+            return clipToTokens(summary, maxTokens);
+        } catch (QuotaExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error summarizing chat: {}", e.getMessage());
+            return generateMockChatSummary(previousSummary, transcript, maxTokens);
+        }
+    }
+
+    /**
+     * Extractive fallback chat summary: the first sentence of each turn, newest
+     * kept when over budget.
+     */
+    private String generateMockChatSummary(String previousSummary, String transcript, int maxTokens) {
+        StringBuilder summary = new StringBuilder(previousSummary != null ? previousSummary : "");
+        for (String line : transcript.split("\n")) {
+            String lead = line.trim().split("(?<=[.!?])\\s+")[0];
+            if (!lead.isEmpty()) {
+                summary.append(summary.length() > 0 ? "\n" : "").append(lead);
+            }
+        }
+        String text = summary.toString();
+        int maxChars = maxTokens * 4;
+        return text.length() > maxChars ? "..." + text.substring(text.length() - maxChars + 3) : text;
+    }
+
+    private String clipToTokens(String text, int maxTokens) {
+        int maxChars = maxTokens * 4;
+        return text.length() > maxChars ? text.substring(0, maxChars - 3) + "..." : text;
+    }
+
+    /**
+     * Extractive fallback summary: the lead sentence of the first paragraphs.
+     */
+    private String generateMockSummary(String context, int maxPoints) {
+        StringBuilder summary = new StringBuilder();
+        int points = 0;
+        for (String paragraph : context.split("\\n\\n+")) {
+            String trimmed = paragraph.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String lead = trimmed.split("(?<=[.!?])\\s+")[0];
+            if (lead.length() > 200) {
+                lead = lead.substring(0, 197) + "...";
+            }
+            summary.append("- ").append(lead).append("\n");
+            if (++points >= maxPoints) {
+                break;
+            }
+        }
+        return summary.length() > 0 ? summary.toString().trim()
+                : "The course covers various topics related to the subject matter.";
+    }
+
+    private List<LLMModels.Flashcard> parseFlashcards(String responseText, String contextFallback, int count) {
+        try {
+            String jsonContent = extractJsonArray(responseText);
             if (jsonContent != null) {
                 JsonNode root = objectMapper.readTree(jsonContent);
                 List<LLMModels.Flashcard> flashcards = new ArrayList<>();
@@ -691,12 +1243,14 @@ public class LLMService {
                         flashcards.add(card);
                     }
                 }
-                return flashcards;
+                if (!flashcards.isEmpty()) {
+                    return flashcards;
+                }
             }
         } catch (Exception e) {
             logger.warn("Could not parse flashcards: {}", e.getMessage());
         }
-        return generateMockFlashcards(contextFallback, 5);
+        return generateMockFlashcards(contextFallback, count);
     }
 
     private List<LLMModels.Flashcard> generateMockFlashcards(String context, int count) {
@@ -728,7 +1282,13 @@ public class LLMService {
         return flashcards;
     }
 
+    /**
+     * Whether calls go to a provider: always in mock mode (simulated provider)
+     * or when replaying a cassette, otherwise only when a Gemini API key is
+     * configured.
+     */
     public boolean isLLMAvailable() {
-        return geminiApiKey != null && !geminiApiKey.isBlank();
+        return mockMode || "replay".equalsIgnoreCase(cassetteMode)
+                || (geminiApiKey != null && !geminiApiKey.isBlank());
     }
 }
@@ -0,0 +1,352 @@
+package com.example.demo.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.LLMUsageSummaryDTO;
+import com.example.demo.entity.Course;
+import com.example.demo.entity.LLMUsage;
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.LLMUsageRepository;
+import com.example.demo.repository.UserRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * LLM Usage Meter.
+ *
+ * Every provider call is recorded here with its token counts, latency and model
+ * (a call that shared a coalesced call in flight is counted as a call with no
+ * tokens, since only the shared call was billed):
+ * 1. Counters are aggregated in memory per (day, user, role, course, operation, model)
+ *    using LongAdders; calls only share the read side of a lock
+ * 2. A scheduled task swaps in fresh counters (write side of the lock, so no call
+ *    is half recorded) and adds the old ones to the key's llm_usage row, in one
+ *    transaction; if that fails they are carried over to the next flush
+ * 3. Daily totals per user and per course are kept alongside (seeded from the
+ *    table on first use) to enforce token quotas before a call is made
+ * 4. Usage reports combine the stored rows with the counters not yet flushed
+ *
+ * Quotas are daily token limits; 0 means unlimited. The per-user limit depends
+ * on the user's role and falls back to app.llm.quota.user-daily-tokens.
+ */
+@Component
+public class LLMUsageMeter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMUsageMeter.class);
+
+    private final LLMUsageRepository usageRepository;
+    private final UserRepository userRepository;
+    private final CourseRepository courseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<UsageKey, Counters> pending = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> dailyTokens = new ConcurrentHashMap<>();
+    private volatile LocalDate currentDay = LocalDate.now();
+
+    @Value("${app.llm.quota.user-daily-tokens:0}")
+    private long userDailyTokens;
+
+    @Value("${app.llm.quota.student-daily-tokens:0}")
+    private long studentDailyTokens;
+
+    @Value("${app.llm.quota.teacher-daily-tokens:0}")
+    private long teacherDailyTokens;
+
+    @Value("${app.llm.quota.administrator-daily-tokens:0}")
+    private long administratorDailyTokens;
+
+    @Value("${app.llm.quota.course-daily-tokens:0}")
+    private long courseDailyTokens;
+
+    public LLMUsageMeter(LLMUsageRepository usageRepository, UserRepository userRepository,
+                         CourseRepository courseRepository, PlatformTransactionManager transactionManager) {
+        this.usageRepository = usageRepository;
+        this.userRepository = userRepository;
+        this.courseRepository = courseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Reject the call if the user or the course has used up today's quota.
+     */
+    public void checkQuota(Long userId, Role role, Long courseId) {
+        if (userId != null) {
+            long limit = userLimit(role);
+            if (limit > 0 && tokensToday("user", userId) >= limit) {
+                throw new QuotaExceededException("Daily AI usage limit reached. Please try again tomorrow.");
+            }
+        }
+        if (courseId != null && courseDailyTokens > 0
+                && tokensToday("course", courseId) >= courseDailyTokens) {
+            throw new QuotaExceededException("Daily AI usage limit for this course reached. Please try again tomorrow.");
+        }
+    }
+
+    /**
+     * Record a completed provider call.
+     */
+    public void record(Long userId, Role role, Long courseId, LLMOperation operation,
+                       LLMProvider.Completion completion) {
+        long tokens = (long) completion.inputTokens() + completion.outputTokens();
+        UsageKey key = new UsageKey(today(), userId, role, courseId, operation, completion.model());
+        add(key, 1, completion.inputTokens(), completion.outputTokens(), completion.cachedInputTokens(),
+                completion.latencyMs());
+
+        if (userId != null) {
+            dailyTotal("user", userId).add(tokens);
+        }
+        if (courseId != null) {
+            dailyTotal("course", courseId).add(tokens);
+        }
+    }
+
+    /**
+     * Record a call that shared another caller's call in flight: counted as a
+     * call, with its wait as latency, but no tokens billed or charged to quotas.
+     */
+    public void recordCoalesced(Long userId, Role role, Long courseId, LLMOperation operation, String model,
+                                long latencyMs) {
+        add(new UsageKey(today(), userId, role, courseId, operation, model), 1, 0, 0, 0, latencyMs);
+    }
+
+    /**
+     * Tokens used today by a user, including calls not yet flushed.
+     */
+    public long getUserTokensToday(Long userId) {
+        return tokensToday("user", userId);
+    }
+
+    /**
+     * Add the aggregated counters to the usage table.
+     */
+    @Scheduled(fixedDelayString = "${app.llm.usage.flush-interval-ms:30000}")
+    public synchronized void flush() {
+        Map<UsageKey, Counters> flushed;
+        swapLock.writeLock().lock();
+        try {
+            flushed = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> flushed.forEach(this::addToRow));
+            logger.debug("Flushed {} LLM usage rows", flushed.size());
+        } catch (RuntimeException e) {
+            flushed.forEach((key, counters) -> add(key, counters.calls.sum(), counters.inputTokens.sum(),
+                    counters.outputTokens.sum(), counters.cachedInputTokens.sum(), counters.latencyMs.sum()));
+            throw e;
+        }
+    }
+
+    /**
+     * Usage since a day, stored and not yet flushed, per operation, model, user
+     * and course (by total tokens, highest first).
+     * Runs under the flush lock so no counter is seen both stored and pending.
+     */
+    public synchronized UsageReport reportSince(LocalDate since) {
+        List<LLMUsage> live = new ArrayList<>();
+        for (Map.Entry<UsageKey, Counters> entry : pending.entrySet()) {
+            if (!entry.getKey().day().isBefore(since)) {
+                live.add(toRow(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        List<LLMUsageSummaryDTO> byUser = merge(usageRepository.summarizeByUserSince(since), live,
+                LLMUsage::getUserId, this::userNames);
+        List<LLMUsageSummaryDTO> byCourse = merge(usageRepository.summarizeByCourseSince(since), live,
+                LLMUsage::getCourseId, this::courseTitles);
+        return new UsageReport(
+                merge(usageRepository.summarizeByOperationSince(since), live, LLMUsage::getOperation, null),
+                merge(usageRepository.summarizeByModelSince(since), live, LLMUsage::getModel, null),
+                byUser, byCourse);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not flush LLM usage on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private void add(UsageKey key, long calls, long inputTokens, long outputTokens, long cachedInputTokens,
+                     long latencyMs) {
+        swapLock.readLock().lock();
+        try {
+            Counters counters = pending.computeIfAbsent(key, k -> new Counters());
+            counters.calls.add(calls);
+            counters.inputTokens.add(inputTokens);
+            counters.outputTokens.add(outputTokens);
+            counters.cachedInputTokens.add(cachedInputTokens);
+            counters.latencyMs.add(latencyMs);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void addToRow(UsageKey key, Counters counters) {
+        LLMUsage usage = usageRepository.findFirstByUsageDateAndUserIdAndRoleAndCourseIdAndOperationAndModelOrderByIdAsc(
+                key.day(), key.userId(), key.role(), key.courseId(), key.operation().name(), key.model())
+                .orElse(null);
+        if (usage == null) {
+            usageRepository.save(toRow(key, counters));
+            return;
+        }
+        usage.setCallCount(usage.getCallCount() + counters.calls.sum());
+        usage.setInputTokens(usage.getInputTokens() + counters.inputTokens.sum());
+        usage.setOutputTokens(usage.getOutputTokens() + counters.outputTokens.sum());
+        usage.setCachedInputTokens(usage.getCachedInputTokens() + counters.cachedInputTokens.sum());
+        usage.setTotalLatencyMs(usage.getTotalLatencyMs() + counters.latencyMs.sum());
+    }
+
+    private LLMUsage toRow(UsageKey key, Counters counters) {
+        LLMUsage usage = new LLMUsage(key.day(), key.userId(), key.role(), key.courseId(),
+                key.operation().name(), key.model());
+        usage.setCallCount(counters.calls.sum());
+        usage.setInputTokens(counters.inputTokens.sum());
+        usage.setOutputTokens(counters.outputTokens.sum());
+        usage.setCachedInputTokens(counters.cachedInputTokens.sum());
+        usage.setTotalLatencyMs(counters.latencyMs.sum());
+        return usage;
+    }
+
+    /**
+     * Add the live rows to the stored summaries, grouped by id (user, course) or
+     * by label (operation, model) when no label lookup is given.
+     */
+    private List<LLMUsageSummaryDTO> merge(List<LLMUsageSummaryDTO> stored, List<LLMUsage> live,
+                                           Function<LLMUsage, Object> key,
+                                           Function<Set<Long>, Map<Long, String>> labels) {
+        Map<Object, LLMUsageSummaryDTO> merged = new LinkedHashMap<>();
+        for (LLMUsageSummaryDTO summary : stored) {
+            merged.put(labels != null ? summary.getId() : summary.getLabel(), summary);
+        }
+
+        Set<Long> unknown = new HashSet<>();
+        for (LLMUsage usage : live) {
+            Object k = key.apply(usage);
+            if (k != null && !merged.containsKey(k) && labels != null) {
+                unknown.add((Long) k);
+            }
+        }
+        Map<Long, String> names = unknown.isEmpty() ? Map.of() : labels.apply(unknown);
+
+        for (LLMUsage usage : live) {
+            Object k = key.apply(usage);
+            if (k == null || (labels != null && !merged.containsKey(k) && !names.containsKey(k))) {
+                continue;
+            }
+            LLMUsageSummaryDTO summary = merged.computeIfAbsent(k, absent -> labels != null
+                    ? new LLMUsageSummaryDTO((Long) absent, names.get(absent), 0L, 0L, 0L, 0L, 0L)
+                    : new LLMUsageSummaryDTO((String) absent, 0L, 0L, 0L, 0L, 0L));
+            summary.add(usage.getCallCount(), usage.getInputTokens(), usage.getOutputTokens(),
+                    usage.getCachedInputTokens(), usage.getTotalLatencyMs());
+        }
+
+        List<LLMUsageSummaryDTO> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparingLong(LLMUsageSummaryDTO::getTotalTokens).reversed());
+        return result;
+    }
+
+    private Map<Long, String> userNames(Set<Long> ids) {
+        Map<Long, String> names = new LinkedHashMap<>();
+        for (User user : userRepository.findAllById(ids)) {
+            names.put(user.getId(), user.getFullName());
+        }
+        return names;
+    }
+
+    private Map<Long, String> courseTitles(Set<Long> ids) {
+        Map<Long, String> titles = new LinkedHashMap<>();
+        for (Course course : courseRepository.findAllById(ids)) {
+            titles.put(course.getId(), course.getTitle());
+        }
+        return titles;
+    }
+
+    private long userLimit(Role role) {
+        long roleLimit = role == null ? 0 : switch (role) {
+            case STUDENT -> studentDailyTokens;
+            case TEACHER -> teacherDailyTokens;
+            case ADMINISTRATOR -> administratorDailyTokens;
+        };
+        return roleLimit > 0 ? roleLimit : userDailyTokens;
+    }
+
+    private long tokensToday(String scope, Long id) {
+        return dailyTotal(scope, id).sum();
+    }
+
+    private LongAdder dailyTotal(String scope, Long id) {
+        String key = scope + ":" + id;
+        LongAdder total = dailyTokens.get(key);
+        if (total == null) {
+            // Seed from rows flushed earlier today (e.g. before a restart)
+            LongAdder seeded = new LongAdder();
+            seeded.add(scope.equals("user")
+                    ? usageRepository.sumTokensByDateAndUserId(today(), id)
+                    : usageRepository.sumTokensByDateAndCourseId(today(), id));
+            total = dailyTokens.putIfAbsent(key, seeded);
+            if (total == null) {
+                total = seeded;
+            }
+        }
+        return total;
+    }
+
+    private LocalDate today() {
+        LocalDate now = LocalDate.now();
+        if (!now.equals(currentDay)) {
+            synchronized (this) {
+                if (!now.equals(currentDay)) {
+                    dailyTokens.clear();
+                    currentDay = now;
+                }
+            }
+        }
+        return now;
+    }
+
+    public record UsageReport(List<LLMUsageSummaryDTO> byOperation, List<LLMUsageSummaryDTO> byModel,
+                              List<LLMUsageSummaryDTO> byUser, List<LLMUsageSummaryDTO> byCourse) {}
+
+    private record UsageKey(LocalDate day, Long userId, Role role, Long courseId,
+                            LLMOperation operation, String model) {}
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder inputTokens = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        final LongAdder cachedInputTokens = new LongAdder();
+        final LongAdder latencyMs = new LongAdder();
+    }
+}
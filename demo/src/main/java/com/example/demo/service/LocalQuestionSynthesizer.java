@@ -0,0 +1,406 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Local Question Synthesizer.
+ *
+ * Builds multiple-choice questions from the course chunks without any model call:
+ * 1. Key terms (words and two-word phrases) are extracted and scored by how often
+ *    and in how many chunks they appear
+ * 2. Definitions are detected with simple patterns ("X is a ...", "X refers to ...",
+ *    "X: ...") and turned into definition-matching questions
+ * 3. Other sentences holding a key term become cloze (fill-in-the-blank) questions
+ * 4. Distractors are the terms closest to the answer elsewhere in the course,
+ *    comparing the words they co-occur with (cosine similarity of context vectors)
+ *
+ * Good enough for EASY quizzes, which it serves in milliseconds.
+ */
+@Component
+public class LocalQuestionSynthesizer {
+
+    private static final int MIN_SENTENCE_LENGTH = 30;
+    private static final int MAX_SENTENCE_LENGTH = 260;
+    private static final int OPTIONS = 4;
+
+    private static final Pattern SENTENCE_SPLIT = Pattern.compile("(?<=[.!?])\\s+");
+    private static final Pattern MARKDOWN_LIST = Pattern.compile("^\\s*(?:[-*+]|\\d+[.)])\\s+");
+    private static final Pattern MARKDOWN_EMPHASIS = Pattern.compile("\\*\\*|__|`");
+    private static final Pattern WORD_SPLIT = Pattern.compile("[^\\p{L}\\p{N}-]+");
+    private static final Pattern[] DEFINITION_PATTERNS = {
+            Pattern.compile("^(?:an?\\s+|the\\s+)?([\\p{L}][\\p{L}\\p{N} -]{2,40}?)\\s+(?:is|are)\\s+(?:defined as|called)\\s+(.{15,})$",
+                    Pattern.CASE_INSENSITIVE),
+            Pattern.compile("^(?:an?\\s+|the\\s+)?([\\p{L}][\\p{L}\\p{N} -]{2,40}?)\\s+(?:refers to|means|denotes)\\s+(.{15,})$",
+                    Pattern.CASE_INSENSITIVE),
+            Pattern.compile("^(?:an?\\s+|the\\s+)?([\\p{L}][\\p{L}\\p{N} -]{2,40}?)\\s+(?:is|are)\\s+((?:an?|the)\\s+.{15,})$",
+                    Pattern.CASE_INSENSITIVE),
+            Pattern.compile("^([\\p{L}][\\p{L}\\p{N} -]{2,40}?)\\s*[:–—]\\s+(.{15,})$")
+    };
+
+    private static final Set<String> REFERENCE_WORDS = Set.of(
+            "it", "its", "this", "that", "these", "those", "they", "there", "here", "he", "she", "we", "you",
+            "each", "some", "such", "which", "what", "one", "our", "their", "his", "her", "all", "most", "many");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "about", "above", "after", "again", "against", "also", "although", "among", "another", "because",
+            "been", "before", "being", "below", "between", "both", "cannot", "could", "does", "doing", "down",
+            "during", "each", "either", "else", "every", "example", "first", "following", "from", "further",
+            "have", "having", "here", "however", "into", "itself", "just", "last", "less", "like", "made",
+            "make", "many", "more", "most", "much", "must", "never", "next", "only", "other", "others", "over",
+            "same", "second", "should", "since", "some", "such", "than", "that", "their", "them", "then",
+            "there", "therefore", "these", "they", "thing", "things", "this", "those", "through", "thus",
+            "under", "until", "upon", "used", "uses", "using", "very", "well", "were", "what", "when", "where",
+            "whether", "which", "while", "whose", "will", "with", "within", "without", "would", "your", "often",
+            "usually", "called", "known", "based", "given", "include", "includes", "including", "several");
+
+    /**
+     * Synthesize up to {@code count} questions from the course context.
+     * May return fewer when the content has too few distinct terms; the seed
+     * makes the selection reproducible.
+     */
+    public List<LLMModels.QuestionData> synthesize(String context, int count, long seed) {
+        if (context == null || context.isBlank() || count <= 0) {
+            return List.of();
+        }
+        Random random = new Random(seed);
+        Corpus corpus = new Corpus(context);
+        if (corpus.terms.size() < OPTIONS) {
+            return List.of();
+        }
+
+        List<LLMModels.QuestionData> questions = new ArrayList<>();
+        Set<String> usedAnswers = new HashSet<>();
+        Set<String> usedSentences = new HashSet<>();
+
+        // Definitions make the best questions, cloze sentences fill the rest
+        List<Definition> definitions = new ArrayList<>(corpus.definitions);
+        Collections.shuffle(definitions, random);
+        List<Sentence> clozeSentences = new ArrayList<>(corpus.sentences);
+        Collections.shuffle(clozeSentences, random);
+
+        int d = 0;
+        int c = 0;
+        while (questions.size() < count && (d < definitions.size() || c < clozeSentences.size())) {
+            boolean preferDefinition = questions.size() % 2 == 0;
+            LLMModels.QuestionData question = null;
+            if ((preferDefinition || c >= clozeSentences.size()) && d < definitions.size()) {
+                question = definitionQuestion(corpus, definitions.get(d++), usedAnswers, usedSentences, random);
+            } else if (c < clozeSentences.size()) {
+                question = clozeQuestion(corpus, clozeSentences.get(c++), usedAnswers, usedSentences, random);
+            }
+            if (question != null) {
+                questions.add(question);
+            }
+        }
+        return questions;
+    }
+
+    private LLMModels.QuestionData definitionQuestion(Corpus corpus, Definition definition, Set<String> usedAnswers,
+            Set<String> usedSentences, Random random) {
+        String term = definition.term();
+        if (usedAnswers.contains(normalize(term)) || usedSentences.contains(definition.sentence().text())) {
+            return null;
+        }
+        List<String> distractors = corpus.nearestTerms(term, definition.sentence(), OPTIONS - 1);
+        if (distractors.size() < OPTIONS - 1) {
+            return null;
+        }
+        usedAnswers.add(normalize(term));
+        usedSentences.add(definition.sentence().text());
+
+        String questionText = "Which term matches this definition: \"" + capitalize(definition.text()) + "\"?";
+        return buildQuestion(questionText, term, distractors, definition.sentence().text(),
+                "By definition, " + definition.sentence().text(), random);
+    }
+
+    private LLMModels.QuestionData clozeQuestion(Corpus corpus, Sentence sentence, Set<String> usedAnswers,
+            Set<String> usedSentences, Random random) {
+        if (usedSentences.contains(sentence.text())) {
+            return null;
+        }
+        // Blank out the most significant term of the sentence
+        String answer = sentence.terms().stream()
+                .filter(t -> !usedAnswers.contains(t))
+                .max(Comparator.comparingDouble(corpus::score))
+                .orElse(null);
+        if (answer == null) {
+            return null;
+        }
+        Matcher matcher = Pattern.compile("(?i)\\b" + Pattern.quote(answer) + "\\b").matcher(sentence.text());
+        if (!matcher.find()) {
+            return null;
+        }
+        String surface = matcher.group();
+        int start = matcher.start();
+        int end = matcher.end();
+        if (matcher.find()) {
+            // The answer would still be visible in the sentence
+            return null;
+        }
+        List<String> distractors = corpus.nearestTerms(answer, sentence, OPTIONS - 1);
+        if (distractors.size() < OPTIONS - 1) {
+            return null;
+        }
+        usedAnswers.add(answer);
+        usedSentences.add(sentence.text());
+
+        String cloze = sentence.text().substring(0, start) + "_____" + sentence.text().substring(end);
+        return buildQuestion("Fill in the blank: " + cloze, surface, distractors, sentence.text(),
+                "The course states: \"" + sentence.text() + "\"", random);
+    }
+
+    private LLMModels.QuestionData buildQuestion(String questionText, String answer, List<String> distractors,
+            String source, String explanation, Random random) {
+        List<String> options = new ArrayList<>();
+        options.add(answer);
+        for (String distractor : distractors) {
+            options.add(matchCase(distractor, answer));
+        }
+        Collections.shuffle(options, random);
+        int correctIndex = options.indexOf(answer);
+
+        LLMModels.QuestionData question = new LLMModels.QuestionData();
+        question.setQuestionText(questionText);
+        question.setCorrectOptionIndex(correctIndex);
+        question.setSourceContext(source);
+        question.setExplanation(explanation);
+
+        List<LLMModels.OptionData> optionData = new ArrayList<>();
+        for (int i = 0; i < options.size(); i++) {
+            LLMModels.OptionData option = new LLMModels.OptionData();
+            option.setText(options.get(i));
+            option.setExplanation(i == correctIndex
+                    ? "Correct. This is what the course states."
+                    : "Incorrect. \"" + options.get(i) + "\" refers to a different concept in the course.");
+            optionData.add(option);
+        }
+        question.setOptions(optionData);
+        return question;
+    }
+
+    /**
+     * Give a distractor the same initial case as the answer so it does not stand out.
+     */
+    private static String matchCase(String term, String answer) {
+        if (term.isEmpty() || answer.isEmpty()) {
+            return term;
+        }
+        String first = Character.isUpperCase(answer.charAt(0))
+                ? term.substring(0, 1).toUpperCase(Locale.ROOT)
+                : term.substring(0, 1).toLowerCase(Locale.ROOT);
+        return first + term.substring(1);
+    }
+
+    private static String normalize(String term) {
+        return term.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static String capitalize(String text) {
+        String trimmed = text.trim().replaceAll("[.;]+$", "");
+        return trimmed.isEmpty() ? trimmed : Character.toUpperCase(trimmed.charAt(0)) + trimmed.substring(1);
+    }
+
+    private static boolean isKeyWord(String word) {
+        return word.length() >= 5 && Character.isLetter(word.charAt(0))
+                && !STOP_WORDS.contains(word.toLowerCase(Locale.ROOT));
+    }
+
+    private record Sentence(String text, int chunk, List<String> terms) {}
+
+    private record Definition(String term, String text, Sentence sentence) {}
+
+    /**
+     * Terms, sentences, definitions and co-occurrence vectors of one course.
+     */
+    private static final class Corpus {
+
+        final List<Sentence> sentences = new ArrayList<>();
+        final List<Definition> definitions = new ArrayList<>();
+        final Map<String, Integer> frequency = new HashMap<>();
+        final Map<String, Set<Integer>> chunksOf = new HashMap<>();
+        final Map<String, String> surfaceForm = new HashMap<>();
+        final Map<String, Map<String, Integer>> contextVectors = new HashMap<>();
+        final Set<String> terms;
+        final int chunkCount;
+
+        Corpus(String context) {
+            String[] chunks = context.split("\\n\\n+");
+            chunkCount = chunks.length;
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                for (String line : chunks[chunk].split("\\n")) {
+                    // Headings are not statements; list markers and emphasis are dropped
+                    if (line.trim().startsWith("#")) {
+                        continue;
+                    }
+                    String plain = MARKDOWN_EMPHASIS.matcher(MARKDOWN_LIST.matcher(line).replaceFirst("")).replaceAll("");
+                    for (String part : SENTENCE_SPLIT.split(plain)) {
+                        String text = part.trim();
+                        if (text.length() < MIN_SENTENCE_LENGTH || text.length() > MAX_SENTENCE_LENGTH
+                                || text.endsWith(":")) {
+                            continue;
+                        }
+                        Sentence sentence = new Sentence(text, chunk, extractTerms(text, chunk));
+                        sentences.add(sentence);
+                        findDefinition(sentence);
+                    }
+                }
+            }
+
+            // Keep terms seen twice or defined; one-off words make poor answers
+            Set<String> defined = new HashSet<>();
+            definitions.forEach(def -> defined.add(normalize(def.term())));
+            terms = new TreeSet<>(defined);
+            for (Map.Entry<String, Integer> entry : frequency.entrySet()) {
+                if (entry.getValue() >= 2) {
+                    terms.add(entry.getKey());
+                }
+            }
+            sentences.replaceAll(s -> new Sentence(s.text(), s.chunk(),
+                    s.terms().stream().filter(terms::contains).distinct().toList()));
+            sentences.removeIf(s -> s.terms().isEmpty());
+        }
+
+        private List<String> extractTerms(String text, int chunk) {
+            String[] words = WORD_SPLIT.split(text);
+            List<String> found = new ArrayList<>();
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].isEmpty() || !isKeyWord(words[i])) {
+                    continue;
+                }
+                found.add(words[i]);
+                if (i + 1 < words.length && isKeyWord(words[i + 1]) && !words[i].equalsIgnoreCase(words[i + 1])
+                        && text.contains(words[i] + " " + words[i + 1])) {
+                    found.add(words[i] + " " + words[i + 1]);
+                }
+            }
+
+            List<String> normalized = new ArrayList<>();
+            for (String term : found) {
+                String key = normalize(term);
+                normalized.add(key);
+                frequency.merge(key, 1, Integer::sum);
+                chunksOf.computeIfAbsent(key, k -> new HashSet<>()).add(chunk);
+                surfaceForm.putIfAbsent(key, term);
+            }
+
+            // Co-occurrence: every key word of the sentence counts for every term in it
+            for (String key : normalized) {
+                Map<String, Integer> vector = contextVectors.computeIfAbsent(key, k -> new HashMap<>());
+                for (String word : words) {
+                    String w = word.toLowerCase(Locale.ROOT);
+                    if (isKeyWord(word) && !key.contains(w)) {
+                        vector.merge(w, 1, Integer::sum);
+                    }
+                }
+            }
+            return normalized;
+        }
+
+        private void findDefinition(Sentence sentence) {
+            for (Pattern pattern : DEFINITION_PATTERNS) {
+                Matcher matcher = pattern.matcher(sentence.text());
+                if (matcher.matches()) {
+                    String term = matcher.group(1).trim();
+                    String[] termWords = term.split("\\s+");
+                    // "It is a ...", "This method is a ..." do not name the concept
+                    if (termWords.length <= 4 && isKeyWord(termWords[termWords.length - 1])
+                            && !REFERENCE_WORDS.contains(termWords[0].toLowerCase(Locale.ROOT))) {
+                        String key = normalize(term);
+                        surfaceForm.put(key, term);
+                        frequency.merge(key, 1, Integer::sum);
+                        chunksOf.computeIfAbsent(key, k -> new HashSet<>()).add(sentence.chunk());
+                        definitions.add(new Definition(term, matcher.group(2).trim(), sentence));
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Frequent terms spread over few chunks are the most specific.
+         */
+        double score(String term) {
+            int df = chunksOf.getOrDefault(term, Set.of()).size();
+            double idf = Math.log(1.0 + (double) chunkCount / Math.max(1, df));
+            return frequency.getOrDefault(term, 0) * idf + (term.contains(" ") ? 0.5 : 0);
+        }
+
+        /**
+         * Terms most similar to the answer that do not appear in its sentence
+         * and do not overlap with it, in their original spelling.
+         */
+        List<String> nearestTerms(String answer, Sentence source, int limit) {
+            String key = normalize(answer);
+            Map<String, Integer> target = contextVectors.getOrDefault(key, Map.of());
+            String sourceText = source.text().toLowerCase(Locale.ROOT);
+            int answerWords = key.split(" ").length;
+
+            List<String> candidates = new ArrayList<>();
+            for (String term : terms) {
+                if (term.equals(key) || term.contains(key) || key.contains(term) || sourceText.contains(term)) {
+                    continue;
+                }
+                candidates.add(term);
+            }
+            Map<String, Double> similarity = new HashMap<>();
+            for (String term : candidates) {
+                double sim = cosine(target, contextVectors.getOrDefault(term, Map.of()));
+                // Same shape (word count) reads as a plausible alternative, so it comes first
+                if (term.split(" ").length == answerWords) {
+                    sim += 1.0;
+                }
+                similarity.put(term, sim);
+            }
+            candidates.sort(Comparator.comparingDouble((String t) -> similarity.get(t)).reversed()
+                    .thenComparing(Comparator.naturalOrder()));
+
+            List<String> nearest = new ArrayList<>();
+            for (String term : candidates) {
+                if (nearest.size() == limit) {
+                    break;
+                }
+                boolean overlaps = nearest.stream().anyMatch(n -> normalize(n).contains(term) || term.contains(normalize(n)));
+                if (!overlaps) {
+                    nearest.add(surfaceForm.getOrDefault(term, term));
+                }
+            }
+            return nearest;
+        }
+
+        private static double cosine(Map<String, Integer> a, Map<String, Integer> b) {
+            if (a.isEmpty() || b.isEmpty()) {
+                return 0;
+            }
+            double dot = 0;
+            for (Map.Entry<String, Integer> entry : a.entrySet()) {
+                Integer other = b.get(entry.getKey());
+                if (other != null) {
+                    dot += entry.getValue() * other;
+                }
+            }
+            return dot / (norm(a) * norm(b));
+        }
+
+        private static double norm(Map<String, Integer> vector) {
+            double sum = 0;
+            for (int value : vector.values()) {
+                sum += (double) value * value;
+            }
+            return Math.sqrt(sum);
+        }
+    }
+}
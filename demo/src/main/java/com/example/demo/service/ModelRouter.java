@@ -0,0 +1,331 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.DifficultyLevel;
+
+/**
+ * Model Router.
+ *
+ * Chooses the model for each LLM call:
+ * 1. The configured rule for the operation (and, for quizzes, the difficulty)
+ *    gives the primary model, e.g. app.llm.routing.quiz.expert
+ * 2. Latency and outcome of the calls of the last window-seconds are tracked per
+ *    model in time buckets, each with a latency histogram, so recording never
+ *    locks and the p95 is read from the summed histograms without sorting
+ * 3. When the primary's p95 latency or error rate is over its threshold, its
+ *    circuit opens and calls are routed to the fallback model for open-seconds
+ * 4. Then a single probe call goes to the primary: if it succeeds the circuit
+ *    closes with a fresh window, if it fails the circuit stays open for another
+ *    open-seconds. The route of the probe carries a token, and only the outcome
+ *    reported with that token decides the circuit
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+
+    // Time buckets per window
+    private static final int BUCKETS = 12;
+
+    // Quarter-octave latency bins: bin i holds latencies up to 2^((i + 1) / 4) ms, the last
+    // one everything above ~17 minutes
+    private static final int BINS = 80;
+    private static final long[] BIN_UPPER_MS = new long[BINS];
+
+    static {
+        for (int i = 0; i < BINS; i++) {
+            BIN_UPPER_MS[i] = (long) Math.ceil(Math.pow(2, (i + 1) / 4.0));
+        }
+    }
+
+    private final Environment environment;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong probeTokens = new AtomicLong();
+
+    @Value("${app.llm.routing.default-model:gemini-2.0-flash}")
+    private String defaultModel;
+
+    @Value("${app.llm.routing.fallback-model:gemini-2.0-flash-lite}")
+    private String fallbackModel;
+
+    @Value("${app.llm.routing.max-p95-latency-ms:10000}")
+    private long maxP95LatencyMs;
+
+    @Value("${app.llm.routing.max-error-rate:0.3}")
+    private double maxErrorRate;
+
+    @Value("${app.llm.routing.window-seconds:60}")
+    private long windowSeconds;
+
+    @Value("${app.llm.routing.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.llm.routing.open-seconds:30}")
+    private long openSeconds;
+
+    public ModelRouter(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Choose the model for an operation. Difficulty only applies to quizzes.
+     * The outcome of the call is reported with the returned route.
+     */
+    public Route route(LLMOperation operation, DifficultyLevel difficulty) {
+        String primary = primaryModel(operation, difficulty);
+        if (primary.equals(fallbackModel)) {
+            return new Route(primary, 0);
+        }
+        Route route = statsFor(primary).allowCall(System.currentTimeMillis());
+        if (route != null) {
+            return route;
+        }
+        logger.debug("Model {} degraded, routing {} to {}", primary, operation, fallbackModel);
+        return new Route(fallbackModel, 0);
+    }
+
+    /**
+     * The configured model for an operation, before health is taken into account.
+     */
+    public String primaryModel(LLMOperation operation, DifficultyLevel difficulty) {
+        String key = operation.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        if (operation == LLMOperation.QUIZ && difficulty != null) {
+            String byDifficulty = environment.getProperty(
+                    "app.llm.routing." + key + "." + difficulty.name().toLowerCase(Locale.ROOT));
+            if (byDifficulty != null && !byDifficulty.isBlank()) {
+                return byDifficulty;
+            }
+        }
+        return environment.getProperty("app.llm.routing." + key, defaultModel);
+    }
+
+    public void recordSuccess(Route route, long latencyMs) {
+        statsFor(route.model()).record(System.currentTimeMillis(), latencyMs, false, route.probeToken());
+    }
+
+    public void recordFailure(Route route, long latencyMs) {
+        statsFor(route.model()).record(System.currentTimeMillis(), latencyMs, true, route.probeToken());
+    }
+
+    /**
+     * Current statistics of every model that has been called.
+     */
+    public List<ModelHealth> getModelHealth() {
+        long now = System.currentTimeMillis();
+        List<ModelHealth> health = new ArrayList<>();
+        stats.forEach((model, modelStats) -> health.add(modelStats.snapshot(now)));
+        health.sort((a, b) -> a.model().compareTo(b.model()));
+        return health;
+    }
+
+    private ModelStats statsFor(String model) {
+        return stats.computeIfAbsent(model, m -> new ModelStats(
+                m, Math.max(1, windowSeconds * 1000 / BUCKETS), Math.max(0, openSeconds * 1000)));
+    }
+
+    private boolean isDegraded(Window window) {
+        return window.samples() >= minSamples
+                && (window.p95LatencyMs() > maxP95LatencyMs || window.errorRate() > maxErrorRate);
+    }
+
+    private static int binFor(long latencyMs) {
+        if (latencyMs <= 1) {
+            return 0;
+        }
+        int bin = (int) Math.ceil(4 * Math.log(latencyMs) / Math.log(2)) - 1;
+        // Correct floating point rounding at the bin edges
+        while (bin > 0 && BIN_UPPER_MS[bin - 1] >= latencyMs) {
+            bin--;
+        }
+        while (bin < BINS - 1 && BIN_UPPER_MS[bin] < latencyMs) {
+            bin++;
+        }
+        return Math.min(bin, BINS - 1);
+    }
+
+    /**
+     * Model chosen for one call; probeToken is non-zero for the probe of a half-open circuit.
+     */
+    public record Route(String model, long probeToken) {}
+
+    /**
+     * Health of one model over the sliding window; degraded while its circuit is open.
+     */
+    public record ModelHealth(String model, int samples, long p95LatencyMs, double errorRate, boolean degraded) {}
+
+    /**
+     * Time-bucketed call outcomes and circuit state of one model.
+     */
+    private final class ModelStats {
+        private final String model;
+        private final long bucketMillis;
+        private final long openMillis;
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+        // 0 while the circuit is closed, else the time it may be probed again
+        private final AtomicLong openUntil = new AtomicLong();
+        // Probe call in flight while half-open, else null
+        private final AtomicReference<Probe> probe = new AtomicReference<>();
+
+        ModelStats(String model, long bucketMillis, long openMillis) {
+            this.model = model;
+            this.bucketMillis = bucketMillis;
+            this.openMillis = openMillis;
+        }
+
+        /**
+         * Route of a call to this model, or null if it must go to the fallback:
+         * always routed while closed and healthy, never while open, and one probe
+         * at a time once half-open. A probe that has not reported back within
+         * open-seconds (or the p95 latency limit, if longer) is given up and
+         * replaced by a new one, with a new token.
+         */
+        Route allowCall(long now) {
+            long until = openUntil.get();
+            if (until == 0) {
+                if (!isDegraded(window(now))) {
+                    return new Route(model, 0);
+                }
+                if (openUntil.compareAndSet(0, now + openMillis)) {
+                    logger.warn("Circuit opened for model {}: routing to {} for {} s",
+                            model, fallbackModel, openMillis / 1000);
+                }
+                return null;
+            }
+            if (now < until) {
+                return null;
+            }
+            Probe current = probe.get();
+            if (current != null && now - current.startedAt() <= Math.max(openMillis, maxP95LatencyMs)) {
+                return null;
+            }
+            Probe next = new Probe(probeTokens.incrementAndGet(), now);
+            return probe.compareAndSet(current, next) ? new Route(model, next.token()) : null;
+        }
+
+        void record(long now, long latencyMs, boolean failure, long probeToken) {
+            current(now).add(latencyMs, failure);
+
+            // Only the outcome of the current half-open probe decides the circuit
+            Probe current = probe.get();
+            if (probeToken != 0 && current != null && current.token() == probeToken
+                    && probe.compareAndSet(current, null)) {
+                if (failure) {
+                    openUntil.set(now + openMillis);
+                } else {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        buckets.set(i, null);
+                    }
+                    openUntil.set(0);
+                    logger.info("Circuit closed for model {}", model);
+                }
+            }
+        }
+
+        ModelHealth snapshot(long now) {
+            Window window = window(now);
+            return new ModelHealth(model, (int) window.samples, window.p95LatencyMs, window.errorRate(),
+                    openUntil.get() != 0 || isDegraded(window));
+        }
+
+        private Bucket current(long now) {
+            long epoch = now / bucketMillis;
+            int slot = (int) (epoch % BUCKETS);
+            while (true) {
+                Bucket bucket = buckets.get(slot);
+                if (bucket != null && bucket.epoch >= epoch) {
+                    return bucket;
+                }
+                Bucket fresh = new Bucket(epoch);
+                if (buckets.compareAndSet(slot, bucket, fresh)) {
+                    return fresh;
+                }
+            }
+        }
+
+        private Window window(long now) {
+            long oldest = now / bucketMillis - BUCKETS + 1;
+            long[] histogram = new long[BINS];
+            long samples = 0;
+            long failures = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket == null || bucket.epoch < oldest) {
+                    continue;
+                }
+                for (int bin = 0; bin < BINS; bin++) {
+                    long count = bucket.histogram.get(bin);
+                    histogram[bin] += count;
+                    samples += count;
+                }
+                failures += bucket.failures.sum();
+            }
+            return new Window(samples, Math.min(failures, samples), p95(histogram, samples));
+        }
+
+        private long p95(long[] histogram, long samples) {
+            if (samples == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(samples * 0.95);
+            long seen = 0;
+            for (int bin = 0; bin < BINS; bin++) {
+                seen += histogram[bin];
+                if (seen >= rank) {
+                    return BIN_UPPER_MS[bin];
+                }
+            }
+            return BIN_UPPER_MS[BINS - 1];
+        }
+    }
+
+    /**
+     * Probe call of a half-open circuit.
+     */
+    private record Probe(long token, long startedAt) {}
+
+    /**
+     * Call outcomes of one time bucket.
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder failures = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BINS);
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void add(long latencyMs, boolean failure) {
+            histogram.incrementAndGet(binFor(latencyMs));
+            if (failure) {
+                failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Totals over the buckets of the window; p95 is the upper edge of its histogram bin.
+     */
+    private record Window(long samples, long failures, long p95LatencyMs) {
+
+        double errorRate() {
+            return samples == 0 ? 0.0 : (double) failures / samples;
+        }
+    }
+}
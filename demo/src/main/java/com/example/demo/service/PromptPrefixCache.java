@@ -0,0 +1,187 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bookkeeping for prompt prefixes registered with a provider's context cache.
+ *
+ * A prefix is only registered once it is "hot" (used min-hits times) and long
+ * enough to be worth caching. The provider supplies the function that registers
+ * a prefix and returns a handle (e.g. the Gemini cached-content name), and the
+ * one that releases a handle that is no longer needed:
+ * 1. Registration runs outside any lock; callers arriving meanwhile keep using
+ *    the previous handle, or the full prompt if there is none
+ * 2. A handle is renewed a little before its TTL ends; a failed registration is
+ *    retried after retry-after-failure rather than on every call
+ * 3. Entries are released as soon as their course is re-indexed (its index
+ *    generation moves on), once unused for a whole TTL, or, past max-entries,
+ *    least recently used first
+ */
+class PromptPrefixCache {
+
+    private final Duration ttl;
+    private final int minHits;
+    private final int minTokens;
+    private final int maxEntries;
+    private final Duration retryAfterFailure;
+    private final Consumer<String> release;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    PromptPrefixCache(Duration ttl, int minHits, int minTokens, int maxEntries, Duration retryAfterFailure,
+                      Consumer<String> release) {
+        this.ttl = ttl;
+        this.minHits = Math.max(1, minHits);
+        this.minTokens = minTokens;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.retryAfterFailure = retryAfterFailure;
+        this.release = release;
+    }
+
+    /**
+     * Get the handle of a registered prefix, registering it if it just became hot.
+     * Returns null when the prefix is not (yet) cached.
+     */
+    String acquire(String model, LLMProvider.CachedPrefix prefix, Function<String, String> register) {
+        if (prefix == null || LLMProvider.estimateTokens(prefix.text()) < minTokens) {
+            return null;
+        }
+
+        String key = model + ":" + sha256(prefix.text());
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(key, k -> new Entry(prefix.courseId(), prefix.generation(), now));
+            if (entries.size() > maxEntries) {
+                trim(now, entry);
+            }
+        }
+        entry.lastUsed = now;
+        if (entry.uses.incrementAndGet() < minHits) {
+            return null;
+        }
+
+        synchronized (entry) {
+            if (now < entry.expiresAt || entry.registering || now < entry.retryAt) {
+                return entry.handle;
+            }
+            entry.registering = true;
+        }
+
+        String handle = null;
+        try {
+            handle = register.apply(prefix.text());
+        } finally {
+            synchronized (entry) {
+                entry.registering = false;
+                // A replaced handle is left to expire with its TTL: calls may still be using it
+                if (handle != null) {
+                    entry.handle = handle;
+                    entry.expiresAt = now + ttl.toMillis() * 9 / 10;
+                } else {
+                    entry.retryAt = now + retryAfterFailure.toMillis();
+                }
+            }
+        }
+        return handle != null ? handle : entry.handle;
+    }
+
+    /**
+     * Forget a handle the provider no longer accepts (e.g. expired early).
+     */
+    void invalidate(String model, LLMProvider.CachedPrefix prefix) {
+        Entry entry = entries.get(model + ":" + sha256(prefix.text()));
+        if (entry != null) {
+            synchronized (entry) {
+                entry.handle = null;
+                entry.expiresAt = 0;
+            }
+        }
+    }
+
+    /**
+     * Release the entries of a course built for an older index generation.
+     */
+    void evict(Long courseId, int currentGeneration) {
+        removeIf(entry -> courseId.equals(entry.courseId) && entry.generation < currentGeneration);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Release the entries unused for a whole TTL, then the least recently used
+     * ones (other than the one just added) until the cache is back to max-entries.
+     */
+    private void trim(long now, Entry added) {
+        removeIf(entry -> now - entry.lastUsed > ttl.toMillis());
+        int excess = entries.size() - maxEntries;
+        if (excess > 0) {
+            List<Entry> idlest = entries.values().stream()
+                    .filter(entry -> entry != added)
+                    .sorted(Comparator.comparingLong(entry -> entry.lastUsed))
+                    .limit(excess)
+                    .toList();
+            removeIf(idlest::contains);
+        }
+    }
+
+    private void removeIf(Predicate<Entry> condition) {
+        List<String> released = new ArrayList<>();
+        entries.values().removeIf(entry -> {
+            if (!condition.test(entry)) {
+                return false;
+            }
+            synchronized (entry) {
+                if (entry.handle != null) {
+                    released.add(entry.handle);
+                }
+            }
+            return true;
+        });
+        released.forEach(release);
+    }
+
+    private String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Entry {
+        final Long courseId;
+        final int generation;
+        final AtomicInteger uses = new AtomicInteger();
+        volatile long lastUsed;
+        String handle;
+        long expiresAt;
+        long retryAt;
+        boolean registering;
+
+        Entry(Long courseId, int generation, long now) {
+            this.courseId = courseId;
+            this.generation = generation;
+            this.lastUsed = now;
+        }
+    }
+}
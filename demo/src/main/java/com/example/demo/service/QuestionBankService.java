@@ -0,0 +1,286 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Course;
+import com.example.demo.entity.CourseChunk;
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.QuestionItem;
+import com.example.demo.entity.SeenItemsSet;
+import com.example.demo.repository.QuestionItemRepository;
+
+/**
+ * Question Bank Service.
+ *
+ * Generated questions are shared by all the students of a course:
+ * 1. Each generated question is stored once per course and indexing as a
+ *    QuestionItem, keyed by the hash of its normalised stem and linked to the
+ *    course chunks it was generated from; a question generated again reuses
+ *    its item, and items are never changed afterwards
+ * 2. Quizzes reference items instead of copying them
+ * 3. A new quiz is drawn from the items of its level first: the least served
+ *    items the student has not been served (per-student id set, see
+ *    SeenItemsSet), ranked by how close their calibrated difficulty is to
+ *    the student's ability (see AdaptiveRatingEngine); only the questions
+ *    missing are generated
+ *
+ * Items generated from a previous indexing of the course are not served, but
+ * stay as they were for the quizzes and results referring to them.
+ */
+@Service
+@Transactional
+public class QuestionBankService {
+
+    private static final int MIN_PAGE_SIZE = 50;
+    private static final int CHUNKS_PER_ITEM = 2;
+
+    private final QuestionItemRepository itemRepository;
+    private final RAGService ragService;
+    private final StudentStatsService studentStatsService;
+    private final AdaptiveRatingEngine ratingEngine;
+    private final TransactionTemplate insertTransaction;
+
+    // Candidates considered per question to serve: larger spreads exposure over more items
+    @Value("${app.quiz.item-bank.pool-factor:4}")
+    private int poolFactor;
+
+    public QuestionBankService(QuestionItemRepository itemRepository,
+                               RAGService ragService,
+                               StudentStatsService studentStatsService,
+                               AdaptiveRatingEngine ratingEngine,
+                               PlatformTransactionManager transactionManager) {
+        this.itemRepository = itemRepository;
+        this.ragService = ragService;
+        this.studentStatsService = studentStatsService;
+        this.ratingEngine = ratingEngine;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Up to count items of the level the student has not been served yet.
+     */
+    @Transactional(readOnly = true)
+    public List<QuestionItem> draw(Long studentId, Course course, DifficultyLevel level, int count) {
+        long[] seen = studentStatsService.getSeenItems(studentId, course.getId());
+        int poolSize = count * Math.max(1, poolFactor);
+        int pageSize = Math.max(MIN_PAGE_SIZE, poolSize);
+
+        List<QuestionItem> pool = new ArrayList<>();
+        for (int page = 0; pool.size() < poolSize; page++) {
+            List<QuestionItem> candidates = itemRepository.findDrawCandidates(course.getId(),
+                    course.getIndexGeneration(), level, PageRequest.of(page, pageSize));
+            for (QuestionItem item : candidates) {
+                if (pool.size() < poolSize && !SeenItemsSet.contains(seen, item.getId())) {
+                    pool.add(item);
+                }
+            }
+            if (candidates.size() < pageSize) {
+                break;
+            }
+        }
+        if (pool.isEmpty()) {
+            return pool;
+        }
+
+        double ability = ratingEngine.getAbility(studentId, course.getId());
+        Map<String, Double> difficulties = ratingEngine.questionDifficulties(course.getId(), level,
+                pool.stream().map(QuestionItem::getStemHash).toList());
+        return pool.stream()
+                .sorted(Comparator.comparingDouble(
+                        (QuestionItem item) -> ratingEngine.successGap(ability, difficulties.get(item.getStemHash()))))
+                .limit(count)
+                .toList();
+    }
+
+    /**
+     * Items of generated questions, in order: new questions are added to the
+     * bank, questions already in it from the current indexing reuse their item.
+     * Duplicates within the list are returned once.
+     */
+    public List<QuestionItem> addGenerated(Course course, DifficultyLevel level, List<Question> questions) {
+        if (questions.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Question> byStem = new LinkedHashMap<>();
+        for (Question question : questions) {
+            byStem.putIfAbsent(QuestionItem.stemHash(question.getQuestionText()), question);
+        }
+        Map<String, QuestionItem> items = findItems(course, byStem.keySet());
+
+        Map<String, Question> missing = new LinkedHashMap<>(byStem);
+        missing.keySet().removeAll(items.keySet());
+        if (!missing.isEmpty()) {
+            List<ChunkWords> chunks = ragService.retrieveChunks(course.getId()).stream().map(ChunkWords::of).toList();
+            Map<String, String> sourceChunkIds = new HashMap<>();
+            missing.forEach((stemHash, question) -> sourceChunkIds.put(stemHash, sourceChunkIds(question, chunks)));
+            insertItems(course, level, missing, sourceChunkIds);
+            // Inserted here or, for the same questions generated concurrently, by another request
+            items.putAll(findItems(course, missing.keySet()));
+        }
+
+        return byStem.keySet().stream().map(items::get).filter(Objects::nonNull).toList();
+    }
+
+    private Map<String, QuestionItem> findItems(Course course, Collection<String> stemHashes) {
+        return itemRepository.findByCourseIdAndIndexGenerationAndStemHashIn(course.getId(),
+                        course.getIndexGeneration(), stemHashes)
+                .stream()
+                .collect(Collectors.toMap(QuestionItem::getStemHash, Function.identity()));
+    }
+
+    /**
+     * Insert new items in their own transaction, committed for other requests
+     * at once. If a request generating the same questions inserted some of
+     * them first, the others are inserted one by one.
+     */
+    private void insertItems(Course course, DifficultyLevel level, Map<String, Question> questions,
+                             Map<String, String> sourceChunkIds) {
+        try {
+            insertTransaction.executeWithoutResult(status -> itemRepository.saveAll(
+                    newItems(course, level, questions, sourceChunkIds)));
+        } catch (DataIntegrityViolationException e) {
+            for (Map.Entry<String, Question> entry : questions.entrySet()) {
+                try {
+                    insertTransaction.executeWithoutResult(status -> itemRepository.saveAll(
+                            newItems(course, level, Map.of(entry.getKey(), entry.getValue()), sourceChunkIds)));
+                } catch (DataIntegrityViolationException duplicate) {
+                    // Already inserted by another request: read back by the caller
+                }
+            }
+        }
+    }
+
+    private List<QuestionItem> newItems(Course course, DifficultyLevel level, Map<String, Question> questions,
+                                        Map<String, String> sourceChunkIds) {
+        List<QuestionItem> items = new ArrayList<>(questions.size());
+        questions.forEach((stemHash, question) -> {
+            QuestionItem item = new QuestionItem(course.getId(), course.getIndexGeneration(), level, question);
+            item.setSourceChunkIds(sourceChunkIds.get(stemHash));
+            items.add(item);
+        });
+        return items;
+    }
+
+    /**
+     * Questions of items, in order; ids are positions in the quiz, like document quizzes.
+     */
+    public List<Question> toQuestions(List<QuestionItem> items) {
+        List<Question> questions = new ArrayList<>(items.size());
+        for (QuestionItem item : items) {
+            Question question = item.getQuestion();
+            question.setId((long) questions.size());
+            question.setQuestionIndex(questions.size());
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    /**
+     * Questions of the referenced items, in one query.
+     */
+    @Transactional(readOnly = true)
+    public List<Question> loadQuestions(List<Long> itemIds) {
+        Map<Long, QuestionItem> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(QuestionItem::getId, Function.identity()));
+        List<QuestionItem> ordered = new ArrayList<>(itemIds.size());
+        for (Long itemId : itemIds) {
+            QuestionItem item = items.get(itemId);
+            if (item == null) {
+                throw new IllegalStateException("Question bank item not found: " + itemId);
+            }
+            ordered.add(item);
+        }
+        return toQuestions(ordered);
+    }
+
+    /**
+     * Store the explanations generated for the questions of items not
+     * explained yet; the questions themselves are never changed.
+     */
+    public void saveExplanations(List<Long> itemIds, List<Question> questions) {
+        Map<Long, QuestionItem> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(QuestionItem::getId, Function.identity()));
+        for (int i = 0; i < itemIds.size() && i < questions.size(); i++) {
+            QuestionItem item = items.get(itemIds.get(i));
+            if (item != null && !item.isExplained()) {
+                itemRepository.saveExplanations(item.getId(), item.explainedContent(questions.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Count the items as served once more, and as seen by the student.
+     */
+    public void markServed(Long studentId, Long courseId, List<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        itemRepository.incrementExposures(itemIds);
+        studentStatsService.markSeen(studentId, courseId, itemIds);
+    }
+
+    /**
+     * Chunks sharing the most words with the question and its source.
+     */
+    private String sourceChunkIds(Question question, List<ChunkWords> chunks) {
+        Set<String> words = words(Objects.toString(question.getQuestionText(), "") + " "
+                + Objects.toString(question.getSourceContext(), ""));
+        Map<Long, Integer> overlap = new HashMap<>();
+        for (ChunkWords chunk : chunks) {
+            int shared = 0;
+            for (String word : words) {
+                if (chunk.words().contains(word)) {
+                    shared++;
+                }
+            }
+            if (shared > 0) {
+                overlap.put(chunk.id(), shared);
+            }
+        }
+        String ids = overlap.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .limit(CHUNKS_PER_ITEM)
+                .map(entry -> String.valueOf(entry.getKey()))
+                .collect(Collectors.joining(","));
+        return ids.isEmpty() ? null : ids;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 3) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private record ChunkWords(Long id, Set<String> words) {
+        static ChunkWords of(CourseChunk chunk) {
+            return new ChunkWords(chunk.getId(), QuestionBankService.words(chunk.getContent()));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.PackedAnswers;
+import com.example.demo.entity.Quiz;
+import com.example.demo.repository.QuizRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Quiz Draft Service.
+ *
+ * Answers of a quiz in progress are autosaved on every click, write-behind:
+ * 1. Each quiz being taken has an in-memory draft, one slot per question,
+ *    updated by compare-and-set; a click only replaces the slot if its client
+ *    sequence number is newer, so out-of-order requests do not undo later ones
+ * 2. Every flush interval, the drafts changed since their last write are
+ *    written to their quiz row (packed like result answers, see PackedAnswers)
+ *    in one transaction, so the database sees at most one write per quiz and
+ *    interval whatever the click rate
+ * 3. Reloading the quiz restores the in-memory draft, or the stored one
+ *    after a restart
+ *
+ * Drafts are dropped once the quiz is submitted, or after idle-minutes
+ * without clicks once written.
+ */
+@Component
+public class QuizDraftService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizDraftService.class);
+
+    private final QuizRepository quizRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Draft> drafts = new ConcurrentHashMap<>();
+
+    @Value("${app.quiz.autosave.idle-minutes:30}")
+    private long idleMinutes;
+
+    public QuizDraftService(QuizRepository quizRepository, PlatformTransactionManager transactionManager) {
+        this.quizRepository = quizRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Selected option per question position of the quiz (UNANSWERED if none),
+     * for rendering the quiz. Opens the draft of the quiz.
+     */
+    public int[] restore(Quiz quiz) {
+        Draft draft = drafts.get(quiz.getId());
+        if (draft == null) {
+            Draft opened = Draft.of(quiz);
+            draft = drafts.putIfAbsent(quiz.getId(), opened);
+            if (draft == null) {
+                draft = opened;
+            }
+        }
+        return draft.selections();
+    }
+
+    /**
+     * Record the option selected for the question at this position.
+     */
+    public void save(Long studentId, Long quizId, int position, int option, long sequence) {
+        if (option < 0 || option >= PackedAnswers.MAX_OPTIONS) {
+            throw new IllegalArgumentException("Option index out of range: " + option);
+        }
+        while (true) {
+            Draft draft = drafts.computeIfAbsent(quizId, this::load);
+            if (!draft.studentId.equals(studentId)) {
+                throw new SecurityException("This quiz does not belong to the student");
+            }
+            if (!draft.select(position, option, sequence)) {
+                return;
+            }
+            // A draft dropped meanwhile was fully written: replay the click on the reloaded one
+            if (drafts.get(quizId) == draft) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forget the draft of a submitted quiz.
+     */
+    public void discard(Long quizId) {
+        drafts.remove(quizId);
+    }
+
+    /**
+     * Write the drafts changed since their last write, and drop the idle ones.
+     */
+    @Scheduled(fixedDelayString = "${app.quiz.autosave.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        long idleBefore = System.nanoTime() - TimeUnit.MINUTES.toNanos(idleMinutes);
+        List<Write> writes = new ArrayList<>();
+        for (Map.Entry<Long, Draft> entry : drafts.entrySet()) {
+            Draft draft = entry.getValue();
+            long version = draft.version.get();
+            if (version != draft.writtenVersion) {
+                writes.add(new Write(entry.getKey(), draft, version, draft.encode()));
+            } else if (draft.lastChange < idleBefore) {
+                drafts.remove(entry.getKey(), draft);
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status ->
+                writes.forEach(write -> quizRepository.saveDraft(write.quizId(), write.answers(), now)));
+        writes.forEach(write -> write.draft().writtenVersion = write.version());
+        logger.debug("Wrote {} quiz drafts", writes.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not write quiz drafts on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private Draft load(Long quizId) {
+        Quiz quiz = quizRepository.findById(quizId)
+                .orElseThrow(() -> new IllegalArgumentException("Quiz not found: " + quizId));
+        if (quiz.getResult() != null) {
+            throw new IllegalStateException("Quiz has already been submitted");
+        }
+        return Draft.of(quiz);
+    }
+
+    private record Write(Long quizId, Draft draft, long version, byte[] answers) {}
+
+    private static final class Draft {
+        // Per question: client sequence << 4 | (selected option + 1), 0 when unanswered
+        final AtomicLongArray slots;
+        final AtomicLong version = new AtomicLong();
+        final Long studentId;
+        volatile long writtenVersion;
+        volatile long lastChange = System.nanoTime();
+
+        Draft(Long studentId, int questions) {
+            this.studentId = studentId;
+            this.slots = new AtomicLongArray(questions);
+        }
+
+        static Draft of(Quiz quiz) {
+            Draft draft = new Draft(quiz.getStudent().getId(), quiz.getNumberOfQuestions());
+            byte[] stored = quiz.getDraftAnswers();
+            if (stored != null) {
+                int[] selected = PackedAnswers.selectedOptions(stored, quiz.getNumberOfQuestions());
+                for (int i = 0; i < selected.length; i++) {
+                    draft.slots.set(i, selected[i] + 1);
+                }
+            }
+            return draft;
+        }
+
+        /**
+         * Apply a click unless a newer one was applied; returns whether it was.
+         */
+        boolean select(int position, int option, long sequence) {
+            if (position < 0 || position >= slots.length()) {
+                throw new IllegalArgumentException("Question position out of range: " + position);
+            }
+            long value = (sequence << 4) | (option + 1);
+            while (true) {
+                long current = slots.get(position);
+                if ((current >>> 4) >= sequence && current != 0) {
+                    return false;
+                }
+                if (slots.compareAndSet(position, current, value)) {
+                    version.incrementAndGet();
+                    lastChange = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+
+        int[] selections() {
+            int[] selected = new int[slots.length()];
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = (int) (slots.get(i) & 0xF) - 1;
+            }
+            return selected;
+        }
+
+        byte[] encode() {
+            int[] selected = selections();
+            return PackedAnswers.encode(selected, new boolean[selected.length]);
+        }
+    }
+}
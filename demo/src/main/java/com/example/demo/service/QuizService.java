@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.dto.QuizRequestDTO;
@@ -35,6 +36,9 @@ public class QuizService {
     private final UserRepository userRepository;
     private final EnrollmentRepository enrollmentRepository;
     private final AgentService agentService;
+    private final QuestionBankService questionBank;
+    private final SubmissionPipeline submissionPipeline;
+    private final QuizDraftService draftService;
 
     public QuizService(QuizRepository quizRepository,
                        QuestionRepository questionRepository,
@@ -42,7 +46,10 @@ public class QuizService {
                        CourseRepository courseRepository,
                        UserRepository userRepository,
                        EnrollmentRepository enrollmentRepository,
-                       AgentService agentService) {
+                       AgentService agentService,
+                       QuestionBankService questionBank,
+                       SubmissionPipeline submissionPipeline,
+                       QuizDraftService draftService) {
         this.quizRepository = quizRepository;
         this.questionRepository = questionRepository;
         this.quizResultRepository = quizResultRepository;
@@ -50,6 +57,9 @@ public class QuizService {
         this.userRepository = userRepository;
         this.enrollmentRepository = enrollmentRepository;
         this.agentService = agentService;
+        this.questionBank = questionBank;
+        this.submissionPipeline = submissionPipeline;
+        this.draftService = draftService;
     }
 
     /**
@@ -84,23 +94,41 @@ public class QuizService {
 
     /**
      * Submit quiz answers and get results evaluated by the Agentic AI.
+     * Submissions are evaluated and committed in batches (see SubmissionPipeline);
+     * this waits for the result, without holding a transaction meanwhile.
+     *
+     * @return the id of the quiz result
      */
-    public QuizResult submitQuiz(Long studentId, QuizSubmissionDTO submission) {
-        Quiz quiz = quizRepository.findById(submission.getQuizId())
-                .orElseThrow(() -> new IllegalArgumentException("Quiz not found: " + submission.getQuizId()));
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Long submitQuiz(Long studentId, QuizSubmissionDTO submission) {
+        Long resultId = submissionPipeline.submitAndWait(studentId, submission);
+        draftService.discard(submission.getQuizId());
+        return resultId;
+    }
 
-        // Verify ownership
-        if (!quiz.getStudent().getId().equals(studentId)) {
-            throw new SecurityException("This quiz does not belong to the student");
-        }
+    /**
+     * Autosave the option selected for a question of a quiz in progress
+     * (written behind, see QuizDraftService).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void saveDraftAnswer(Long studentId, Long quizId, int position, int option, long sequence) {
+        draftService.save(studentId, quizId, position, option, sequence);
+    }
 
-        // Verify not already submitted
-        if (quiz.getResult() != null) {
-            throw new IllegalStateException("Quiz has already been submitted");
-        }
+    /**
+     * Options selected so far in a quiz in progress, per question position.
+     */
+    public int[] findDraftAnswers(Quiz quiz) {
+        return draftService.restore(quiz);
+    }
 
-        // Use Agentic AI to evaluate the quiz
-        return agentService.evaluateQuiz(quiz, submission);
+    /**
+     * Make sure a submitted quiz has its explanations before its result is
+     * shown; no transaction is held during the LLM call (see AgentService.explainQuiz).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void ensureExplanations(Long quizId) {
+        agentService.explainQuiz(quizId);
     }
 
     @Transactional(readOnly = true)
@@ -108,9 +136,16 @@ public class QuizService {
         return quizRepository.findById(id);
     }
 
+    /**
+     * Quiz with its course, result and questions, for the take and result pages.
+     */
     @Transactional(readOnly = true)
-    public Quiz findByIdWithQuestions(Long id) {
-        return quizRepository.findByIdWithQuestions(id);
+    public Quiz findByIdForView(Long id) {
+        Quiz quiz = quizRepository.findByIdForView(id);
+        if (quiz != null) {
+            loadItems(quiz);
+        }
+        return quiz;
     }
 
     @Transactional(readOnly = true)
@@ -123,9 +158,26 @@ public class QuizService {
         return quizRepository.findByStudentIdAndCourseId(studentId, courseId);
     }
 
+    /**
+     * Questions of a quiz with their options: decoded from the quiz row for
+     * document quizzes, loaded in one query for quizzes stored as rows (question
+     * bank quizzes are loaded with the quiz).
+     */
     @Transactional(readOnly = true)
-    public List<Question> findQuestionsByQuizId(Long quizId) {
-        return questionRepository.findByQuizIdWithOptions(quizId);
+    public List<Question> findQuestions(Quiz quiz) {
+        if (quiz.isItemBacked() || quiz.isDocumentStored()) {
+            return quiz.getQuestions();
+        }
+        return questionRepository.findByQuizIdWithOptions(quiz.getId());
+    }
+
+    /**
+     * Load the questions of the question bank items a quiz references, in one query.
+     */
+    private void loadItems(Quiz quiz) {
+        if (quiz.requiresItemLoad()) {
+            quiz.setItemQuestions(questionBank.loadQuestions(quiz.getItemIdList()));
+        }
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,12 @@
+package com.example.demo.service;
+
+/**
+ * Thrown when an LLM call would exceed the daily token quota of the current
+ * user or course. Controllers map it to HTTP 429.
+ */
+public class QuotaExceededException extends IllegalStateException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
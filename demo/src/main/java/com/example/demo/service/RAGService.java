@@ -38,16 +38,22 @@ public class RAGService {
 
     private final CourseChunkRepository chunkRepository;
     private final FileStorageService fileStorageService;
+    private final CourseSummaryService summaryService;
+    private final LLMService llmService;
 
-    public RAGService(CourseChunkRepository chunkRepository, FileStorageService fileStorageService) {
+    public RAGService(CourseChunkRepository chunkRepository, FileStorageService fileStorageService,
+                      CourseSummaryService summaryService, LLMService llmService) {
         this.chunkRepository = chunkRepository;
         this.fileStorageService = fileStorageService;
+        this.summaryService = summaryService;
+        this.llmService = llmService;
     }
 
     /**
      * Index a course by chunking its content.
      * This prepares the content for RAG-based retrieval.
      * Supports both text content and PDF documents.
+     * Course and section summaries are computed once the indexing commits.
      */
     public void indexCourse(Course course) {
         logger.info("Starting RAG indexing for course: {}", course.getId());
@@ -70,6 +76,13 @@ public class RAGService {
         chunkRepository.saveAll(chunks);
 
         logger.info("Indexed {} chunks for course: {}", chunks.size(), course.getId());
+
+        // New generation: prompt prefixes cached for the previous content are released
+        course.nextIndexGeneration();
+        llmService.onCourseIndexed(course.getId(), course.getIndexGeneration());
+
+        // Materialize summaries once, off the indexing transaction
+        summaryService.summarizeAfterCommit(course.getId());
     }
 
     /**
@@ -322,6 +335,27 @@ public class RAGService {
                 .collect(Collectors.joining("\n\n"));
     }
 
+    /**
+     * Get the quiz context split into disjoint shards of consecutive chunks, so
+     * that parts of a large quiz can be generated in parallel on different
+     * sections of the course. Returns fewer shards when there are fewer chunks.
+     */
+    @Transactional(readOnly = true)
+    public List<String> getQuizContextShards(Long courseId, int shardCount) {
+        List<CourseChunk> chunks = retrieveChunks(courseId);
+        int shards = Math.max(1, Math.min(shardCount, chunks.size()));
+
+        List<String> contexts = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            int from = s * chunks.size() / shards;
+            int to = (s + 1) * chunks.size() / shards;
+            contexts.add(chunks.subList(from, to).stream()
+                    .map(CourseChunk::getContent)
+                    .collect(Collectors.joining("\n\n")));
+        }
+        return chunks.isEmpty() ? List.of() : contexts;
+    }
+
     /**
      * Get sampled context for quiz generation to optimize LLM token usage.
      * Selects a subset of chunks based on the number of questions.
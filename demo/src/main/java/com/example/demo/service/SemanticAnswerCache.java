@@ -0,0 +1,276 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Semantic Answer Cache for chat questions.
+ *
+ * Answers are cached per scope (course and the context they were answered
+ * from), and served again for questions that are close enough:
+ * 1. A question is embedded locally as a hashed bag of words and word pairs,
+ *    without stopwords and plural endings, L2-normalised
+ * 2. A lookup returns the answer of the most similar cached question of the
+ *    same scope, if its cosine similarity reaches the threshold
+ * 3. Entries expire after the TTL; past max-entries-per-scope the least
+ *    recently used entry of the scope is evicted, and past max-entries in
+ *    total the least recently used entry of the least recently used scope
+ *
+ * Each scope has its own small LRU map and lock, so a lookup only scans the
+ * entries of its own scope and never waits on lookups of other courses.
+ *
+ * Hits, misses, the hit ratio and the size are published as llm.chat.cache.*
+ * metrics.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final int DIMENSIONS = 512;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "is", "are", "was", "were", "be", "do", "does", "did", "i", "you", "me", "my",
+            "we", "it", "this", "that", "there", "here", "of", "to", "in", "on", "for", "with", "and", "or",
+            "can", "could", "would", "should", "please", "about", "tell", "what", "whats", "how", "which");
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final int maxScopeEntries;
+    private final double threshold;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final ConcurrentMap<String, ScopeEntries> scopes = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Orders scopes by last use, for eviction
+    private final AtomicLong useClock = new AtomicLong();
+
+    public SemanticAnswerCache(@Value("${app.chat.cache.ttl-minutes:60}") long ttlMinutes,
+                               @Value("${app.chat.cache.max-entries:2000}") int maxEntries,
+                               @Value("${app.chat.cache.max-entries-per-scope:100}") int maxScopeEntries,
+                               @Value("${app.chat.cache.similarity:0.9}") double threshold,
+                               MeterRegistry meterRegistry) {
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxScopeEntries = Math.max(1, Math.min(maxScopeEntries, this.maxEntries));
+        this.threshold = threshold;
+
+        FunctionCounter.builder("llm.chat.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("llm.chat.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("llm.chat.cache.hit.ratio", this, SemanticAnswerCache::hitRatio).register(meterRegistry);
+        Gauge.builder("llm.chat.cache.size", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Cached answer to a question close enough to this one, or null.
+     */
+    public String get(String scope, String question) {
+        String normalized = normalize(question);
+        float[] vector = embed(normalized);
+        long now = System.currentTimeMillis();
+
+        ScopeEntries entries = scopes.get(scope);
+        Entry best = entries != null ? entries.find(normalized, vector, now) : null;
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return best.answer;
+    }
+
+    public void put(String scope, String question, String answer) {
+        String normalized = normalize(question);
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(normalized, embed(normalized), answer, now + ttl.toMillis());
+
+        while (true) {
+            ScopeEntries entries = scopes.computeIfAbsent(scope, ScopeEntries::new);
+            if (entries.put(entry)) {
+                break;
+            }
+            // Emptied and dropped by an eviction meanwhile
+            scopes.remove(scope, entries);
+        }
+        while (size.get() > maxEntries && evictFromIdlestScope()) {
+            // Each pass removes one entry
+        }
+    }
+
+    public double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Evict the least recently used entry of the least recently used scope.
+     * Only runs when the cache is over max-entries, so scanning the scopes is fine.
+     */
+    private boolean evictFromIdlestScope() {
+        ScopeEntries idlest = null;
+        for (ScopeEntries entries : scopes.values()) {
+            if (idlest == null || entries.lastUsed < idlest.lastUsed) {
+                idlest = entries;
+            }
+        }
+        if (idlest == null) {
+            return false;
+        }
+        idlest.evictEldest();
+        return true;
+    }
+
+    private String normalize(String question) {
+        return question == null ? "" : question.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /**
+     * Hashed bag of words and adjacent word pairs, or null when no content word
+     * is left (only exact matches are served then).
+     */
+    private float[] embed(String normalized) {
+        float[] vector = new float[DIMENSIONS];
+        String previous = null;
+        boolean any = false;
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty() || STOPWORDS.contains(word)) {
+                continue;
+            }
+            String term = word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")
+                    ? word.substring(0, word.length() - 1) : word;
+            add(vector, term, 1.0f);
+            if (previous != null) {
+                add(vector, previous + " " + term, 0.5f);
+            }
+            previous = term;
+            any = true;
+        }
+        if (!any) {
+            return null;
+        }
+
+        double norm = Math.sqrt(dot(vector, vector));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= (float) norm;
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode();
+        // Sign from another bit of the hash so collisions tend to cancel out
+        vector[Math.floorMod(hash, DIMENSIONS)] += (hash & 0x40000000) != 0 ? weight : -weight;
+    }
+
+    private double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record Entry(String question, float[] vector, String answer, long expiresAt) {}
+
+    /**
+     * The entries of one scope, keyed by normalized question.
+     */
+    private final class ScopeEntries {
+
+        private final String scope;
+        // Access-ordered: iteration starts with the least recently used entry
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private volatile long lastUsed = useClock.incrementAndGet();
+        private boolean removed;
+
+        ScopeEntries(String scope) {
+            this.scope = scope;
+        }
+
+        synchronized Entry find(String normalized, float[] vector, long now) {
+            lastUsed = useClock.incrementAndGet();
+            Entry exact = entries.get(normalized);
+            if (exact != null && exact.expiresAt > now) {
+                return exact;
+            }
+
+            Entry best = null;
+            double bestScore = threshold;
+            if (vector != null) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (entry.expiresAt <= now) {
+                        iterator.remove();
+                        size.decrementAndGet();
+                    } else if (entry.vector != null) {
+                        double score = dot(vector, entry.vector);
+                        if (score >= bestScore) {
+                            best = entry;
+                            bestScore = score;
+                        }
+                    }
+                }
+                if (best != null) {
+                    // Refresh its recency
+                    entries.get(best.question);
+                }
+            }
+            dropIfEmpty();
+            return best;
+        }
+
+        /**
+         * Add or replace an entry; false if this scope was already dropped.
+         */
+        synchronized boolean put(Entry entry) {
+            if (removed) {
+                return false;
+            }
+            lastUsed = useClock.incrementAndGet();
+            if (entries.put(entry.question, entry) == null) {
+                size.incrementAndGet();
+            }
+            if (entries.size() > maxScopeEntries) {
+                evictEldest();
+            }
+            return true;
+        }
+
+        synchronized void evictEldest() {
+            Iterator<Entry> iterator = entries.values().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                size.decrementAndGet();
+            }
+            dropIfEmpty();
+        }
+
+        private void dropIfEmpty() {
+            if (entries.isEmpty() && !removed) {
+                removed = true;
+                scopes.remove(scope, this);
+            }
+        }
+    }
+}
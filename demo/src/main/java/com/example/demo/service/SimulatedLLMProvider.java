@@ -0,0 +1,471 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Simulated LLM provider for load testing without network access.
+ *
+ * Active when app.llm.mock-mode=true. Responses are deterministic for a given
+ * prompt and are built from the actual course chunks in the request context, in
+ * the same JSON shapes that LLMService parses, so the full generation pipeline
+ * (parsing, persistence, retries) is exercised.
+ *
+ * Latency follows a configurable distribution (fixed, uniform or lognormal around
+ * a median, plus a per-output-token cost), and 429/500 failures can be injected
+ * at configurable rates. Token usage is counted for every call.
+ *
+ * Prompt prefixes are cached in a local stand-in for a provider KV cache: once a
+ * prefix is hot, its tokens are reported as cached and skip the per-input-token
+ * (prefill) latency, which makes the effect of prefix caching measurable.
+ */
+@Component
+@ConditionalOnProperty(name = "app.llm.mock-mode", havingValue = "true")
+public class SimulatedLLMProvider implements LLMProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedLLMProvider.class);
+
+    private static final String MODEL = "simulated";
+    private static final Set<String> STOP_WORDS = Set.of(
+            "about", "above", "after", "again", "against", "their", "there", "these", "those", "which",
+            "while", "where", "would", "could", "should", "other", "being", "between", "through", "under",
+            "because", "before", "during", "every", "first", "following", "example", "using", "within");
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.llm.mock.latency-distribution:lognormal}")
+    private String latencyDistribution;
+
+    @Value("${app.llm.mock.latency-median-ms:800}")
+    private long latencyMedianMs;
+
+    @Value("${app.llm.mock.latency-sigma:0.5}")
+    private double latencySigma;
+
+    @Value("${app.llm.mock.ms-per-output-token:0}")
+    private double msPerOutputToken;
+
+    @Value("${app.llm.mock.ms-per-input-token:0}")
+    private double msPerInputToken;
+
+    @Value("${app.llm.mock.rate-limit-rate:0.0}")
+    private double rateLimitRate;
+
+    @Value("${app.llm.mock.server-error-rate:0.0}")
+    private double serverErrorRate;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder inputTokens = new LongAdder();
+    private final LongAdder outputTokens = new LongAdder();
+    private final LongAdder cachedInputTokens = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    private final PromptPrefixCache prefixCache;
+    private final AtomicLong prefixHandles = new AtomicLong();
+
+    public SimulatedLLMProvider(ObjectMapper objectMapper,
+                                @Value("${app.llm.mock.prefix-cache.ttl-minutes:60}") long cacheTtlMinutes,
+                                @Value("${app.llm.mock.prefix-cache.min-hits:2}") int cacheMinHits,
+                                @Value("${app.llm.mock.prefix-cache.min-prefix-tokens:1024}") int cacheMinPrefixTokens,
+                                @Value("${app.llm.mock.prefix-cache.max-entries:500}") int cacheMaxEntries) {
+        this.objectMapper = objectMapper;
+        this.prefixCache = new PromptPrefixCache(Duration.ofMinutes(cacheTtlMinutes), cacheMinHits, cacheMinPrefixTokens,
+                cacheMaxEntries, Duration.ofSeconds(30), handle -> { });
+    }
+
+    @Override
+    public Completion complete(Request request) {
+        calls.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // Rate limits are rejected before any work, like the real API
+        if (random.nextDouble() < rateLimitRate) {
+            rateLimited.increment();
+            throw new IllegalStateException("429 RESOURCE_EXHAUSTED: simulated rate limit");
+        }
+
+        long start = System.nanoTime();
+        String text = generate(request);
+        int in = LLMProvider.estimateTokens(request.prompt());
+        int out = LLMProvider.estimateTokens(text);
+        String cached = prefixCache.acquire(request.model(), request.prefix(),
+                prefix -> "local-" + prefixHandles.incrementAndGet());
+        int cachedIn = cached != null ? Math.min(in, LLMProvider.estimateTokens(request.prefix().text())) : 0;
+        inputTokens.add(in);
+        outputTokens.add(out);
+        cachedInputTokens.add(cachedIn);
+
+        sleep(sampleLatencyMs(random) + (long) (msPerInputToken * (in - cachedIn)) + (long) (msPerOutputToken * out));
+
+        if (random.nextDouble() < serverErrorRate) {
+            serverErrors.increment();
+            throw new IllegalStateException("500 INTERNAL: simulated server error");
+        }
+
+        long latencyMs = (System.nanoTime() - start) / 1_000_000;
+        return new Completion(text, MODEL + "/" + request.model(), in, out, cachedIn, latencyMs);
+    }
+
+    @Override
+    public void evictCachedPrefixes(Long courseId, int currentGeneration) {
+        prefixCache.evict(courseId, currentGeneration);
+    }
+
+    @Override
+    public String name() {
+        return MODEL;
+    }
+
+    /**
+     * Get the counters accumulated since startup (shown on the super admin activity page).
+     */
+    public Stats getStats() {
+        return new Stats(calls.sum(), inputTokens.sum(), outputTokens.sum(), cachedInputTokens.sum(),
+                rateLimited.sum(), serverErrors.sum());
+    }
+
+    // ========== Latency ==========
+
+    private long sampleLatencyMs(ThreadLocalRandom random) {
+        if (latencyMedianMs <= 0) {
+            return 0;
+        }
+        double latency = switch (latencyDistribution.toLowerCase(Locale.ROOT)) {
+            case "fixed" -> latencyMedianMs;
+            case "uniform" -> latencyMedianMs * (1 + latencySigma * (2 * random.nextDouble() - 1));
+            default -> latencyMedianMs * Math.exp(latencySigma * random.nextGaussian());
+        };
+        return Math.max(0, Math.round(latency));
+    }
+
+    private void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== Content ==========
+
+    private String generate(Request request) {
+        // Seeded by the prompt so that identical requests give identical output
+        Random random = new Random(request.prompt().hashCode());
+        String context = request.context() != null ? request.context() : "";
+        List<String> sentences = extractSentences(context);
+
+        try {
+            return switch (request.operation()) {
+                case QUIZ -> generateQuiz(request, sentences, random);
+                case EXPLANATION -> generateExplanations(request, sentences);
+                case EVALUATION -> generateEvaluation(request);
+                case FLASHCARDS -> generateFlashcards(request, sentences, random);
+                case CHAT -> generateChat(request, context);
+                case CHAT_SUMMARY -> generateChatSummary(request, context);
+                case SUMMARY, SECTION_SUMMARY -> generateSummary(sentences,
+                        request.operation() == LLMOperation.SUMMARY ? 6 : 2);
+            };
+        } catch (Exception e) {
+            logger.warn("Simulated generation failed: {}", e.getMessage());
+            return "{}";
+        }
+    }
+
+    private String generateQuiz(Request request, List<String> sentences, Random random) throws Exception {
+        int count = intAttribute(request, "count", 5);
+        DifficultyLevel difficulty = request.attribute("difficulty") instanceof DifficultyLevel d
+                ? d : DifficultyLevel.MEDIUM;
+        boolean explanations = !Boolean.FALSE.equals(request.attribute("explanations"));
+
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode questions = root.putArray("questions");
+        if (sentences.isEmpty()) {
+            return objectMapper.writeValueAsString(root);
+        }
+
+        List<String> pool = new ArrayList<>(keyTerms(String.join(" ", sentences)));
+        int offset = random.nextInt(sentences.size());
+        for (int i = 0; i < count; i++) {
+            String sentence = sentences.get((offset + i) % sentences.size());
+            String answer = longestKeyTerm(sentence);
+            if (answer == null) {
+                answer = sentence.split("\\s+")[0];
+            }
+
+            List<String> options = new ArrayList<>();
+            options.add(answer);
+            List<String> candidates = new ArrayList<>(pool);
+            candidates.remove(answer);
+            Collections.shuffle(candidates, random);
+            for (String candidate : candidates) {
+                if (options.size() == 4) {
+                    break;
+                }
+                options.add(candidate);
+            }
+            while (options.size() < 4) {
+                options.add("None of the above (" + options.size() + ")");
+            }
+            Collections.shuffle(options, random);
+            int correctIndex = options.indexOf(answer);
+
+            ObjectNode question = questions.addObject();
+            question.put("question_text", questionStem(difficulty, sentence, answer));
+            ArrayNode optionsNode = question.putArray("options");
+            for (int o = 0; o < options.size(); o++) {
+                if (!explanations) {
+                    optionsNode.add(options.get(o));
+                    continue;
+                }
+                ObjectNode option = optionsNode.addObject();
+                option.put("text", options.get(o));
+                option.put("explanation", o == correctIndex
+                        ? "Correct. The course states: \"" + sentence + "\""
+                        : "Incorrect. This term does not complete the statement from the course.");
+            }
+            question.put("correct_option_index", correctIndex);
+            if (explanations) {
+                question.put("explanation", "The missing term is \"" + answer + "\".");
+            }
+            question.put("source_context", sentence);
+        }
+        return objectMapper.writeValueAsString(root);
+    }
+
+    /**
+     * Explain each question with the course sentence closest to its stem and answer.
+     */
+    private String generateExplanations(Request request, List<String> sentences) throws Exception {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode explanations = root.putArray("explanations");
+        if (!(request.attribute("questions") instanceof List<?> questions)) {
+            return objectMapper.writeValueAsString(root);
+        }
+
+        for (int i = 0; i < questions.size(); i++) {
+            if (!(questions.get(i) instanceof LLMModels.QuestionData question) || question.getOptions() == null) {
+                continue;
+            }
+            int correctIndex = question.getCorrectOptionIndex();
+            String answer = correctIndex < question.getOptions().size()
+                    ? question.getOptions().get(correctIndex).getText() : "";
+            String source = bestMatch(question.getQuestionText() + " " + answer, sentences);
+
+            ObjectNode entry = explanations.addObject();
+            entry.put("question_index", i);
+            entry.put("explanation", source != null
+                    ? "The course states: \"" + source + "\""
+                    : "The correct answer is \"" + answer + "\".");
+            ArrayNode optionExplanations = entry.putArray("option_explanations");
+            for (int o = 0; o < question.getOptions().size(); o++) {
+                optionExplanations.add(o == correctIndex
+                        ? "Correct. This is what the course material states."
+                        : "Incorrect. This is not supported by the course material.");
+            }
+        }
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String questionStem(DifficultyLevel difficulty, String sentence, String answer) {
+        String cloze = sentence.replaceFirst("(?i)\\b" + Pattern.quote(answer) + "\\b", "_____");
+        return switch (difficulty) {
+            case EASY -> "Fill in the blank: " + cloze;
+            case MEDIUM -> "Which term correctly completes this statement from the course? " + cloze;
+            default -> "Which concept is being described here? " + cloze;
+        };
+    }
+
+    private String generateEvaluation(Request request) throws Exception {
+        // Batched call: one entry per quiz result
+        if (request.attribute("evaluations") instanceof List<?> inputs) {
+            ObjectNode root = objectMapper.createObjectNode();
+            ArrayNode evaluations = root.putArray("evaluations");
+            for (int i = 0; i < inputs.size(); i++) {
+                if (inputs.get(i) instanceof LLMModels.EvaluationInput input) {
+                    ObjectNode entry = evaluations.addObject();
+                    entry.put("index", i);
+                    fillEvaluation(entry, input.scorePercentage(), input.correctAnswers(), input.totalQuestions(),
+                            input.currentDifficulty());
+                }
+            }
+            return objectMapper.writeValueAsString(root);
+        }
+
+        double score = request.attribute("scorePercentage") instanceof Double d ? d : 0.0;
+        int correct = intAttribute(request, "correctAnswers", 0);
+        int total = intAttribute(request, "totalQuestions", 0);
+        DifficultyLevel current = request.attribute("currentDifficulty") instanceof DifficultyLevel d
+                ? d : DifficultyLevel.MEDIUM;
+
+        ObjectNode root = objectMapper.createObjectNode();
+        fillEvaluation(root, score, correct, total, current);
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private void fillEvaluation(ObjectNode root, double score, int correct, int total, DifficultyLevel current) {
+        root.put("feedback", String.format("You answered %d of %d questions correctly (%.0f%%). %s",
+                correct, total, score,
+                score >= 70 ? "Solid work on this level." : "Review the sections you missed and try again."));
+        root.putArray("strengths").add(score >= 70 ? "Good command of the core concepts" : "Persistence");
+        root.putArray("weaknesses").add(score >= 90 ? "None significant" : "Some details need review");
+        root.putArray("recommendations").add(score >= 90 ? "Move on to a harder level" : "Revisit the course material");
+        root.put("recommended_difficulty", EvaluationEngine.calculateNextDifficulty(current, score).name());
+        root.put("course_validated", score >= 70);
+    }
+
+    private String generateFlashcards(Request request, List<String> sentences, Random random) throws Exception {
+        int count = intAttribute(request, "count", 5);
+        ArrayNode cards = objectMapper.createArrayNode();
+        if (!sentences.isEmpty()) {
+            int offset = random.nextInt(sentences.size());
+            for (int i = 0; i < count; i++) {
+                String sentence = sentences.get((offset + i) % sentences.size());
+                String term = longestKeyTerm(sentence);
+                ObjectNode card = cards.addObject();
+                card.put("front", term != null ? "What does the course say about \"" + term + "\"?" : "Key idea " + (i + 1));
+                card.put("back", sentence);
+            }
+        }
+        return objectMapper.writeValueAsString(cards);
+    }
+
+    private String generateChat(Request request, String context) {
+        String message = request.attribute("message") instanceof String m ? m : "";
+        String best = bestMatch(message, Arrays.asList(context.split("\\n\\n+")));
+        if (best == null || best.isEmpty()) {
+            return "I couldn't find that in the course material.";
+        }
+        if (best.length() > 400) {
+            best = best.substring(0, 397) + "...";
+        }
+        return "Here is what the course material says about that:\n\n> " + best;
+    }
+
+    private String generateChatSummary(Request request, String transcript) {
+        // Lead sentence of every line, dropping the oldest when over budget
+        int maxChars = intAttribute(request, "maxTokens", 300) * 4;
+        Deque<String> leads = new ArrayDeque<>();
+        int length = 0;
+        for (String line : transcript.split("\n")) {
+            String lead = line.trim().split("(?<=[.!?])\\s+")[0];
+            if (lead.isEmpty()) {
+                continue;
+            }
+            leads.addLast(lead);
+            length += lead.length() + 1;
+            while (length > maxChars && leads.size() > 1) {
+                length -= leads.removeFirst().length() + 1;
+            }
+        }
+        return String.join("\n", leads);
+    }
+
+    private String generateSummary(List<String> sentences, int points) {
+        StringBuilder summary = new StringBuilder();
+        int step = Math.max(1, sentences.size() / Math.max(1, points));
+        for (int i = 0, added = 0; i < sentences.size() && added < points; i += step, added++) {
+            summary.append("- ").append(sentences.get(i)).append("\n");
+        }
+        return summary.toString().trim();
+    }
+
+    // ========== Helpers ==========
+
+    private List<String> extractSentences(String context) {
+        List<String> sentences = new ArrayList<>();
+        for (String part : context.split("(?<=[.!?])\\s+|\\n+")) {
+            String sentence = part.trim();
+            if (sentence.length() >= 30 && sentence.length() <= 240) {
+                sentences.add(sentence);
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * Passage sharing the most words (longer than 3 letters) with the query.
+     */
+    private String bestMatch(String query, List<String> passages) {
+        Set<String> queryWords = new HashSet<>(Arrays.asList(query.toLowerCase(Locale.ROOT).split("\\W+")));
+
+        String best = null;
+        int bestScore = -1;
+        for (String passage : passages) {
+            int score = 0;
+            for (String word : passage.toLowerCase(Locale.ROOT).split("\\W+")) {
+                if (word.length() > 3 && queryWords.contains(word)) {
+                    score++;
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = passage.trim();
+            }
+        }
+        return best;
+    }
+
+    private Set<String> keyTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : text.split("[^\\p{L}\\p{N}-]+")) {
+            if (isKeyTerm(word)) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    private String longestKeyTerm(String sentence) {
+        String longest = null;
+        for (String word : sentence.split("[^\\p{L}\\p{N}-]+")) {
+            if (isKeyTerm(word) && (longest == null || word.length() > longest.length())) {
+                longest = word;
+            }
+        }
+        return longest;
+    }
+
+    private boolean isKeyTerm(String word) {
+        return word.length() >= 5 && !STOP_WORDS.contains(word.toLowerCase(Locale.ROOT))
+                && Character.isLetter(word.charAt(0));
+    }
+
+    private int intAttribute(Request request, String key, int defaultValue) {
+        return request.attribute(key) instanceof Integer value ? value : defaultValue;
+    }
+
+    /**
+     * Counters of the simulated provider.
+     */
+    public record Stats(long calls, long inputTokens, long outputTokens, long cachedInputTokens,
+                        long rateLimited, long serverErrors) {}
+}
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.SeenItemsSet;
+import com.example.demo.entity.StudentCourseStats;
+import com.example.demo.repository.QuizResultRepository;
+import com.example.demo.repository.StudentCourseStatsRepository;
+
+/**
+ * Student Stats Service.
+ *
+ * Keeps one stats row per student and course, updated on each evaluation:
+ * 1. The row is created on the first attempt or the first quiz served, in its
+ *    own transaction; a concurrent creation of the same row is ignored
+ * 2. Attempts, passes, score sum, recent score (exponentially weighted, see
+ *    recent-score-weight) and last difficulty are updated by a single UPDATE
+ * 3. The question bank items served to the student are added to the set of
+ *    items seen, so the bank does not serve them again; the set is replaced
+ *    only if its version did not change since it was read, and re-read otherwise
+ *
+ * Recommendations and course validation read this row instead of the
+ * student's results (difficulty comes from AdaptiveRatingEngine). On startup, the stats are built from the
+ * existing results if none exist yet.
+ */
+@Service
+@Transactional
+public class StudentStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentStatsService.class);
+
+    private final StudentCourseStatsRepository statsRepository;
+    private final QuizResultRepository quizResultRepository;
+    private final TransactionTemplate insertTransaction;
+
+    // Weight of the newest score in the recent score (1/3 ~ the last 5 attempts)
+    @Value("${app.stats.recent-score-weight:0.33}")
+    private double recentScoreWeight;
+
+    public StudentStatsService(StudentCourseStatsRepository statsRepository,
+                               QuizResultRepository quizResultRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.statsRepository = statsRepository;
+        this.quizResultRepository = quizResultRepository;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Record an evaluated attempt and return the student's pass count in the course.
+     */
+    public int recordAttempt(Long studentId, Long courseId, double scorePercentage, boolean passed,
+                             DifficultyLevel difficulty) {
+        String level = difficulty != null ? difficulty.name() : null;
+        if (statsRepository.recordAttempt(studentId, courseId, scorePercentage, passed ? 1 : 0, recentScoreWeight,
+                level, LocalDateTime.now()) == 0) {
+            createRow(studentId, courseId);
+            statsRepository.recordAttempt(studentId, courseId, scorePercentage, passed ? 1 : 0, recentScoreWeight,
+                    level, LocalDateTime.now());
+        }
+        return statsRepository.findPasses(studentId, courseId).orElse(0);
+    }
+
+    /**
+     * Sorted ids of the question bank items served to the student in the course.
+     */
+    @Transactional(readOnly = true)
+    public long[] getSeenItems(Long studentId, Long courseId) {
+        return SeenItemsSet.decode(statsRepository.findSeenItems(studentId, courseId).orElse(null));
+    }
+
+    public void markSeen(Long studentId, Long courseId, List<Long> itemIds) {
+        while (true) {
+            StudentCourseStatsRepository.SeenItems current =
+                    statsRepository.findSeenItemsVersion(studentId, courseId).orElse(null);
+            if (current == null) {
+                createRow(studentId, courseId);
+                continue;
+            }
+            long[] seen = SeenItemsSet.add(SeenItemsSet.decode(current.getSeenItems()), itemIds);
+            if (statsRepository.updateSeenItems(studentId, courseId, SeenItemsSet.encode(seen),
+                    current.getSeenVersion()) > 0) {
+                return;
+            }
+            // Changed by a concurrent quiz: merge into the new set
+        }
+    }
+
+    /**
+     * Create the stats row in its own transaction, so that losing the race
+     * against a concurrent creation does not roll back the caller's.
+     */
+    private void createRow(Long studentId, Long courseId) {
+        try {
+            insertTransaction.executeWithoutResult(status -> statsRepository.insertIfAbsent(studentId, courseId));
+        } catch (DataIntegrityViolationException e) {
+            // Created by a concurrent request meanwhile
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<StudentCourseStats> getStats(Long studentId, Long courseId) {
+        return statsRepository.findByStudentIdAndCourseId(studentId, courseId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        if (statsRepository.count() > 0 || quizResultRepository.count() == 0) {
+            return;
+        }
+        int rows = statsRepository.rebuildFromResults();
+        logger.info("Built performance stats for {} student/course pairs from existing quiz results", rows);
+    }
+}
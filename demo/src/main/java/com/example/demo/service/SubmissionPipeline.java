@@ -0,0 +1,307 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.QuizSubmissionDTO;
+import com.example.demo.entity.Quiz;
+import com.example.demo.entity.QuizResult;
+import com.example.demo.repository.QuizRepository;
+import com.example.demo.repository.QuizResultRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Submission Pipeline.
+ *
+ * Quiz submissions are evaluated by a few workers with group commit:
+ * 1. A submission is queued under its idempotency key, scoped to the student
+ *    and quiz; a retry with the same key while it is queued gets the same
+ *    pending outcome
+ * 2. Each worker drains up to batch-size submissions (waiting at most
+ *    max-wait-ms for more) and evaluates them in one transaction, checking
+ *    ownership and previous submissions for the whole batch in two queries
+ * 3. Submitters are answered once the batch has committed
+ *
+ * The unique constraint on the result's quiz backs the guarantee across
+ * nodes: a batch that fails to commit is retried one submission per
+ * transaction, and a submission whose quiz was already submitted by the same
+ * student under the same key returns that result.
+ */
+@Component
+public class SubmissionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionPipeline.class);
+
+    // Length of the submission_key column
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final AgentService agentService;
+    private final QuestionBankService questionBank;
+    private final QuizRepository quizRepository;
+    private final QuizResultRepository quizResultRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, Pending> inflight = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private BlockingQueue<Pending> queue;
+    private volatile boolean running;
+
+    @Value("${app.quiz.submission.workers:4}")
+    private int workerCount;
+
+    @Value("${app.quiz.submission.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.quiz.submission.max-wait-ms:10}")
+    private long maxWaitMs;
+
+    @Value("${app.quiz.submission.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${app.quiz.submission.timeout-ms:15000}")
+    private long timeoutMs;
+
+    public SubmissionPipeline(AgentService agentService,
+                              QuestionBankService questionBank,
+                              QuizRepository quizRepository,
+                              QuizResultRepository quizResultRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.agentService = agentService;
+        this.questionBank = questionBank;
+        this.quizRepository = quizRepository;
+        this.quizResultRepository = quizResultRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = Thread.ofPlatform().name("quiz-submission-" + i).daemon().start(this::work);
+            workers.add(worker);
+        }
+        logger.info("Started {} quiz submission workers", workers.size());
+    }
+
+    /**
+     * Queue a submission and wait for its result id.
+     */
+    public Long submitAndWait(Long studentId, QuizSubmissionDTO submission) {
+        CompletableFuture<Long> outcome = submit(studentId, submission);
+        try {
+            return outcome.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Quiz submission failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Your submission is still being processed. Please check your results shortly.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Quiz submission interrupted");
+        }
+    }
+
+    /**
+     * Queue a submission; its key must be set by the client (at most 64 characters).
+     */
+    public CompletableFuture<Long> submit(Long studentId, QuizSubmissionDTO submission) {
+        String key = submission.getSubmissionKey();
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid submission key, please reload the quiz and submit again");
+        }
+        if (submission.getQuizId() == null) {
+            throw new IllegalArgumentException("Quiz not found");
+        }
+        if (!running) {
+            throw new IllegalStateException("Quiz submissions are not accepted at the moment, please try again");
+        }
+        Pending pending = new Pending(studentId, submission, new CompletableFuture<>());
+        Pending queued = inflight.putIfAbsent(pending.key(), pending);
+        if (queued != null) {
+            return queued.outcome();
+        }
+        if (!queue.offer(pending)) {
+            inflight.remove(pending.key(), pending);
+            throw new IllegalStateException("Too many submissions in progress, please submit again");
+        }
+        return pending.outcome();
+    }
+
+    /**
+     * Stop accepting submissions and evaluate the ones already queued.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Quiz submission worker failed: {}", e.getMessage(), e);
+                batch.forEach(pending -> complete(new Outcome(pending, null, e)));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Pending> batch) {
+        List<Outcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> evaluate(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                outcomes = List.of(recover(batch.get(0), e));
+            } else {
+                logger.warn("Batch of {} quiz submissions failed ({}), retrying one by one", batch.size(), e.getMessage());
+                outcomes = new ArrayList<>();
+                for (Pending pending : batch) {
+                    try {
+                        outcomes.addAll(transactionTemplate.execute(status -> evaluate(List.of(pending))));
+                    } catch (RuntimeException single) {
+                        outcomes.add(recover(pending, single));
+                    }
+                }
+            }
+        }
+        outcomes.forEach(this::complete);
+        logger.debug("Committed a batch of {} quiz submissions", batch.size());
+    }
+
+    /**
+     * Evaluate a batch in the current transaction. Rejected submissions (unknown
+     * quiz, not the student's, already submitted) do not affect the others.
+     */
+    private List<Outcome> evaluate(List<Pending> batch) {
+        Set<Long> quizIds = batch.stream().map(pending -> pending.submission().getQuizId()).collect(Collectors.toSet());
+        Map<Long, Quiz> quizzes = quizRepository.findAllById(quizIds).stream()
+                .collect(Collectors.toMap(Quiz::getId, Function.identity()));
+        Map<Long, QuizResult> committed = quizResultRepository.findByQuizIdIn(quizIds).stream()
+                .collect(Collectors.toMap(result -> result.getQuiz().getId(), Function.identity()));
+        Set<Long> submitted = new HashSet<>(committed.keySet());
+
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            QuizSubmissionDTO submission = pending.submission();
+            QuizResult result = committed.get(submission.getQuizId());
+            Quiz quiz = quizzes.get(submission.getQuizId());
+            if (result != null && pending.produced(result)) {
+                outcomes.add(new Outcome(pending, result.getId(), null));
+            } else if (quiz == null) {
+                outcomes.add(new Outcome(pending, null,
+                        new IllegalArgumentException("Quiz not found: " + submission.getQuizId())));
+            } else if (!quiz.getStudent().getId().equals(pending.studentId())) {
+                outcomes.add(new Outcome(pending, null,
+                        new SecurityException("This quiz does not belong to the student")));
+            } else if (!submitted.add(quiz.getId())) {
+                outcomes.add(new Outcome(pending, null, new IllegalStateException("Quiz has already been submitted")));
+            } else {
+                if (quiz.requiresItemLoad()) {
+                    quiz.setItemQuestions(questionBank.loadQuestions(quiz.getItemIdList()));
+                }
+                outcomes.add(new Outcome(pending, agentService.evaluateQuiz(quiz, submission).getId(), null));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Outcome of a submission whose transaction failed: the result committed
+     * meanwhile for its quiz under its key (e.g. by another node), if any.
+     */
+    private Outcome recover(Pending pending, RuntimeException error) {
+        if (error instanceof DataIntegrityViolationException) {
+            return quizResultRepository.findByQuizId(pending.submission().getQuizId())
+                    .filter(pending::produced)
+                    .map(result -> new Outcome(pending, result.getId(), null))
+                    .orElseGet(() -> new Outcome(pending, null,
+                            new IllegalStateException("Quiz has already been submitted")));
+        }
+        logger.error("Quiz submission for quiz {} failed: {}", pending.submission().getQuizId(), error.getMessage());
+        return new Outcome(pending, null, error);
+    }
+
+    private void complete(Outcome outcome) {
+        Pending pending = outcome.pending();
+        inflight.remove(pending.key(), pending);
+        if (outcome.error() != null) {
+            pending.outcome().completeExceptionally(outcome.error());
+        } else {
+            pending.outcome().complete(outcome.resultId());
+        }
+    }
+
+    private record Pending(Long studentId, QuizSubmissionDTO submission, CompletableFuture<Long> outcome) {
+
+        String key() {
+            return studentId + ":" + submission.getQuizId() + ":" + submission.getSubmissionKey();
+        }
+
+        /**
+         * Whether the result of the quiz was committed for this student under this key.
+         */
+        boolean produced(QuizResult result) {
+            return submission.getSubmissionKey().equals(result.getSubmissionKey())
+                    && result.getStudent().getId().equals(studentId);
+        }
+    }
+
+    private record Outcome(Pending pending, Long resultId, RuntimeException error) {}
+}
@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.Question;
+import com.example.demo.repository.ItemCalibrationRepository;
+import com.example.demo.repository.StudentAbilityRepository;
+import com.example.demo.service.AdaptiveRatingEngine;
+
+/**
+ * Ability returned by AdaptiveRatingEngine.recordAnswers inside a transaction.
+ */
+class AdaptiveRatingEngineTests {
+
+    private AdaptiveRatingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        StudentAbilityRepository abilityRepository = mock(StudentAbilityRepository.class);
+        ItemCalibrationRepository calibrationRepository = mock(ItemCalibrationRepository.class);
+        when(abilityRepository.findByStudentIdAndCourseId(anyLong(), anyLong())).thenReturn(Optional.empty());
+        when(calibrationRepository.findByCourseIdAndItemKey(any(), anyString())).thenReturn(Optional.empty());
+
+        engine = new AdaptiveRatingEngine(abilityRepository, calibrationRepository);
+        ReflectionTestUtils.setField(engine, "targetSuccess", 0.7);
+        ReflectionTestUtils.setField(engine, "studentK", 0.4);
+        ReflectionTestUtils.setField(engine, "itemK", 0.2);
+        ReflectionTestUtils.setField(engine, "kDecay", 0.05);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void returnsTheAbilityTheCommitWillApply() {
+        List<Question> questions = List.of(question("What is a set?"), question("What is a map?"),
+                question("What is a list?"));
+
+        double projected = engine.recordAnswers(1L, 10L, DifficultyLevel.MEDIUM, questions,
+                new int[] {0, 1, -1}, new boolean[] {true, true, false});
+
+        assertEquals(0.0, engine.getAbility(1L, 10L));
+        assertTrue(projected > 0.0);
+
+        commit();
+
+        assertEquals(engine.getAbility(1L, 10L), projected, 1e-12);
+        assertEquals(engine.selectDifficulty(1L, 10L), engine.selectDifficultyForAbility(10L, projected));
+    }
+
+    private void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static Question question(String text) {
+        return new Question(text, null, 0, null);
+    }
+}
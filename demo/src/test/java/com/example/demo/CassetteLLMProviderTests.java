@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.config.LLMCassetteConfig;
+import com.example.demo.service.CassetteLLMProvider;
+import com.example.demo.service.LLMOperation;
+import com.example.demo.service.LLMProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Recording provider calls to a cassette and replaying them.
+ */
+class CassetteLLMProviderTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEachRequestByHashWhateverTheOrder() throws Exception {
+        Path cassette = directory.resolve("llm.jsonl");
+        LLMProvider delegate = mock(LLMProvider.class);
+        when(delegate.complete(any())).thenReturn(completion("first summary"), completion("quiz"),
+                completion("second summary"));
+
+        CassetteLLMProvider recorder = cassette(delegate, CassetteLLMProvider.Mode.RECORD, cassette);
+        assertEquals("first summary", recorder.complete(request(LLMOperation.SUMMARY, "Summarize")).text());
+        assertEquals("quiz", recorder.complete(request(LLMOperation.QUIZ, "Write a quiz")).text());
+        assertEquals("second summary", recorder.complete(request(LLMOperation.SUMMARY, "Summarize")).text());
+        recorder.close();
+        assertEquals(2, Files.readAllLines(cassette).size());
+
+        LLMProvider offline = mock(LLMProvider.class);
+        CassetteLLMProvider player = cassette(offline, CassetteLLMProvider.Mode.REPLAY, cassette);
+        assertEquals("quiz", player.complete(request(LLMOperation.QUIZ, "Write a quiz")).text());
+        assertEquals("first summary", player.complete(request(LLMOperation.SUMMARY, "Summarize")).text());
+        assertEquals("first summary", player.complete(request(LLMOperation.SUMMARY, "Summarize")).text());
+        assertThrows(IllegalStateException.class, () -> player.complete(request(LLMOperation.QUIZ, "Summarize")));
+        verify(offline, never()).complete(any());
+    }
+
+    @Test
+    void keepsTheResponsesOfAnEarlierCassette() throws Exception {
+        Path cassette = directory.resolve("llm.jsonl");
+        LLMProvider delegate = mock(LLMProvider.class);
+        when(delegate.complete(any())).thenReturn(completion("original"), completion("rerecorded"));
+
+        CassetteLLMProvider first = cassette(delegate, CassetteLLMProvider.Mode.RECORD, cassette);
+        first.complete(request(LLMOperation.CHAT, "Hello"));
+        first.close();
+        CassetteLLMProvider second = cassette(delegate, CassetteLLMProvider.Mode.RECORD, cassette);
+        second.complete(request(LLMOperation.CHAT, "Hello"));
+        second.close();
+
+        CassetteLLMProvider player = cassette(delegate, CassetteLLMProvider.Mode.REPLAY, cassette);
+        assertEquals("original", player.complete(request(LLMOperation.CHAT, "Hello")).text());
+        assertEquals(1, Files.readAllLines(cassette).size());
+    }
+
+    @Test
+    void decoratesTheProviderAndClosesTheCassetteWithTheContext() throws Exception {
+        Path cassette = directory.resolve("llm.jsonl");
+        LLMProvider delegate = mock(LLMProvider.class);
+        when(delegate.complete(any())).thenReturn(completion("recorded"));
+        CassetteLLMProvider[] recorder = new CassetteLLMProvider[1];
+
+        new ApplicationContextRunner()
+                .withUserConfiguration(LLMCassetteConfig.class)
+                .withBean("simulatedLLMProvider", LLMProvider.class, () -> delegate)
+                .withPropertyValues("app.llm.cassette.mode=record", "app.llm.cassette.path=" + cassette,
+                        "app.llm.cassette.latency-scale=0")
+                .run(context -> {
+                    recorder[0] = assertInstanceOf(CassetteLLMProvider.class, context.getBean(LLMProvider.class));
+                    assertSame(delegate, context.getBean("simulatedLLMProvider"));
+                    recorder[0].complete(request(LLMOperation.CHAT, "Hello"));
+                });
+
+        assertNull(ReflectionTestUtils.getField(recorder[0], "writer"));
+        assertEquals(1, Files.readAllLines(cassette).size());
+
+        new ApplicationContextRunner()
+                .withUserConfiguration(LLMCassetteConfig.class)
+                .withBean("simulatedLLMProvider", LLMProvider.class, () -> delegate)
+                .run(context -> assertSame(delegate, context.getBean(LLMProvider.class)));
+    }
+
+    private static CassetteLLMProvider cassette(LLMProvider delegate, CassetteLLMProvider.Mode mode, Path path) {
+        return new CassetteLLMProvider(delegate, mode, path, 0, new ObjectMapper());
+    }
+
+    private static LLMProvider.Request request(LLMOperation operation, String prompt) {
+        return new LLMProvider.Request(operation, 1L, "model", null, prompt, "context", Map.of());
+    }
+
+    private static LLMProvider.Completion completion(String text) {
+        return new LLMProvider.Completion(text, "model", 10, 5, 0, 20);
+    }
+}
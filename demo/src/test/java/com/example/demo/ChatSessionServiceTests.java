@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.entity.ChatTurn;
+import com.example.demo.repository.ChatTurnRepository;
+import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.ChatSessionService;
+
+/**
+ * Concurrent messages to one chat session.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatSessionServiceTests {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatTurnRepository chatTurnRepository;
+
+    @MockBean
+    private SecurityUtils securityUtils;
+
+    @Test
+    void concurrentMessagesGetConsecutiveSeqs() throws Exception {
+        when(securityUtils.getCurrentUserId()).thenReturn(9_003L);
+        Long sessionId = chatSessionService.chat(null, 9_003L, "First question", "context").sessionId();
+
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            calls.add(() -> chatSessionService.chat(sessionId, 9_003L, "Another question", "context"));
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (Future<Object> future : executor.invokeAll(calls)) {
+                future.get();
+            }
+        }
+
+        List<Integer> seqs = chatTurnRepository.findWindow(sessionId, 0).stream().map(ChatTurn::getSeq).toList();
+        assertEquals(IntStream.rangeClosed(1, 2 * (THREADS + 1)).boxed().toList(), seqs);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.entity.Course;
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.PackedAnswers;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.Quiz;
+import com.example.demo.entity.QuizResult;
+import com.example.demo.entity.User;
+import com.example.demo.repository.QuestionRepository;
+import com.example.demo.repository.QuizResultRepository;
+import com.example.demo.service.EvaluationBatcher;
+import com.example.demo.service.LLMModels;
+import com.example.demo.service.LLMService;
+import com.example.demo.service.QuestionBankService;
+
+/**
+ * Feedback of results left pending by a restart, and retries of failed batches.
+ */
+class EvaluationBatcherTests {
+
+    private final LLMService llmService = mock(LLMService.class);
+    private final QuizResultRepository quizResultRepository = mock(QuizResultRepository.class);
+    private final QuestionRepository questionRepository = mock(QuestionRepository.class);
+
+    private EvaluationBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new EvaluationBatcher(llmService, quizResultRepository, questionRepository,
+                mock(QuestionBankService.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 25);
+        ReflectionTestUtils.setField(batcher, "maxRetries", 2);
+        ReflectionTestUtils.setField(batcher, "retryBackoffMs", 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void requeuedResultsKeepTheTopicsOfTheirWrongAnswers() {
+        pendingResult();
+        when(llmService.evaluateQuizResultsBatch(eq(7L), anyList())).thenReturn(List.of(feedback()));
+
+        batcher.requeuePending();
+        batcher.flush();
+
+        ArgumentCaptor<List<LLMModels.EvaluationInput>> inputs = ArgumentCaptor.forClass(List.class);
+        verify(llmService).evaluateQuizResultsBatch(eq(7L), inputs.capture());
+        assertEquals(List.of("Source 1", "Source 3"), inputs.getValue().get(0).incorrectTopics());
+        verify(quizResultRepository).updateFeedback(11L, "Personal feedback");
+    }
+
+    @Test
+    void failedBatchesAreRetriedThenLeftPending() throws InterruptedException {
+        pendingResult();
+        when(llmService.evaluateQuizResultsBatch(eq(7L), anyList())).thenThrow(new IllegalStateException("down"));
+
+        batcher.requeuePending();
+        for (int i = 0; i < 10; i++) {
+            batcher.flush();
+            Thread.sleep(10);
+        }
+
+        verify(llmService, times(3)).evaluateQuizResultsBatch(eq(7L), anyList());
+        verify(quizResultRepository, never()).updateFeedback(any(), any());
+    }
+
+    /**
+     * A result of a four-question row quiz with the second and fourth answers wrong.
+     */
+    private void pendingResult() {
+        Course course = new Course("Course", "Description", "Content", null);
+        course.setId(7L);
+        Quiz quiz = new Quiz(course, new User(), "Quiz", DifficultyLevel.MEDIUM, 4);
+        quiz.setId(5L);
+
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Question question = new Question("Question " + i + "?", "Source " + i, 0, "Because " + i);
+            question.setId(100L + i);
+            questions.add(question);
+        }
+        when(questionRepository.findByQuizIdWithOptions(5L)).thenReturn(questions);
+
+        QuizResult result = new QuizResult(quiz, new User(), 4, 60);
+        result.setId(11L);
+        result.setCorrectAnswers(2);
+        result.setScorePercentage(50);
+        result.setAnswers(PackedAnswers.encode(new int[] {0, 2, 0, 1}, new boolean[] {true, false, true, false}));
+        when(quizResultRepository.findFeedbackPending()).thenReturn(List.of(result));
+    }
+
+    private LLMModels.EvaluationResponse feedback() {
+        LLMModels.EvaluationResponse response = new LLMModels.EvaluationResponse();
+        response.setFeedback("Personal feedback");
+        return response;
+    }
+}
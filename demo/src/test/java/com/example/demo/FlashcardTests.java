@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entity.Flashcard;
+import com.example.demo.entity.ReviewGrade;
+
+/**
+ * SM-2 scheduling of a flashcard's reviews.
+ */
+class FlashcardTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    @Test
+    void recalledCardIsDueAfterOneThenSixThenIntervalTimesEase() {
+        Flashcard card = card();
+
+        card.review(ReviewGrade.GOOD, NOW);
+        assertEquals(1, card.getIntervalDays());
+        assertEquals(NOW.plusDays(1), card.getDueAt());
+
+        card.review(ReviewGrade.GOOD, NOW);
+        assertEquals(6, card.getIntervalDays());
+
+        card.review(ReviewGrade.EASY, NOW);
+        assertEquals(2.6, card.getEaseFactor(), 1e-9);
+        assertEquals(Math.round(6 * 2.6), card.getIntervalDays());
+        assertEquals(3, card.getRepetitions());
+    }
+
+    @Test
+    void forgottenCardStartsOverWithinTheSession() {
+        Flashcard card = card();
+        card.review(ReviewGrade.GOOD, NOW);
+        card.review(ReviewGrade.GOOD, NOW);
+
+        card.review(ReviewGrade.AGAIN, NOW);
+
+        assertEquals(0, card.getRepetitions());
+        assertEquals(0, card.getIntervalDays());
+        assertEquals(1, card.getLapses());
+        assertEquals(NOW.plusMinutes(Flashcard.RELEARN_MINUTES), card.getDueAt());
+        assertEquals(Flashcard.INITIAL_EASE - 0.54, card.getEaseFactor(), 1e-9);
+
+        card.review(ReviewGrade.GOOD, NOW);
+        assertEquals(1, card.getIntervalDays());
+    }
+
+    @Test
+    void easeFactorNeverDropsBelowTheFloor() {
+        Flashcard card = card();
+        for (int i = 0; i < 5; i++) {
+            card.review(ReviewGrade.AGAIN, NOW);
+        }
+        assertEquals(Flashcard.MIN_EASE, card.getEaseFactor(), 1e-9);
+
+        card.review(ReviewGrade.HARD, NOW);
+        assertEquals(Flashcard.MIN_EASE, card.getEaseFactor(), 1e-9);
+        assertEquals(1, card.getIntervalDays());
+    }
+
+    private static Flashcard card() {
+        return new Flashcard(1L, 1L, "What does SM-2 schedule?", "Reviews");
+    }
+}
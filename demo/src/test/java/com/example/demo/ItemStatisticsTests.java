@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entity.ItemStatistics;
+
+/**
+ * Incremental item statistics against a direct computation over all responses.
+ */
+class ItemStatisticsTests {
+
+    private static final int RESPONSES = 500;
+
+    @Test
+    void mergedBatchesMatchTheWholePopulation() {
+        Random random = new Random(42);
+        double[] scores = new double[RESPONSES];
+        boolean[] correct = new boolean[RESPONSES];
+        int[] selected = new int[RESPONSES];
+        for (int i = 0; i < RESPONSES; i++) {
+            scores[i] = random.nextDouble() * 100;
+            // Stronger submissions answer correctly more often
+            correct[i] = random.nextDouble() < scores[i] / 100;
+            selected[i] = correct[i] ? 0 : 1 + random.nextInt(3);
+        }
+
+        ItemStatistics statistics = new ItemStatistics(1L, "hash");
+        for (int from = 0; from < RESPONSES; from += 37) {
+            merge(statistics, scores, correct, selected, from, Math.min(from + 37, RESPONSES));
+        }
+
+        double mean = 0;
+        double correctMean = 0;
+        int correctCount = 0;
+        for (int i = 0; i < RESPONSES; i++) {
+            mean += scores[i];
+            if (correct[i]) {
+                correctMean += scores[i];
+                correctCount++;
+            }
+        }
+        mean /= RESPONSES;
+        correctMean /= correctCount;
+        double wrongMean = (mean * RESPONSES - correctMean * correctCount) / (RESPONSES - correctCount);
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        variance /= RESPONSES;
+        double p = (double) correctCount / RESPONSES;
+        double pointBiserial = (correctMean - wrongMean) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+
+        assertEquals(RESPONSES, statistics.getResponses());
+        assertEquals(p, statistics.getDifficultyIndex(), 1e-12);
+        assertEquals(mean, statistics.getScoreMean(), 1e-9);
+        assertEquals(variance * RESPONSES, statistics.getScoreM2(), 1e-6);
+        assertEquals(pointBiserial, statistics.getDiscrimination(), 1e-9);
+
+        long[] optionCounts = new long[4];
+        for (int option : selected) {
+            optionCounts[option]++;
+        }
+        assertArrayEquals(optionCounts, statistics.getOptionCountArray());
+    }
+
+    @Test
+    void discriminationIsUndefinedWithoutBothOutcomes() {
+        ItemStatistics statistics = new ItemStatistics(1L, "hash");
+        statistics.merge(3, 3, 0, 70.0, 200.0, 70.0, new long[] {3});
+
+        assertEquals(1.0, statistics.getDifficultyIndex());
+        assertNull(statistics.getDiscrimination());
+    }
+
+    /**
+     * Summarise responses [from, to) as ItemAnalyticsService does and merge them.
+     */
+    private void merge(ItemStatistics statistics, double[] scores, boolean[] correct, int[] selected, int from, int to) {
+        long count = 0;
+        long correctCount = 0;
+        double mean = 0;
+        double m2 = 0;
+        double correctSum = 0;
+        long[] optionCounts = new long[4];
+        for (int i = from; i < to; i++) {
+            count++;
+            double delta = scores[i] - mean;
+            mean += delta / count;
+            m2 += delta * (scores[i] - mean);
+            if (correct[i]) {
+                correctCount++;
+                correctSum += scores[i];
+            }
+            optionCounts[selected[i]]++;
+        }
+        statistics.merge(count, correctCount, 0, mean, m2, correctCount > 0 ? correctSum / correctCount : 0.0,
+                optionCounts);
+    }
+}
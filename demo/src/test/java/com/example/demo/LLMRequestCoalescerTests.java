@@ -0,0 +1,157 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.dto.LLMUsageSummaryDTO;
+import com.example.demo.entity.Role;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.LLMUsageRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.LLMOperation;
+import com.example.demo.service.LLMProvider;
+import com.example.demo.service.LLMRequestCoalescer;
+import com.example.demo.service.LLMUsageMeter;
+
+/**
+ * Single-flight coalescing of identical LLM calls.
+ */
+class LLMRequestCoalescerTests {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void concurrentIdenticalCallsShareOneFlight() throws Exception {
+        LLMRequestCoalescer coalescer = new LLMRequestCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger joined = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        String key = coalescer.key(LLMOperation.FLASHCARDS, 1L, "model", "prompt");
+
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CALLERS)) {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> coalescer.execute(key, () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return "cards";
+                }, result -> joined.incrementAndGet())));
+            }
+            // Every caller is waiting on the single flight before it completes
+            while (coalescer.getStats().executedCalls() + coalescer.getStats().coalescedCalls() < CALLERS) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("cards", future.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(CALLERS - 1, joined.get());
+        assertEquals(new LLMRequestCoalescer.Stats(1, CALLERS - 1), coalescer.getStats());
+    }
+
+    @Test
+    void joinedCallersAreMeteredWithoutTokens() throws Exception {
+        LLMRequestCoalescer coalescer = new LLMRequestCoalescer();
+        LLMUsageMeter meter = new LLMUsageMeter(mock(LLMUsageRepository.class), mock(UserRepository.class),
+                mock(CourseRepository.class), mock(PlatformTransactionManager.class));
+        Long userId = 9_005L;
+        CountDownLatch release = new CountDownLatch(1);
+        String key = coalescer.key(LLMOperation.FLASHCARDS, 1L, "model", "prompt");
+
+        List<Future<LLMProvider.Completion>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CALLERS)) {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> coalescer.execute(key, () -> {
+                    await(release);
+                    LLMProvider.Completion completion = new LLMProvider.Completion("cards", "model", 100, 20, 0, 5);
+                    meter.record(userId, Role.STUDENT, 1L, LLMOperation.FLASHCARDS, completion);
+                    return completion;
+                }, shared -> meter.recordCoalesced(userId, Role.STUDENT, 1L, LLMOperation.FLASHCARDS,
+                        shared.model(), 5))));
+            }
+            while (coalescer.getStats().executedCalls() + coalescer.getStats().coalescedCalls() < CALLERS) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<LLMProvider.Completion> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        }
+
+        // Every caller is a call, only the one sent is billed
+        LLMUsageSummaryDTO usage = meter.reportSince(LocalDate.now()).byModel().get(0);
+        assertEquals(CALLERS, usage.getCallCount());
+        assertEquals(100, usage.getInputTokens());
+        assertEquals(20, usage.getOutputTokens());
+        assertEquals(0, usage.getCachedInputTokens());
+        assertEquals(120, meter.getUserTokensToday(userId));
+    }
+
+    @Test
+    void joinedCallersGetTheSameException() throws Exception {
+        LLMRequestCoalescer coalescer = new LLMRequestCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("quota");
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<String> first = executor.submit(() -> coalescer.execute("key", () -> {
+                await(release);
+                throw failure;
+            }));
+            while (coalescer.getStats().executedCalls() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> second = executor.submit(() -> coalescer.execute("key", () -> "not called"));
+            while (coalescer.getStats().coalescedCalls() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertSame(failure, assertThrows(ExecutionException.class, first::get).getCause());
+            assertSame(failure, assertThrows(ExecutionException.class, second::get).getCause());
+        }
+
+        // Released once completed: the next call runs again
+        assertEquals("again", coalescer.execute("key", () -> "again"));
+    }
+
+    @Test
+    void keysDifferByEveryPart() {
+        LLMRequestCoalescer coalescer = new LLMRequestCoalescer();
+        String key = coalescer.key(LLMOperation.FLASHCARDS, 1L, "model", "prompt");
+
+        assertEquals(key, coalescer.key(LLMOperation.FLASHCARDS, 1L, "model", "prompt"));
+        assertNotEquals(key, coalescer.key(LLMOperation.CHAT, 1L, "model", "prompt"));
+        assertNotEquals(key, coalescer.key(LLMOperation.FLASHCARDS, 2L, "model", "prompt"));
+        assertNotEquals(key, coalescer.key(LLMOperation.FLASHCARDS, 1L, "other", "prompt"));
+        assertNotEquals(key, coalescer.key(LLMOperation.FLASHCARDS, 1L, "model", "prompt 2"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
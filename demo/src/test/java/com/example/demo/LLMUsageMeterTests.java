@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.dto.LLMUsageSummaryDTO;
+import com.example.demo.entity.Role;
+import com.example.demo.service.LLMOperation;
+import com.example.demo.service.LLMProvider;
+import com.example.demo.service.LLMUsageMeter;
+
+/**
+ * Usage recorded while the meter is being flushed.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LLMUsageMeterTests {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 200;
+    private static final String MODEL = "meter-test-model";
+
+    @Autowired
+    private LLMUsageMeter usageMeter;
+
+    @Test
+    void everyCallIsCountedOnceAcrossFlushes() throws Exception {
+        Long userId = 9_004L;
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            calls.add(() -> {
+                for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                    usageMeter.record(userId, Role.STUDENT, null, LLMOperation.CHAT,
+                            new LLMProvider.Completion("answer", MODEL, 10, 5, 2, 1));
+                    if (call % 50 == 0) {
+                        usageMeter.flush();
+                    }
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (Future<Object> future : executor.invokeAll(calls)) {
+                future.get();
+            }
+        }
+
+        long expectedCalls = (long) THREADS * CALLS_PER_THREAD;
+        assertModelUsage(expectedCalls);
+        usageMeter.flush();
+        assertModelUsage(expectedCalls);
+        assertEquals(expectedCalls * 15, usageMeter.getUserTokensToday(userId));
+    }
+
+    private void assertModelUsage(long expectedCalls) {
+        LLMUsageSummaryDTO usage = usageMeter.reportSince(LocalDate.now()).byModel().stream()
+                .filter(summary -> MODEL.equals(summary.getLabel()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(expectedCalls, usage.getCallCount());
+        assertEquals(expectedCalls * 10, usage.getInputTokens());
+        assertEquals(expectedCalls * 5, usage.getOutputTokens());
+    }
+}
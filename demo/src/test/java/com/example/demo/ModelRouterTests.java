@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.service.LLMOperation;
+import com.example.demo.service.ModelRouter;
+import com.example.demo.service.ModelRouter.ModelHealth;
+import com.example.demo.service.ModelRouter.Route;
+
+/**
+ * Circuit breaking and latency percentiles of the model router.
+ */
+class ModelRouterTests {
+
+    @Test
+    void opensOnErrorsThenClosesAfterOneSuccessfulProbe() {
+        ModelRouter router = router(0);
+        Route call = router.route(LLMOperation.QUIZ, DifficultyLevel.MEDIUM);
+        for (int i = 0; i < 5; i++) {
+            router.recordFailure(call, 100);
+        }
+
+        assertEquals("fallback", route(router).model());
+        // Half-open: one probe goes to the primary, the others wait for its outcome
+        Route probe = route(router);
+        assertEquals("primary", probe.model());
+        assertEquals("fallback", route(router).model());
+
+        router.recordSuccess(probe, 100);
+        assertEquals("primary", route(router).model());
+        assertFalse(health(router).degraded());
+    }
+
+    @Test
+    void onlyTheProbeOutcomeClosesTheCircuit() {
+        ModelRouter router = router(0);
+        // Calls routed to the primary before the circuit opened
+        Route late = route(router);
+        for (int i = 0; i < 5; i++) {
+            router.recordFailure(route(router), 100);
+        }
+
+        assertEquals("fallback", route(router).model());
+        Route probe = route(router);
+        assertEquals("primary", probe.model());
+
+        router.recordSuccess(late, 100);
+        assertEquals("fallback", route(router).model());
+        assertTrue(health(router).degraded());
+
+        router.recordFailure(probe, 100);
+        Route next = route(router);
+        assertEquals("primary", next.model());
+        assertTrue(next.probeToken() != probe.probeToken());
+    }
+
+    @Test
+    void staysOpenUntilTheCooldownIsOver() {
+        ModelRouter router = router(3600);
+        for (int i = 0; i < 5; i++) {
+            router.recordSuccess(new Route("primary", 0), 60_000);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("fallback", route(router).model());
+        }
+        assertTrue(health(router).degraded());
+    }
+
+    @Test
+    void p95IsReadFromTheLatencyHistogram() {
+        ModelRouter router = router(30);
+        for (int latency = 1; latency <= 100; latency++) {
+            router.recordSuccess(new Route("primary", 0), latency);
+        }
+
+        ModelHealth health = health(router);
+        assertEquals(100, health.samples());
+        assertTrue(health.p95LatencyMs() >= 95 && health.p95LatencyMs() <= 115, "p95 " + health.p95LatencyMs());
+        assertFalse(health.degraded());
+    }
+
+    private ModelRouter router(long openSeconds) {
+        ModelRouter router = new ModelRouter(new MockEnvironment());
+        ReflectionTestUtils.setField(router, "defaultModel", "primary");
+        ReflectionTestUtils.setField(router, "fallbackModel", "fallback");
+        ReflectionTestUtils.setField(router, "maxP95LatencyMs", 10_000L);
+        ReflectionTestUtils.setField(router, "maxErrorRate", 0.3);
+        ReflectionTestUtils.setField(router, "windowSeconds", 60L);
+        ReflectionTestUtils.setField(router, "minSamples", 5);
+        ReflectionTestUtils.setField(router, "openSeconds", openSeconds);
+        return router;
+    }
+
+    private Route route(ModelRouter router) {
+        return router.route(LLMOperation.QUIZ, DifficultyLevel.MEDIUM);
+    }
+
+    private ModelHealth health(ModelRouter router) {
+        return router.getModelHealth().get(0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entity.PackedAnswers;
+
+/**
+ * Encoding of the answers of a quiz result.
+ */
+class PackedAnswersTests {
+
+    @Test
+    void roundTripsSelectionsAndCorrectness() {
+        int[] selected = {0, 6, PackedAnswers.UNANSWERED, 3};
+        boolean[] correct = {true, false, false, true};
+
+        byte[] packed = PackedAnswers.encode(selected, correct);
+
+        assertEquals(3, packed.length);
+        assertArrayEquals(selected, PackedAnswers.selectedOptions(packed, 4));
+        for (int i = 0; i < correct.length; i++) {
+            assertEquals(correct[i], PackedAnswers.isCorrect(packed, i));
+        }
+        assertEquals(2, PackedAnswers.countCorrect(packed));
+    }
+
+    @Test
+    void padsAnOddCountWithAnUnansweredSlot() {
+        byte[] packed = PackedAnswers.encode(new int[] {2, 0, 1}, new boolean[] {true, true, false});
+
+        assertEquals(4, PackedAnswers.size(packed));
+        assertArrayEquals(new int[] {2, 0, 1, PackedAnswers.UNANSWERED}, PackedAnswers.selectedOptions(packed, 4));
+        assertFalse(PackedAnswers.isCorrect(packed, 3));
+        assertEquals(PackedAnswers.UNANSWERED, PackedAnswers.selectedOption(packed, 10));
+    }
+
+    @Test
+    void keepsUnansweredCorrectnessApart() {
+        byte[] packed = PackedAnswers.encode(new int[] {PackedAnswers.UNANSWERED}, new boolean[] {true});
+
+        assertEquals(PackedAnswers.UNANSWERED, PackedAnswers.selectedOption(packed, 0));
+        assertTrue(PackedAnswers.isCorrect(packed, 0));
+        assertEquals(1, PackedAnswers.countCorrect(packed));
+    }
+
+    @Test
+    void rejectsOutOfRangeInput() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PackedAnswers.encode(new int[] {PackedAnswers.MAX_OPTIONS}, new boolean[] {false}));
+        assertThrows(IllegalArgumentException.class,
+                () -> PackedAnswers.encode(new int[] {-2}, new boolean[] {false}));
+        assertThrows(IllegalArgumentException.class,
+                () -> PackedAnswers.encode(new int[] {0, 1}, new boolean[] {true}));
+        assertThrows(IllegalStateException.class, () -> PackedAnswers.selectedOption(new byte[] {9, 0}, 0));
+    }
+}
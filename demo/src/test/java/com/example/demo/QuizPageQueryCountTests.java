@@ -0,0 +1,230 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.entity.AnswerOption;
+import com.example.demo.entity.Course;
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.PackedAnswers;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.QuestionItem;
+import com.example.demo.entity.Quiz;
+import com.example.demo.entity.QuizResult;
+import com.example.demo.entity.StudentAnswer;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.QuestionItemRepository;
+import com.example.demo.repository.QuizRepository;
+import com.example.demo.repository.QuizResultRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.CustomUserDetailsService;
+import com.example.demo.service.CourseSummaryService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Number of SQL statements issued to render the quiz take and result pages.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QuizPageQueryCountTests {
+
+    private static final int QUESTIONS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuizResultRepository quizResultRepository;
+
+    @Autowired
+    private QuestionItemRepository questionItemRepository;
+
+    @Autowired
+    private CourseSummaryService courseSummaryService;
+
+    private User student;
+    private Course course;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Summaries of the sample courses are written in the background after startup
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!courseSummaryService.isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        student = userRepository.findByUsername("student1").orElseThrow();
+        course = courseRepository.findAll().get(0);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void takePageOfDocumentQuizIsOneQuery() throws Exception {
+        Quiz quiz = createQuiz(true);
+
+        assertEquals(1, statementsFor("/student/quizzes/" + quiz.getId()));
+    }
+
+    @Test
+    void resultPageOfDocumentQuizIsOneQuery() throws Exception {
+        Quiz quiz = createQuiz(true);
+        submit(quiz);
+
+        assertEquals(1, statementsFor("/student/quizzes/" + quiz.getId() + "/result"));
+    }
+
+    @Test
+    void takePageOfItemQuizIsOneQuery() throws Exception {
+        Quiz quiz = createItemQuiz(true);
+
+        assertEquals(1, statementsFor("/student/quizzes/" + quiz.getId()));
+    }
+
+    @Test
+    void resultPageOfItemQuizIsOneQuery() throws Exception {
+        Quiz quiz = createItemQuiz(true);
+        submit(quiz);
+
+        assertEquals(1, statementsFor("/student/quizzes/" + quiz.getId() + "/result"));
+    }
+
+    @Test
+    void takePageOfItemQuizWithoutDocumentIsTwoQueries() throws Exception {
+        Quiz quiz = createItemQuiz(false);
+
+        assertEquals(2, statementsFor("/student/quizzes/" + quiz.getId()));
+    }
+
+    @Test
+    void resultPageOfItemQuizWithoutDocumentIsTwoQueries() throws Exception {
+        Quiz quiz = createItemQuiz(false);
+        submit(quiz);
+
+        assertEquals(2, statementsFor("/student/quizzes/" + quiz.getId() + "/result"));
+    }
+
+    @Test
+    void takePageOfRowQuizIsTwoQueries() throws Exception {
+        Quiz quiz = createQuiz(false);
+
+        assertEquals(2, statementsFor("/student/quizzes/" + quiz.getId()));
+    }
+
+    @Test
+    void resultPageOfRowQuizIsTwoQueries() throws Exception {
+        Quiz quiz = createQuiz(false);
+        submit(quiz);
+
+        assertEquals(2, statementsFor("/student/quizzes/" + quiz.getId() + "/result"));
+    }
+
+    private long statementsFor(String url) throws Exception {
+        CustomUserDetailsService.CustomUserDetails principal = new CustomUserDetailsService.CustomUserDetails(student);
+        Authentication auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        statistics.clear();
+        mockMvc.perform(get(url).with(authentication(auth))).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Quiz createQuiz(boolean document) {
+        Quiz quiz = new Quiz(course, student, "Quiz: " + course.getTitle(), DifficultyLevel.MEDIUM, QUESTIONS);
+        List<Question> questions = questions("Question");
+        if (document) {
+            quiz.setDocumentQuestions(questions);
+        } else {
+            questions.forEach(quiz::addQuestion);
+        }
+        return quizRepository.save(quiz);
+    }
+
+    /**
+     * Quiz referencing question bank items, with or without its own document.
+     */
+    private Quiz createItemQuiz(boolean document) {
+        Quiz quiz = new Quiz(course, student, "Quiz: " + course.getTitle(), DifficultyLevel.MEDIUM, QUESTIONS);
+        List<Question> questions = questions("Bank question " + System.nanoTime());
+        List<Long> itemIds = new ArrayList<>();
+        for (Question question : questions) {
+            QuestionItem item = new QuestionItem(course.getId(), course.getIndexGeneration(), DifficultyLevel.MEDIUM,
+                    question);
+            itemIds.add(questionItemRepository.save(item).getId());
+        }
+        if (document) {
+            quiz.setDocumentQuestions(questions);
+        }
+        quiz.setItems(itemIds, questions);
+        return quizRepository.save(quiz);
+    }
+
+    private List<Question> questions(String prefix) {
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            Question question = new Question(prefix + " " + i + "?", "Source " + i, 0, "Because " + i);
+            for (int o = 0; o < 4; o++) {
+                question.addOption(new AnswerOption("Option " + o, "Explanation " + o));
+            }
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    /**
+     * Results of document and question bank quizzes get packed answers; results
+     * of row quizzes get answer rows, as submitted before packed answers.
+     */
+    private void submit(Quiz quiz) {
+        QuizResult result = new QuizResult(quiz, student, QUESTIONS, 60);
+        result.setCorrectAnswers(QUESTIONS);
+        result.setScorePercentage(100);
+        result.setPassed(true);
+        result.setAgentFeedback("Well done.");
+
+        if (quiz.isDocumentStored() || quiz.isItemBacked()) {
+            int[] selected = new int[QUESTIONS];
+            boolean[] correct = new boolean[QUESTIONS];
+            Arrays.fill(correct, true);
+            result.setAnswers(PackedAnswers.encode(selected, correct));
+        } else {
+            List<StudentAnswer> answers = new ArrayList<>();
+            for (Question question : quiz.getQuestions()) {
+                answers.add(new StudentAnswer(question.getId(), 0, question.getCorrectOptionIndex()));
+            }
+            result.setStudentAnswers(answers);
+        }
+        quizResultRepository.save(result);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entity.SeenItemsSet;
+
+/**
+ * Encoding of the question bank items served to a student.
+ */
+class SeenItemsSetTests {
+
+    @Test
+    void roundTripsSortedDistinctIds() {
+        long[] ids = SeenItemsSet.add(new long[0], List.of(300L, 5L, 70_000L, 5L, 1L << 40));
+
+        assertArrayEquals(new long[] {5L, 300L, 70_000L, 1L << 40}, ids);
+        assertArrayEquals(ids, SeenItemsSet.decode(SeenItemsSet.encode(ids)));
+        assertArrayEquals(new long[0], SeenItemsSet.decode(SeenItemsSet.empty()));
+        assertArrayEquals(new long[0], SeenItemsSet.decode(null));
+    }
+
+    @Test
+    void isExactForThousandsOfItems() {
+        long[] served = LongStream.rangeClosed(1, 10_000).filter(id -> id % 2 == 0).toArray();
+        long[] seen = SeenItemsSet.decode(SeenItemsSet.encode(served));
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertEquals(id % 2 == 0, SeenItemsSet.contains(seen, id));
+        }
+        assertTrue(SeenItemsSet.encode(served).length < 5_001 + 16);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.service.SemanticAnswerCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Scoping and eviction of the semantic answer cache.
+ */
+class SemanticAnswerCacheTests {
+
+    @Test
+    void servesSimilarQuestionsOfTheSameScopeOnly() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(60, 100, 10, 0.9, new SimpleMeterRegistry());
+        cache.put("1:a", "What is a binary search tree?", "A sorted tree.");
+
+        assertEquals("A sorted tree.", cache.get("1:a", "what is a Binary Search Tree"));
+        assertEquals("A sorted tree.", cache.get("1:a", "Binary search trees?"));
+        assertNull(cache.get("2:a", "What is a binary search tree?"));
+        assertNull(cache.get("1:a", "What is a hash table?"));
+    }
+
+    @Test
+    void evictsPerScopeAndFromTheIdlestScope() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(60, 5, 3, 0.9, new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            cache.put("busy", "question number " + i, "answer " + i);
+        }
+        assertEquals(3, cache.size());
+        assertNull(cache.get("busy", "question number 0"));
+
+        cache.put("idle", "first idle question", "idle answer");
+        cache.get("busy", "question number 3");
+        cache.put("new", "question alpha", "alpha");
+        cache.put("new", "question beta", "beta");
+
+        assertEquals(5, cache.size());
+        assertNull(cache.get("idle", "first idle question"));
+        assertEquals("answer 3", cache.get("busy", "question number 3"));
+        assertEquals("beta", cache.get("new", "question beta"));
+    }
+}
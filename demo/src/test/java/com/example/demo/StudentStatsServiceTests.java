@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.repository.StudentCourseStatsRepository;
+import com.example.demo.service.StudentStatsService;
+
+/**
+ * Concurrent updates of a student's course stats.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StudentStatsServiceTests {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private StudentStatsService statsService;
+
+    @Autowired
+    private StudentCourseStatsRepository statsRepository;
+
+    @Test
+    void concurrentlyServedItemsAreAllSeen() throws Exception {
+        Long studentId = 9_001L;
+        Long courseId = 9_001L;
+
+        runConcurrently(thread -> {
+            statsService.markSeen(studentId, courseId, List.of(thread * 10L + 1, thread * 10L + 2));
+            return null;
+        });
+
+        long[] expected = LongStream.range(0, THREADS).flatMap(t -> LongStream.of(t * 10 + 1, t * 10 + 2)).toArray();
+        assertArrayEquals(expected, statsService.getSeenItems(studentId, courseId));
+        assertEquals(1, statsRepository.findAll().stream()
+                .filter(stats -> stats.getStudentId().equals(studentId) && stats.getCourseId().equals(courseId))
+                .count());
+    }
+
+    @Test
+    void concurrentFirstAttemptsAreAllCounted() throws Exception {
+        Long studentId = 9_002L;
+        Long courseId = 9_002L;
+
+        runConcurrently(thread -> statsService.recordAttempt(studentId, courseId, 80.0, true, DifficultyLevel.MEDIUM));
+
+        assertEquals(THREADS, statsService.getStats(studentId, courseId).orElseThrow().getAttempts());
+        assertEquals(THREADS, statsService.getStats(studentId, courseId).orElseThrow().getPasses());
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            long thread = i;
+            calls.add(() -> task.run(thread));
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (Future<Object> future : executor.invokeAll(calls)) {
+                future.get();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        Object run(long thread) throws Exception;
+    }
+}
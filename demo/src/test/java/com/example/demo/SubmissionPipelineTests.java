@@ -0,0 +1,150 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.dto.QuizSubmissionDTO;
+import com.example.demo.entity.AnswerOption;
+import com.example.demo.entity.Course;
+import com.example.demo.entity.DifficultyLevel;
+import com.example.demo.entity.Question;
+import com.example.demo.entity.Quiz;
+import com.example.demo.entity.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.QuizRepository;
+import com.example.demo.repository.QuizResultRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.SubmissionPipeline;
+
+/**
+ * Idempotency of concurrent quiz submissions.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SubmissionPipelineTests {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SubmissionPipeline submissionPipeline;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuizResultRepository quizResultRepository;
+
+    private User student;
+    private Course course;
+
+    @BeforeEach
+    void setUp() {
+        student = userRepository.findByUsername("student2").orElseThrow();
+        course = courseRepository.findAll().get(0);
+    }
+
+    @Test
+    void retriesWithTheSameKeyGetTheSameResult() throws Exception {
+        Quiz quiz = createQuiz();
+
+        List<Object> outcomes = submitConcurrently(thread -> submission(quiz, "same-key"));
+        Long resultId = submissionPipeline.submitAndWait(student.getId(), submission(quiz, "same-key"));
+
+        assertEquals(Set.of(resultId), new HashSet<>(outcomes));
+        assertEquals(resultId, quizResultRepository.findByQuizId(quiz.getId()).orElseThrow().getId());
+    }
+
+    @Test
+    void onlyOneOfConcurrentSubmissionsWithDifferentKeysIsEvaluated() throws Exception {
+        Quiz quiz = createQuiz();
+
+        List<Object> outcomes = submitConcurrently(thread -> submission(quiz, "key-" + thread));
+
+        List<Object> accepted = outcomes.stream().filter(outcome -> outcome instanceof Long).toList();
+        assertEquals(1, accepted.size());
+        outcomes.stream()
+                .filter(outcome -> !(outcome instanceof Long))
+                .forEach(outcome -> assertInstanceOf(IllegalStateException.class, outcome));
+        assertEquals(accepted.get(0), quizResultRepository.findByQuizId(quiz.getId()).orElseThrow().getId());
+    }
+
+    @Test
+    void anotherStudentCannotSubmitTheQuiz() {
+        Quiz quiz = createQuiz();
+        Long otherStudentId = userRepository.findByUsername("student3").orElseThrow().getId();
+
+        assertThrows(SecurityException.class,
+                () -> submissionPipeline.submitAndWait(otherStudentId, submission(quiz, "other")));
+        assertEquals(0, quizResultRepository.findByQuizIdIn(List.of(quiz.getId())).size());
+    }
+
+    /**
+     * Submit from several threads at once; each outcome is a result id or the exception thrown.
+     */
+    private List<Object> submitConcurrently(SubmissionFactory factory) throws Exception {
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            calls.add(() -> submissionPipeline.submit(student.getId(), factory.create(thread)).get());
+        }
+        List<Object> outcomes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (Future<Object> future : executor.invokeAll(calls)) {
+                try {
+                    outcomes.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof ExecutionException inner ? inner.getCause() : e.getCause();
+                    outcomes.add(cause);
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    private QuizSubmissionDTO submission(Quiz quiz, String key) {
+        return new QuizSubmissionDTO(quiz.getId(), Map.of(), 60, key);
+    }
+
+    private Quiz createQuiz() {
+        Quiz quiz = new Quiz(course, student, "Quiz: " + course.getTitle(), DifficultyLevel.MEDIUM, 3);
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Question question = new Question("Question " + i + "?", "Source " + i, 0, "Because " + i);
+            for (int o = 0; o < 4; o++) {
+                question.addOption(new AnswerOption("Option " + o, "Explanation " + o));
+            }
+            questions.add(question);
+        }
+        quiz.setDocumentQuestions(questions);
+        return quizRepository.save(quiz);
+    }
+
+    @FunctionalInterface
+    private interface SubmissionFactory {
+        QuizSubmissionDTO create(int thread);
+    }
+}